@@ -0,0 +1,85 @@
+package com.example.demo.pubsub;
+
+import com.example.demo.model.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * room fan-out 1건의 비용: 이전 경로(destination 문자열 조립 + convertAndSend) vs RoomFanoutHandles(헤더 템플릿).
+ * - 두 경로 모두 broker 메시징 템플릿과 같은 converter 구성(String/byte[]/Jackson)으로 직렬화하고,
+ *   broker 채널은 마지막 메시지만 붙잡는 no-op 채널이라 SimpleBroker 구독자 전달 비용은 빠진다.
+ * - 메시지당 할당량은 gc 프로파일러의 gc.alloc.rate.norm(B/op)으로 본다.
+ * ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoomFanoutBenchmark {
+
+    private static final String ROOM_ID = "room-42";
+
+    private final CapturingChannel brokerChannel = new CapturingChannel();
+    private SimpMessagingTemplate brokerMessagingTemplate;
+    private RoomFanoutHandles roomFanoutHandles;
+    private ChatMessage message;
+
+    @Setup
+    public void setUp() {
+        brokerMessagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        // AbstractMessageBrokerConfiguration.brokerMessageConverter와 같은 구성
+        brokerMessagingTemplate.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(),
+                new ByteArrayMessageConverter(),
+                new JacksonJsonMessageConverter()
+        )));
+        roomFanoutHandles = new RoomFanoutHandles(brokerChannel, brokerMessagingTemplate);
+        roomFanoutHandles.open(ROOM_ID);
+        message = ChatMessage.builder()
+                .type(ChatMessage.MessageType.TALK)
+                .roomId(ROOM_ID)
+                .sender("viewer-1234")
+                .msgId("0b6f5f3e-2c1a-4d7e-9a55-7c3f1e2d4b6a")
+                .message("안녕하세요, 오늘 방송 재밌네요")
+                .build();
+    }
+
+    @Benchmark
+    public Message<?> convertAndSend() {
+        brokerMessagingTemplate.convertAndSend("/sub/chat/room/" + message.getRoomId(), message);
+        return brokerChannel.last;
+    }
+
+    @Benchmark
+    public Message<?> headerTemplate() {
+        roomFanoutHandles.send(message.getRoomId(), message);
+        return brokerChannel.last;
+    }
+
+    /**
+     * 보낸 메시지를 반환값으로 넘겨 JIT가 전송 경로를 지우지 못하게 한다.
+     */
+    private static final class CapturingChannel implements MessageChannel {
+        private Message<?> last;
+
+        @Override
+        public boolean send(Message<?> message, long timeout) {
+            last = message;
+            return true;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.demo.config;
 
+import com.example.demo.service.HandshakeAdmissionService;
 import com.example.demo.service.WebSocketDrainService;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
@@ -16,22 +19,37 @@ import java.util.Map;
 public class DrainingHandshakeInterceptor implements HandshakeInterceptor {
 
     private final WebSocketDrainService drainService;
+    private final HandshakeAdmissionService admissionService;
 
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
                                    WebSocketHandler wsHandler, Map<String, Object> attributes) {
-        if (!drainService.isDraining()) {
-            return true;
+        if (drainService.isDraining()) {
+            reject(response, null);
+            return false;
         }
-        if (response instanceof org.springframework.http.server.ServletServerHttpResponse servletResponse) {
-            servletResponse.getServletResponse().setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        // 재연결 폭주 시 handshake가 한꺼번에 몰려 chat 지연이 튀지 않도록 속도/동시성 입장 제어를 건다.
+        HandshakeAdmissionService.Decision decision = admissionService.tryAdmit();
+        if (!decision.admitted()) {
+            reject(response, decision.retryAfterSeconds());
+            return false;
         }
-        return false;
+        return true;
     }
 
     @Override
     public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
                                Exception exception) {
-        // no-op
+        // beforeHandshake가 true를 반환한 경우에만 호출되므로 입장 슬롯을 여기서 반납한다.
+        admissionService.release();
+    }
+
+    private void reject(ServerHttpResponse response, Long retryAfterSeconds) {
+        if (retryAfterSeconds != null) {
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        }
+        if (response instanceof ServletServerHttpResponse servletResponse) {
+            servletResponse.getServletResponse().setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
     }
 }
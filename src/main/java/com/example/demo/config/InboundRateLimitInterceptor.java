@@ -0,0 +1,48 @@
+package com.example.demo.config;
+
+import com.example.demo.service.InboundRateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * clientInboundChannel 인터셉터.
+ * preSend는 inbound 실행기 큐에 넣기 전에 transport 스레드에서 호출되므로
+ * 여기서 null을 반환하면 프레임은 큐/역직렬화/검증을 거치지 않고 버려진다.
+ */
+@Component
+@RequiredArgsConstructor
+public class InboundRateLimitInterceptor implements ChannelInterceptor {
+
+    private final InboundRateLimiter rateLimiter;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (messageType == SimpMessageType.DISCONNECT) {
+            rateLimiter.sessionClosed(sessionId);
+            return message;
+        }
+        // SUBSCRIBE/CONNECT/heartbeat는 제한하지 않고 /pub로 가는 SEND만 센다.
+        if (messageType != SimpMessageType.MESSAGE || sessionId == null || !rateLimiter.isEnabled()) {
+            return message;
+        }
+        // 인증된 principal이 있으면 그것을 sender 버킷 키로 쓰고, 없으면 ENTER로 밝힌 sender를 세션 안에서만 쓴다.
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        Object sender = attributes == null ? null : attributes.get(InboundRateLimiter.SENDER_ATTRIBUTE);
+        return rateLimiter.tryAcquire(
+                sessionId,
+                user == null ? null : user.getName(),
+                sender == null ? null : sender.toString()
+        ) ? message : null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * @Scheduled 작업 전용 스케줄러.
+ * - 설정이 없으면 @Scheduled 작업은 STOMP simple broker의 heartbeat 스케줄러(messageBrokerTaskScheduler)를
+ *   함께 쓰거나 스레드 하나에 줄을 선다. DB batch(follow count reconcile, 시청 기록 spill 재적재/종료 시각 flush)가
+ *   길어지면 세션 TTL 회전·rate 집계 같은 짧은 주기 작업과 heartbeat까지 밀린다.
+ * - Boot의 spring.task.scheduling.* 는 broker 스케줄러가 있으면 적용되지 않으므로 여기서 직접 풀을 둔다.
+ */
+@Configuration
+public class SchedulingConfig implements SchedulingConfigurer {
+
+    @Value("${chat.scheduling.pool-size:4}")
+    private int poolSize;
+
+    @Bean(name = "chatJobScheduler")
+    public ThreadPoolTaskScheduler chatJobScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("chat-job-");
+        // 종료 시 진행 중인 flush가 끝나도록 잠시 기다린다(각 서비스의 @PreDestroy가 남은 분량을 마저 처리).
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(chatJobScheduler());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 세션 하나의 outbound 쓰기를 전담하는 직렬 큐(actor 방식).
+ * - sendMessage는 큐에 넣고 바로 반환하므로 outbound 채널 스레드가 소켓 쓰기/세션 send lock에서 막히지 않는다.
+ * - 큐는 writer 실행기에서 한 번에 하나의 작업만 비우며, 그동안 쌓인 연속 TextMessage(STOMP 프레임)는
+ *   NUL로 끝나는 프레임을 이어 붙여 소켓 쓰기 한 번으로 보낸다.
+ * - 대기 바이트가 buffer 한도를 넘거나 쓰기 하나가 time 한도를 넘으면 느린 소비자로 보고 세션을 닫는다.
+ *   소켓 쓰기가 실패해도 세션을 닫는다(중간 프레임이 빠진 채 계속 보내지 않도록).
+ *   대기량은 Spring transport 한도(send-buffer-size-limit)와 같은 단위(UTF-8 바이트)로 센다.
+ * - 이 세션 바깥의 Spring ConcurrentWebSocketSessionDecorator는 sendMessage가 큐 적재 후 바로 반환하므로
+ *   버퍼가 차지 않는 통과 계층이 되고, 실제 버퍼링과 느린 소비자 판정은 이 큐 하나에서만 한다.
+ * - 프레임마다 적재 시각을 들고 있다가 소켓 쓰기가 끝날 때 적재~전송 완료 지연을 집계한다.
+ */
+@Slf4j
+final class SerialOutboundSession extends WebSocketSessionDecorator {
+
+    // 한 세션이 writer 스레드를 독점하지 않도록 drain 1회당 소켓 쓰기 수를 제한하고 나머지는 재예약한다.
+    private static final int MAX_WRITES_PER_DRAIN = 16;
+
+    private final SerialOutboundWriterDecoratorFactory.WriterContext context;
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingBytes = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // 느린 소비자 한도 초과나 소켓 쓰기 실패로 세션을 닫기로 한 뒤에는 더 쌓지도 쓰지도 않는다.
+    private final AtomicBoolean limitExceeded = new AtomicBoolean();
+    // 진행 중인 소켓 쓰기의 시작 시각(0이면 쓰는 중 아님)
+    private final AtomicLong writeStartedAtNanos = new AtomicLong();
+    private final Runnable drainTask = this::drain;
+
+    SerialOutboundSession(WebSocketSession delegate, SerialOutboundWriterDecoratorFactory.WriterContext context) {
+        super(delegate);
+        this.context = context;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (limitExceeded.get() || !isOpen()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        int size = sizeOf(message);
+        pending.add(new Pending(message, size, startedAt));
+        int bytes = pendingBytes.addAndGet(size);
+        context.recordEnqueue(System.nanoTime() - startedAt, bytes);
+        checkLimits(bytes);
+        scheduleDrain();
+    }
+
+    int pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            context.executor().execute(drainTask);
+        } catch (RejectedExecutionException exception) {
+            draining.set(false);
+            log.warn("Outbound writer rejected drain task. sessionId={}", getId());
+        }
+    }
+
+    /**
+     * 큐를 비운다. 한 번에 하나만 실행되며, 끝낸 뒤 그 사이 들어온 메시지가 있으면 다시 예약한다.
+     */
+    private void drain() {
+        try {
+            Pending next;
+            int writes = 0;
+            while (writes < MAX_WRITES_PER_DRAIN && (next = pending.poll()) != null) {
+                if (limitExceeded.get() || !isOpen()) {
+                    pending.clear();
+                    pendingBytes.set(0);
+                    return;
+                }
+                int frames = 1;
+                int bytes = next.bytes();
+                long oldestEnqueuedAt = next.enqueuedAtNanos();
+                long enqueuedAtSum = next.enqueuedAtNanos();
+                WebSocketMessage<?> toWrite = next.message();
+                if (next.message() instanceof TextMessage first && isText(pending.peek())) {
+                    StringBuilder coalesced = new StringBuilder(first.getPayload());
+                    Pending text;
+                    while (isText(text = pending.peek()) && bytes + text.bytes() <= context.maxCoalesceBytes()) {
+                        pending.poll();
+                        coalesced.append(((TextMessage) text.message()).getPayload());
+                        bytes += text.bytes();
+                        enqueuedAtSum += text.enqueuedAtNanos();
+                        frames++;
+                    }
+                    toWrite = new TextMessage(coalesced.toString());
+                }
+                write(toWrite, frames, oldestEnqueuedAt, enqueuedAtSum);
+                writes++;
+                pendingBytes.addAndGet(-bytes);
+            }
+        } finally {
+            draining.set(false);
+            if (!pending.isEmpty() && isOpen()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void write(WebSocketMessage<?> message, int frames, long oldestEnqueuedAt, long enqueuedAtSum) {
+        long startedAt = System.nanoTime();
+        writeStartedAtNanos.set(startedAt);
+        try {
+            getDelegate().sendMessage(message);
+        } catch (IOException | RuntimeException exception) {
+            // 프레임 일부가 빠진 채로 다음 프레임을 계속 쓰면 클라이언트가 유실을 알 수 없으므로 세션을 닫아 재연결시킨다.
+            context.recordWriteFailure();
+            log.debug("Outbound write failed. Closing session. sessionId={}, reason={}", getId(), exception.getMessage());
+            closeUnreliable();
+        } finally {
+            long finishedAt = System.nanoTime();
+            writeStartedAtNanos.set(0L);
+            // 병합된 프레임 각각의 (쓰기 완료 - 적재) 합 = frames x 완료시각 - 적재시각 합
+            context.recordWrite(finishedAt - startedAt, frames,
+                    frames * finishedAt - enqueuedAtSum, finishedAt - oldestEnqueuedAt);
+        }
+    }
+
+    private static boolean isText(Pending pending) {
+        return pending != null && pending.message() instanceof TextMessage;
+    }
+
+    /**
+     * 대기 크기 계산용. Spring transport 한도와 같은 UTF-8 바이트 수를 세되,
+     * TextMessage.getPayloadLength()처럼 바이트 배열을 만들지 않고 문자만 훑어 계산한다.
+     */
+    private static int sizeOf(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text ? utf8Length(text.getPayload()) : message.getPayloadLength();
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int bytes = length;
+        for (int index = 0; index < length; index++) {
+            char c = value.charAt(index);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && index + 1 < length
+                        && Character.isLowSurrogate(value.charAt(index + 1))) {
+                    // surrogate pair 2 char = 4 byte
+                    bytes += 2;
+                    index++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private void checkLimits(int bytes) {
+        long writeStartedAt = writeStartedAtNanos.get();
+        boolean slowWrite = writeStartedAt != 0L && System.nanoTime() - writeStartedAt > context.sendTimeLimitNanos();
+        if (bytes <= context.bufferSizeLimit() && !slowWrite) {
+            return;
+        }
+        if (limitExceeded.compareAndSet(false, true)) {
+            context.recordLimitClose();
+            log.warn("Closing slow websocket consumer. sessionId={}, pendingBytes={}, slowWrite={}", getId(), bytes, slowWrite);
+            closeDelegate();
+        }
+    }
+
+    private void closeUnreliable() {
+        if (limitExceeded.compareAndSet(false, true)) {
+            closeDelegate();
+        }
+    }
+
+    private void closeDelegate() {
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+            // 이미 끊긴 세션
+        }
+    }
+
+    private record Pending(WebSocketMessage<?> message, int bytes, long enqueuedAtNanos) {
+    }
+}
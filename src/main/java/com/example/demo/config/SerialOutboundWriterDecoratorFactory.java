@@ -0,0 +1,234 @@
+package com.example.demo.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * STOMP 하위 핸들러에 넘기는 세션을 SerialOutboundSession으로 감싼다.
+ * - outbound 채널은 broker를 호출한 스레드에서 바로 세션 큐에 넣기만 하고(별도 outbound 풀 없음, WebSocketConfig 참고),
+ *   실제 소켓 쓰기는 writer 실행기가 세션당 하나씩 직렬로 처리한다.
+ * - writer 작업은 "대기 메시지가 있는 세션"당 최대 1개이므로 실행기 큐는 세션 수 이상 자라지 않는다.
+ * - enqueue 시간(outbound 스레드가 막힌 시간), 소켓 쓰기 시간(writer가 막힌 시간), 적재~전송 완료 지연, 병합 비율을 집계한다.
+ */
+@Component
+public class SerialOutboundWriterDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, SerialOutboundSession> sessions = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writerExecutor;
+    private final WriterContext context;
+
+    public SerialOutboundWriterDecoratorFactory(
+            @Value("${chat.ws.outbound.writer.enabled:true}") boolean enabled,
+            @Value("${chat.ws.outbound.writer.threads:0}") int writerThreads,
+            @Value("${chat.ws.outbound.writer.max-coalesce-bytes:65536}") int maxCoalesceBytes,
+            @Value("${chat.ws.transport.send-buffer-size-limit:1048576}") int sendBufferSizeLimit,
+            @Value("${chat.ws.transport.send-time-limit-ms:30000}") int sendTimeLimitMs
+    ) {
+        this.enabled = enabled;
+        // 0 이하면 코어 수 x 2 (소켓 쓰기가 블로킹이므로 코어 수보다 조금 넉넉하게)
+        int threads = writerThreads > 0 ? writerThreads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger sequence = new AtomicInteger();
+        this.writerExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-writer-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.context = new WriterContext(writerExecutor, maxCoalesceBytes, sendBufferSizeLimit,
+                TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs));
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SerialOutboundSession serial = new SerialOutboundSession(session, context);
+                sessions.put(session.getId(), serial);
+                super.afterConnectionEstablished(serial);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(serialOf(session), message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(serialOf(session), exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SerialOutboundSession serial = sessions.remove(session.getId());
+                super.afterConnectionClosed(serial == null ? session : serial, closeStatus);
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public WriterStats stats() {
+        long pendingBytes = 0L;
+        for (SerialOutboundSession session : sessions.values()) {
+            pendingBytes += session.pendingBytes();
+        }
+        return context.stats(enabled, writerExecutor, pendingBytes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdownNow();
+    }
+
+    private WebSocketSession serialOf(WebSocketSession session) {
+        SerialOutboundSession serial = sessions.get(session.getId());
+        return serial == null ? session : serial;
+    }
+
+    /**
+     * 세션 writer들이 공유하는 실행기/한도/메트릭.
+     */
+    static final class WriterContext {
+        private final Executor executor;
+        private final int maxCoalesceBytes;
+        private final int bufferSizeLimit;
+        private final long sendTimeLimitNanos;
+        private final LongAdder enqueuedFrames = new LongAdder();
+        private final LongAdder enqueueNanos = new LongAdder();
+        private final LongAccumulator enqueueMaxNanos = new LongAccumulator(Math::max, 0L);
+        private final LongAccumulator pendingBytesMax = new LongAccumulator(Math::max, 0L);
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder writtenFrames = new LongAdder();
+        private final LongAdder writeNanos = new LongAdder();
+        private final LongAccumulator writeMaxNanos = new LongAccumulator(Math::max, 0L);
+        private final LongAdder deliveryNanos = new LongAdder();
+        private final LongAccumulator deliveryMaxNanos = new LongAccumulator(Math::max, 0L);
+        private final LongAdder writeFailures = new LongAdder();
+        private final LongAdder limitCloses = new LongAdder();
+
+        private WriterContext(Executor executor, int maxCoalesceBytes, int bufferSizeLimit, long sendTimeLimitNanos) {
+            this.executor = executor;
+            this.maxCoalesceBytes = maxCoalesceBytes;
+            this.bufferSizeLimit = bufferSizeLimit;
+            this.sendTimeLimitNanos = sendTimeLimitNanos;
+        }
+
+        Executor executor() {
+            return executor;
+        }
+
+        int maxCoalesceBytes() {
+            return maxCoalesceBytes;
+        }
+
+        int bufferSizeLimit() {
+            return bufferSizeLimit;
+        }
+
+        long sendTimeLimitNanos() {
+            return sendTimeLimitNanos;
+        }
+
+        void recordEnqueue(long elapsedNanos, int pendingBytes) {
+            enqueuedFrames.increment();
+            enqueueNanos.add(elapsedNanos);
+            enqueueMaxNanos.accumulate(elapsedNanos);
+            pendingBytesMax.accumulate(pendingBytes);
+        }
+
+        /**
+         * deliveryNanosSum: 이번 쓰기에 병합된 프레임들의 (쓰기 완료 - 큐 적재) 합, deliveryMaxNanos: 그중 최댓값
+         */
+        void recordWrite(long elapsedNanos, int frames, long deliveryNanosSum, long deliveryMaxNanos) {
+            writes.increment();
+            writtenFrames.add(frames);
+            writeNanos.add(elapsedNanos);
+            writeMaxNanos.accumulate(elapsedNanos);
+            deliveryNanos.add(deliveryNanosSum);
+            this.deliveryMaxNanos.accumulate(deliveryMaxNanos);
+        }
+
+        void recordWriteFailure() {
+            writeFailures.increment();
+        }
+
+        void recordLimitClose() {
+            limitCloses.increment();
+        }
+
+        private WriterStats stats(boolean enabled, ThreadPoolExecutor writerExecutor, long pendingBytes) {
+            long frames = enqueuedFrames.sum();
+            long writeCount = writes.sum();
+            long written = writtenFrames.sum();
+            return new WriterStats(
+                    enabled,
+                    writerExecutor.getPoolSize(),
+                    writerExecutor.getActiveCount(),
+                    writerExecutor.getQueue().size(),
+                    frames,
+                    frames == 0 ? 0L : enqueueNanos.sum() / frames / 1_000L,
+                    enqueueMaxNanos.get() / 1_000L,
+                    writeCount,
+                    writeCount == 0 ? 0.0 : (double) written / writeCount,
+                    writeCount == 0 ? 0L : writeNanos.sum() / writeCount / 1_000L,
+                    writeMaxNanos.get() / 1_000L,
+                    written == 0 ? 0L : deliveryNanos.sum() / written / 1_000L,
+                    deliveryMaxNanos.get() / 1_000L,
+                    pendingBytes,
+                    pendingBytesMax.get(),
+                    writeFailures.sum(),
+                    limitCloses.sum()
+            );
+        }
+    }
+
+    /**
+     * enqueue*: outbound 채널 스레드가 프레임을 넘기는 데 걸린 시간(= 스레드 blocking/lock 대기)
+     * write*: writer 스레드의 소켓 쓰기 시간, framesPerWrite: 쓰기 1회당 병합된 STOMP 프레임 수
+     * delivery*: 프레임이 세션 큐에 들어간 뒤 소켓 쓰기가 끝날 때까지 걸린 시간(writer 대기 + 쓰기)
+     * pendingBytes*: 쓰기 대기 중인 UTF-8 바이트(send-buffer-size-limit과 같은 단위)
+     */
+    public record WriterStats(
+            boolean enabled,
+            int writerThreads,
+            int activeWriters,
+            int sessionsWaitingForWriter,
+            long enqueuedFrames,
+            long enqueueMicrosAvg,
+            long enqueueMicrosMax,
+            long writes,
+            double framesPerWrite,
+            long writeMicrosAvg,
+            long writeMicrosMax,
+            long deliveryMicrosAvg,
+            long deliveryMicrosMax,
+            long pendingBytes,
+            long pendingBytesMaxPerSession,
+            long writeFailures,
+            long slowConsumerCloses
+    ) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.config;
 
+import com.example.demo.service.WatchHistoryEndTracker;
 import com.example.demo.service.WebSocketSessionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
@@ -9,7 +10,9 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
 import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @RequiredArgsConstructor
@@ -17,6 +20,7 @@ public class TrackingWebSocketHandlerDecoratorFactory implements WebSocketHandle
 
     private final WebSocketSessionRegistry sessionRegistry;
     private final WebSocketLifecycleProperties lifecycleProperties;
+    private final WatchHistoryEndTracker watchHistoryEndTracker;
 
     @Override
     public WebSocketHandler decorate(WebSocketHandler handler) {
@@ -25,7 +29,8 @@ public class TrackingWebSocketHandlerDecoratorFactory implements WebSocketHandle
             @Override
             public void afterConnectionEstablished(WebSocketSession session) throws Exception {
                 // 세션 만료 시각(TTL)을 함께 등록해 drain/강제종료 정책과 연계한다.
-                Instant expiresAt = Instant.now().plus(lifecycleProperties.getTtl());
+                // 배포/drain 직후 함께 재접속한 세션들이 같은 시각에 다시 만료되지 않도록 TTL에 jitter를 준다.
+                Instant expiresAt = Instant.now().plus(jitteredTtl());
                 sessionRegistry.register(session, expiresAt);
                 super.afterConnectionEstablished(session);
             }
@@ -33,8 +38,24 @@ public class TrackingWebSocketHandlerDecoratorFactory implements WebSocketHandle
             @Override
             public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
                 sessionRegistry.unregister(session.getId());
+                // QUIT 없이 끊긴 세션(새로고침/강제 종료)도 시청 종료로 기록한다.
+                watchHistoryEndTracker.viewingEnded(session.getId());
                 super.afterConnectionClosed(session, closeStatus);
             }
         };
     }
+
+    /**
+     * [ttl - jitter, ttl] 구간의 균등분포 TTL.
+     * jitter는 ttl의 절반을 넘지 않게 제한해 너무 짧은 세션이 생기지 않게 한다.
+     */
+    private Duration jitteredTtl() {
+        Duration ttl = lifecycleProperties.getTtl();
+        Duration jitter = lifecycleProperties.getTtlJitter();
+        long jitterMs = jitter == null ? 0L : Math.min(jitter.toMillis(), ttl.toMillis() / 2);
+        if (jitterMs <= 0) {
+            return ttl;
+        }
+        return ttl.minusMillis(ThreadLocalRandom.current().nextLong(jitterMs + 1));
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "chat.ws.admission")
+public class WebSocketAdmissionProperties {
+
+    private boolean enabled = true;
+    // 노드당 초당 허용 handshake 수와 순간 허용량(토큰 버킷)
+    private double handshakesPerSecond = 50;
+    private int handshakeBurst = 100;
+    // 동시에 진행 중인 handshake 상한(SockJS 세션 생성/registry 등록 구간)
+    private int maxConcurrentHandshakes = 32;
+    // 503 응답의 Retry-After 범위. 실제 값은 현재 거절량에 비례해 이 범위 안에서 계산된다.
+    private Duration retryAfterMin = Duration.ofSeconds(1);
+    private Duration retryAfterMax = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getHandshakesPerSecond() {
+        return handshakesPerSecond;
+    }
+
+    public void setHandshakesPerSecond(double handshakesPerSecond) {
+        this.handshakesPerSecond = handshakesPerSecond;
+    }
+
+    public int getHandshakeBurst() {
+        return handshakeBurst;
+    }
+
+    public void setHandshakeBurst(int handshakeBurst) {
+        this.handshakeBurst = handshakeBurst;
+    }
+
+    public int getMaxConcurrentHandshakes() {
+        return maxConcurrentHandshakes;
+    }
+
+    public void setMaxConcurrentHandshakes(int maxConcurrentHandshakes) {
+        this.maxConcurrentHandshakes = maxConcurrentHandshakes;
+    }
+
+    public Duration getRetryAfterMin() {
+        return retryAfterMin;
+    }
+
+    public void setRetryAfterMin(Duration retryAfterMin) {
+        this.retryAfterMin = retryAfterMin;
+    }
+
+    public Duration getRetryAfterMax() {
+        return retryAfterMax;
+    }
+
+    public void setRetryAfterMax(Duration retryAfterMax) {
+        this.retryAfterMax = retryAfterMax;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo.config;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -12,11 +13,29 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 @Configuration
 @EnableWebSocketMessageBroker
-@EnableConfigurationProperties(WebSocketLifecycleProperties.class)
+@EnableConfigurationProperties({
+        WebSocketLifecycleProperties.class,
+        WebSocketAdmissionProperties.class,
+        WebSocketInboundRateLimitProperties.class
+})
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String[] ALLOWED_ORIGIN_PATTERNS = {
+            "http://localhost:*",
+            "http://127.0.0.1:*",
+            "https://*.ngrok-free.app",
+            "https://*.ngrok-free.dev"
+    };
+
     private final DrainingHandshakeInterceptor drainingHandshakeInterceptor;
     private final TrackingWebSocketHandlerDecoratorFactory trackingWebSocketHandlerDecoratorFactory;
+    private final InboundRateLimitInterceptor inboundRateLimitInterceptor;
+    private final SerialOutboundWriterDecoratorFactory serialOutboundWriterDecoratorFactory;
+    // SockJS 없이 raw WebSocket 위에서 STOMP를 쓰는 endpoint(SockJS 프레이밍/세션별 heartbeat 작업 없음)
+    @Value("${chat.ws.native.enabled:true}")
+    private boolean nativeEndpointEnabled;
+    @Value("${chat.ws.native.path:/ws/chat-native}")
+    private String nativeEndpointPath;
     // 전송 계층 튜닝값: 대형 payload/느린 네트워크 상황에서 끊김을 완화하기 위한 설정
     @Value("${chat.ws.transport.message-size-limit:65536}")
     private int messageSizeLimit;
@@ -26,6 +45,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     private int sendTimeLimitMs;
     // STOMP in/out 채널 실행기 튜닝값
     // 목적: fan-out 테스트 중 채널 작업 큐/스레드 병목을 설정으로 제어하기 위함
+    // outbound 풀 설정은 serial writer를 끈 경우(chat.ws.outbound.writer.enabled=false)에만 쓴다.
     @Value("${chat.ws.channel.inbound.core-pool-size:8}")
     private int inboundCorePoolSize;
     @Value("${chat.ws.channel.inbound.max-pool-size:64}")
@@ -41,35 +61,49 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     public WebSocketConfig(
             DrainingHandshakeInterceptor drainingHandshakeInterceptor,
-            TrackingWebSocketHandlerDecoratorFactory trackingWebSocketHandlerDecoratorFactory
+            TrackingWebSocketHandlerDecoratorFactory trackingWebSocketHandlerDecoratorFactory,
+            InboundRateLimitInterceptor inboundRateLimitInterceptor,
+            SerialOutboundWriterDecoratorFactory serialOutboundWriterDecoratorFactory
     ) {
         this.drainingHandshakeInterceptor = drainingHandshakeInterceptor;
         this.trackingWebSocketHandlerDecoratorFactory = trackingWebSocketHandlerDecoratorFactory;
+        this.inboundRateLimitInterceptor = inboundRateLimitInterceptor;
+        this.serialOutboundWriterDecoratorFactory = serialOutboundWriterDecoratorFactory;
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.enableSimpleBroker("/sub"); // 메시지를 구독하는 요청(sub)
         registry.setApplicationDestinationPrefixes("/pub"); // 메시지를 발행하는 요청(pub)
+        // serial writer를 끈 경우에만 outbound 풀을 쓰므로, 그때만 같은 세션 프레임 순서를 세션 단위로 보장한다.
+        // writer를 켜면 outbound 채널이 호출 스레드에서 바로 세션 큐에 넣으므로 순서가 그대로 유지된다.
+        if (!serialOutboundWriterDecoratorFactory.isEnabled()) {
+            registry.setPreservePublishOrder(true);
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws/chat")
-                .setAllowedOriginPatterns(
-                        "http://localhost:*",
-                        "http://127.0.0.1:*",
-                        "https://*.ngrok-free.app",
-                        "https://*.ngrok-free.dev"
-                )
+                .setAllowedOriginPatterns(ALLOWED_ORIGIN_PATTERNS)
                 .addInterceptors(drainingHandshakeInterceptor)
                 .withSockJS()
                 .setSessionCookieNeeded(false);
+        // 같은 STOMP 파이프라인(inbound 채널, broker, room registry, fan-out)을 공유하고 전송 계층만 다르다.
+        // WebSocket을 직접 쓸 수 있는 클라이언트는 이 endpoint로 붙어 SockJS 오버헤드를 피한다.
+        if (nativeEndpointEnabled) {
+            registry.addEndpoint(nativeEndpointPath)
+                    .setAllowedOriginPatterns(ALLOWED_ORIGIN_PATTERNS)
+                    .addInterceptors(drainingHandshakeInterceptor);
+        }
     }
 
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
         registry
+                // 먼저 등록한 factory가 안쪽(STOMP 핸들러 쪽)이다. tracking은 원본 세션을 registry에 등록하고,
+                // serial writer는 STOMP 핸들러에 세션별 직렬 outbound 큐로 감싼 세션을 넘긴다.
+                .addDecoratorFactory(serialOutboundWriterDecoratorFactory)
                 .addDecoratorFactory(trackingWebSocketHandlerDecoratorFactory)
                 // transport 한도는 환경변수로 노출해 실험/운영에서 빠르게 조정 가능하게 한다.
                 .setMessageSizeLimit(messageSizeLimit)
@@ -79,6 +113,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 속도 제한은 실행기 큐에 들어가기 전(preSend)에 판정해 폭주 클라이언트가 큐를 채우지 못하게 한다.
+        registration.interceptors(inboundRateLimitInterceptor);
         registration.taskExecutor()
                 .corePoolSize(inboundCorePoolSize)
                 .maxPoolSize(inboundMaxPoolSize)
@@ -87,6 +123,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (serialOutboundWriterDecoratorFactory.isEnabled()) {
+            // outbound 채널 작업은 STOMP 인코딩 후 세션 큐 적재뿐이고 소켓 쓰기는 writer 실행기가 한다.
+            // 여기에 풀을 두면 프레임마다 스레드 전환과 큐가 한 번 더 생기고 순서 보장(preserve publish order)까지 필요해지므로 호출 스레드에서 실행한다.
+            registration.executor(new SyncTaskExecutor());
+            return;
+        }
         registration.taskExecutor()
                 .corePoolSize(outboundCorePoolSize)
                 .maxPoolSize(outboundMaxPoolSize)
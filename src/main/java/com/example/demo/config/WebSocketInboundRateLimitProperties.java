@@ -0,0 +1,86 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "chat.ws.inbound-rate")
+public class WebSocketInboundRateLimitProperties {
+
+    private boolean enabled = true;
+    // 세션(연결) 하나가 보낼 수 있는 초당 SEND 프레임 수와 순간 허용량(토큰 버킷)
+    private double sessionMessagesPerSecond = 5;
+    private int sessionBurst = 10;
+    // 같은 사용자가 여러 연결(탭)로 나눠 보내는 경우를 막기 위한 sender 단위 한도(인증 principal 기준, 없으면 세션 안 sender)
+    private double senderMessagesPerSecond = 5;
+    private int senderBurst = 10;
+    // violation-window 안에 이 횟수 이상 한도를 넘긴 세션은 강제로 닫는다(0 이하면 닫지 않음)
+    private int closeAfterViolations = 50;
+    private Duration violationWindow = Duration.ofSeconds(10);
+    // 이 시간 동안 메시지가 없던 sender 버킷은 정리한다
+    private Duration senderIdleEviction = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSessionMessagesPerSecond() {
+        return sessionMessagesPerSecond;
+    }
+
+    public void setSessionMessagesPerSecond(double sessionMessagesPerSecond) {
+        this.sessionMessagesPerSecond = sessionMessagesPerSecond;
+    }
+
+    public int getSessionBurst() {
+        return sessionBurst;
+    }
+
+    public void setSessionBurst(int sessionBurst) {
+        this.sessionBurst = sessionBurst;
+    }
+
+    public double getSenderMessagesPerSecond() {
+        return senderMessagesPerSecond;
+    }
+
+    public void setSenderMessagesPerSecond(double senderMessagesPerSecond) {
+        this.senderMessagesPerSecond = senderMessagesPerSecond;
+    }
+
+    public int getSenderBurst() {
+        return senderBurst;
+    }
+
+    public void setSenderBurst(int senderBurst) {
+        this.senderBurst = senderBurst;
+    }
+
+    public int getCloseAfterViolations() {
+        return closeAfterViolations;
+    }
+
+    public void setCloseAfterViolations(int closeAfterViolations) {
+        this.closeAfterViolations = closeAfterViolations;
+    }
+
+    public Duration getViolationWindow() {
+        return violationWindow;
+    }
+
+    public void setViolationWindow(Duration violationWindow) {
+        this.violationWindow = violationWindow;
+    }
+
+    public Duration getSenderIdleEviction() {
+        return senderIdleEviction;
+    }
+
+    public void setSenderIdleEviction(Duration senderIdleEviction) {
+        this.senderIdleEviction = senderIdleEviction;
+    }
+}
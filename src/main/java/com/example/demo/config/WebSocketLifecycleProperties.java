@@ -8,7 +8,15 @@ import java.time.Duration;
 public class WebSocketLifecycleProperties {
 
     private Duration ttl = Duration.ofMinutes(15);
+    // 세션별 TTL을 [ttl - ttlJitter, ttl] 구간에서 무작위로 배정해 동시 접속 세션의 만료 시각을 분산한다.
+    private Duration ttlJitter = Duration.ofMinutes(3);
+    // TTL 예고/만료 close를 초당 이 개수 이하로 처리해 재연결 폭주를 upstream 전체로 퍼뜨리지 않는다.
+    private int rotationMaxPerSecond = 100;
+    // TTL 예고/만료 close tick 간격. 초당 상한을 이 간격으로 나눠 처리해 한 순간에 몰리지 않게 한다.
+    private Duration rotationInterval = Duration.ofMillis(100);
     private Duration ttlNoticeBefore = Duration.ofSeconds(30);
+    // TTL 만료 close가 실패한 세션을 다시 닫으러 가기까지의 대기 시간
+    private Duration closeRetryBackoff = Duration.ofSeconds(5);
     private Duration drainForceCloseAfter = Duration.ofMinutes(2);
     private Duration schedulerInterval = Duration.ofSeconds(5);
     private int reconnectRetryAfterMs = 2_000;
@@ -22,6 +30,30 @@ public class WebSocketLifecycleProperties {
         this.ttl = ttl;
     }
 
+    public Duration getTtlJitter() {
+        return ttlJitter;
+    }
+
+    public void setTtlJitter(Duration ttlJitter) {
+        this.ttlJitter = ttlJitter;
+    }
+
+    public int getRotationMaxPerSecond() {
+        return rotationMaxPerSecond;
+    }
+
+    public void setRotationMaxPerSecond(int rotationMaxPerSecond) {
+        this.rotationMaxPerSecond = rotationMaxPerSecond;
+    }
+
+    public Duration getRotationInterval() {
+        return rotationInterval;
+    }
+
+    public void setRotationInterval(Duration rotationInterval) {
+        this.rotationInterval = rotationInterval;
+    }
+
     public Duration getTtlNoticeBefore() {
         return ttlNoticeBefore;
     }
@@ -30,6 +62,14 @@ public class WebSocketLifecycleProperties {
         this.ttlNoticeBefore = ttlNoticeBefore;
     }
 
+    public Duration getCloseRetryBackoff() {
+        return closeRetryBackoff;
+    }
+
+    public void setCloseRetryBackoff(Duration closeRetryBackoff) {
+        this.closeRetryBackoff = closeRetryBackoff;
+    }
+
     public Duration getDrainForceCloseAfter() {
         return drainForceCloseAfter;
     }
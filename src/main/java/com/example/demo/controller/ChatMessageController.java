@@ -3,14 +3,23 @@ package com.example.demo.controller;
 import com.example.demo.model.ChatMessage;
 import com.example.demo.model.ChatRoom;
 import com.example.demo.service.ChatRoomSessionTracker;
+import com.example.demo.service.ChatResumeService;
 import com.example.demo.service.ChatRoomService;
+import com.example.demo.service.InboundRateLimiter;
 import com.example.demo.service.MessageBrokerService;
+import com.example.demo.service.RoomAffinityService;
+import com.example.demo.service.RoomSlowModeService;
+import com.example.demo.service.WatchHistoryEndTracker;
+import com.example.demo.service.WebSocketControlService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.util.Map;
+import java.util.UUID;
+
 @RequiredArgsConstructor
 @Controller
 @Slf4j
@@ -19,6 +28,11 @@ public class ChatMessageController {
     private final MessageBrokerService messageBrokerService;
     private final ChatRoomService chatRoomService;
     private final ChatRoomSessionTracker chatRoomSessionTracker;
+    private final RoomAffinityService roomAffinityService;
+    private final WebSocketControlService controlService;
+    private final ChatResumeService chatResumeService;
+    private final RoomSlowModeService roomSlowModeService;
+    private final WatchHistoryEndTracker watchHistoryEndTracker;
 
     /**
      * WebSocket "/pub/chat/message"로 들어오는 메시징을 처리
@@ -26,15 +40,33 @@ public class ChatMessageController {
     @MessageMapping("/chat/message")
     public void message(ChatMessage message, SimpMessageHeaderAccessor headerAccessor) {
         String sessionId = extractSessionId(headerAccessor);
+        ChatRoom chatRoom;
         try {
-            validateAndNormalizeMessage(message, sessionId);
+            chatRoom = validateAndNormalizeMessage(message, sessionId);
         } catch (IllegalArgumentException exception) {
             log.warn("Ignored invalid websocket message. sessionId={}, reason={}", sessionId, exception.getMessage());
             return;
         }
 
+        // slow mode: stream append/PUBLISH 전에 사용자 간격과 room 상한을 검사한다(ENTER/QUIT은 제외).
+        if (ChatMessage.MessageType.TALK.equals(message.getType())) {
+            RoomSlowModeService.Decision decision = roomSlowModeService.tryAdmit(chatRoom, slowModeKey(headerAccessor, sessionId));
+            if (!decision.admitted()) {
+                if (!isBlank(sessionId)) {
+                    controlService.sendSlowModeNotice(sessionId, message.getRoomId(), decision.rejectReason(), decision.retryAfterMs());
+                }
+                log.debug("Rejected by slow mode. sessionId={}, roomId={}, reason={}",
+                        sessionId, message.getRoomId(), decision.rejectReason());
+                return;
+            }
+        }
+
         if (ChatMessage.MessageType.ENTER.equals(message.getType())) {
-            handleEnter(message, sessionId);
+            boolean resumed = handleEnter(message, sessionId, headerAccessor);
+            // 빈틈 없이 resume한 세션은 같은 사용자의 재접속이므로 입장 메시지를 다시 방송하지 않는다.
+            if (resumed) {
+                return;
+            }
         } else if (ChatMessage.MessageType.QUIT.equals(message.getType())) {
             handleQuit(message, sessionId);
         }
@@ -42,22 +74,64 @@ public class ChatMessageController {
         messageBrokerService.publish(message.getRoomId(), message);
     }
 
-    private void handleEnter(ChatMessage message, String sessionId) {
-        // 지금 session에서 구독중인 방이 있는지 확인한다.
-        String previousRoomId = chatRoomSessionTracker.currentRoomOfSession(sessionId);
-        // 중복 ENTER가 들어와도 refcount가 중복 증가하지 않도록 바인딩 성공 시에만 입장 처리한다.
+    /**
+     * 반환값: resume 토큰의 빈틈을 버퍼/stream에서 실제로 메웠으면 true(ENTER 방송 생략 대상).
+     * 중복 ENTER이거나 토큰을 찾지 못해 truncated replay로 끝났으면 false로 평소처럼 입장을 방송한다.
+     */
+    private boolean handleEnter(ChatMessage message, String sessionId, SimpMessageHeaderAccessor headerAccessor) {
+        long enterStartedAtNanos = System.nanoTime();
+        // 이후 SEND 프레임은 역직렬화 전에 sender 단위로도 속도 제한되도록 세션에 sender를 기록한다.
+        // 세션의 첫 ENTER 값만 남긴다(이후 ENTER로 sender를 바꿔 제한을 우회하지 못하게).
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes != null && message.getSender() != null) {
+            sessionAttributes.putIfAbsent(InboundRateLimiter.SENDER_ATTRIBUTE, message.getSender());
+        }
+        // 시청 종료 시각은 이 세션의 QUIT/연결 종료로 정해진다. 시청 정보는 방송 payload에 싣지 않는다.
+        Long videoId = message.getVideoId();
+        String watchStartedAt = message.getWatchStartedAt();
+        message.setVideoId(null);
+        message.setWatchStartedAt(null);
+        String resumeFromMsgId = message.getResumeFromMsgId();
+        // resume 토큰은 입장 처리에만 쓰고 방송 payload에는 싣지 않는다.
+        message.setResumeFromMsgId(null);
+        // 중복 ENTER가 들어와도 입장 처리가 반복되지 않도록 바인딩 성공 시에만 입장 처리한다.
+        // room 이동(이전 room 해제)과 첫 입장 시 Redis topic 구독은 tracker의 점유 전이 이벤트로 처리된다.
         boolean firstEnterForSession = chatRoomSessionTracker.bindSessionToRoom(sessionId, message.getRoomId());
         if (!firstEnterForSession) {
             log.debug("Ignored duplicated ENTER. sessionId={}, roomId={}", sessionId, message.getRoomId());
-            return;
-        }
-        // websocket 1개가 room을 이동한 경우 기존 room refcount를 먼저 감소시킨다.
-        if (previousRoomId != null && !previousRoomId.equals(message.getRoomId())) {
-            chatRoomService.leaveChatRoom(previousRoomId);
+            message.setMessage(message.getSender() + "님이 입장하셨습니다.");
+            return false;
         }
-        // 입장 메시지 처리: Redis Topic 구독
-        chatRoomService.enterChatRoom(message.getRoomId());
+        // 바인딩에 성공한 세션만 시청 시작으로 본다(중복/거절된 ENTER가 시청을 덮어쓰지 않게).
+        watchHistoryEndTracker.viewingStarted(sessionId, message.getSender(), videoId, watchStartedAt);
         message.setMessage(message.getSender() + "님이 입장하셨습니다.");
+        // 이 노드가 room의 선호 노드가 아니면 선호 노드로 옮기라는 힌트를 보낸다(입장 자체는 정상 처리).
+        roomAffinityService.redirectFor(message.getRoomId()).ifPresent(target -> {
+            controlService.sendRedirectSignal(sessionId, message.getRoomId(), target.nodeId(), target.url());
+            roomAffinityService.recordRedirectHint();
+        });
+        if (isBlank(resumeFromMsgId)) {
+            // 새 입장: 다음 메시지를 기다리지 않도록 최근 메시지를 한 프레임으로 먼저 보낸다.
+            chatResumeService.backfill(sessionId, message.getRoomId(), enterStartedAtNanos);
+            return false;
+        }
+        ChatResumeService.ReplayResult replay = chatResumeService.replay(sessionId, message.getRoomId(), resumeFromMsgId.trim());
+        log.debug("Resumed session. sessionId={}, roomId={}, replayed={}, resolved={}",
+                sessionId, message.getRoomId(), replay.replayed(), replay.resolved());
+        return replay.resolved();
+    }
+
+    /**
+     * slow mode 사용자 간격 키. ENTER 때 세션에 묶인 sender를 쓰고, 없으면 세션 단위로 묶는다.
+     * TALK 프레임의 sender는 클라이언트가 매번 바꿀 수 있으므로 쓰지 않는다.
+     */
+    private static String slowModeKey(SimpMessageHeaderAccessor headerAccessor, String sessionId) {
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        Object boundSender = sessionAttributes == null ? null : sessionAttributes.get(InboundRateLimiter.SENDER_ATTRIBUTE);
+        if (boundSender instanceof String sender && !sender.isBlank()) {
+            return "sender:" + sender;
+        }
+        return "session:" + sessionId;
     }
 
     private void handleQuit(ChatMessage message, String sessionId) {
@@ -67,13 +141,12 @@ public class ChatMessageController {
             log.debug("Ignored duplicated QUIT. sessionId={}, roomId={}", sessionId, message.getRoomId());
             return;
         }
-        // 퇴장 메시지 처리: 로컬 참조 카운트를 낮춰 유휴 topic 정리 대상에 포함
-        // 즉시 unsubscribe 하지 않고 ChatRoomService 스케줄러가 유예시간 후 정리한다.
-        chatRoomService.leaveChatRoom(message.getRoomId());
+        watchHistoryEndTracker.viewingEnded(sessionId);
+        // 마지막 세션이 나가면 tracker 이벤트로 ChatRoomService가 유예시간 뒤 topic 해지를 예약한다.
         message.setMessage(message.getSender() + "님이 퇴장하셨습니다.");
     }
 
-    private void validateAndNormalizeMessage(ChatMessage message, String sessionId) {
+    private ChatRoom validateAndNormalizeMessage(ChatMessage message, String sessionId) {
         if (message == null) {
             throw new IllegalArgumentException("message payload is required");
         }
@@ -99,6 +172,10 @@ public class ChatMessageController {
         if (message.getMessage() != null) {
             message.setMessage(message.getMessage().trim());
         }
+        // resume 토큰/유실 추적 기준이 되도록 msgId가 없는 메시지에는 서버에서 부여한다.
+        if (isBlank(message.getMsgId())) {
+            message.setMsgId(UUID.randomUUID().toString());
+        }
 
         // TALK은 실제 사용자 본문이 반드시 필요하다. ENTER/QUIT은 서버 메시지로 덮어쓴다.
         if (ChatMessage.MessageType.TALK.equals(message.getType()) && isBlank(message.getMessage())) {
@@ -110,6 +187,7 @@ public class ChatMessageController {
         if (chatRoom == null) {
             throw new IllegalArgumentException("chat room not found: " + message.getRoomId());
         }
+        return chatRoom;
     }
 
     private String extractSessionId(SimpMessageHeaderAccessor headerAccessor) {
@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.entity.WatchHistory;
 import com.example.demo.model.ChatRoom;
 import com.example.demo.model.DTO.WatchHistoryDTO;
+import com.example.demo.service.ChatRoomIndex;
 import com.example.demo.service.ChatRoomService;
 import com.example.demo.service.WatchHistoryService;
 import lombok.RequiredArgsConstructor;
@@ -20,10 +21,24 @@ public class ChatRoomController {
 
     private final ChatRoomService chatRoomService;
 
-    // 모든 채팅방 목록 반환
+    // 모든 채팅방 목록 반환 (메모리 인덱스 + ETag, If-None-Match 일치 시 304)
     @GetMapping("/rooms")
-    public List<ChatRoom> findAllRoom() {
-        return chatRoomService.findAllRoom();
+    public ResponseEntity<List<ChatRoom>> findAllRoom() {
+        return ResponseEntity.ok()
+                .eTag(chatRoomService.roomListEtag())
+                .body(chatRoomService.findAllRoom());
+    }
+
+    // 채팅방 목록 페이지 조회: cursor 기반(keyset), sort=id|viewers
+    @GetMapping("/rooms/page")
+    public ResponseEntity<ChatRoomIndex.RoomPage> findRoomPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "id") String sort) {
+        ChatRoomIndex.RoomPage page = chatRoomService.findRoomPage(cursor, size, ChatRoomService.RoomSort.from(sort));
+        return ResponseEntity.ok()
+                .eTag(page.etag())
+                .body(page);
     }
 
     // 특정 채팅방 반환
@@ -48,6 +63,18 @@ public class ChatRoomController {
         return chatRoomService.createChatRoom(name.trim());
     }
 
+    // 채팅방 slow mode 설정: 사용자별 최소 TALK 간격(초), room 전체 초당 TALK 상한. 0이면 해당 제한 해제
+    @PutMapping("/room/{roomId}/slow-mode")
+    public ChatRoom updateSlowMode(
+            @PathVariable String roomId,
+            @RequestParam(defaultValue = "0") int intervalSeconds,
+            @RequestParam(defaultValue = "0") double maxMessagesPerSecond) {
+        if (isBlank(roomId)) {
+            throw new IllegalArgumentException("roomId is required");
+        }
+        return chatRoomService.updateSlowMode(roomId.trim(), intervalSeconds, maxMessagesPerSecond);
+    }
+
     //TODO : controller 단에서 비즈니스 로직이?
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
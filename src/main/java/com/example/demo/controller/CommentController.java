@@ -1,16 +1,25 @@
 package com.example.demo.controller;
 
 import com.example.demo.entity.Comment;
+import com.example.demo.model.DTO.CommentPageDTO;
 import com.example.demo.service.CommentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponseException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/comments")
@@ -18,16 +27,20 @@ import java.util.List;
 public class CommentController {
 
     private static final Logger logger = LoggerFactory.getLogger(CommentController.class);
+    private static final String EXPORT_RETRY_AFTER_SECONDS = "5";
 
     @Autowired
     CommentService commentService;
 
-    @Operation(summary = "사용자 댓글 조회", description = "특정 사용자의 모든 댓글을 조회합니다")
+    @Operation(summary = "사용자 댓글 조회", description = "특정 사용자의 댓글을 최신순으로 페이지 조회합니다. 다음 페이지는 응답의 nextCursor를 cursor로 넘깁니다")
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Comment>> getCommentsWithUserId(@PathVariable String userId) {
+    public ResponseEntity<CommentPageDTO> getCommentsWithUserId(@PathVariable String userId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "50") int size) {
         try {
-            List<Comment> comments = commentService.getUserComments(userId);
-            return ResponseEntity.ok(comments);
+            return ResponseEntity.ok(commentService.getUserComments(userId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -45,24 +58,73 @@ public class CommentController {
     }
 
     @GetMapping("/room/{roomId}")
-    @Operation(summary = "영상 댓글 전체조회", description = "특정 영상의 모든 댓글을 조회합니다")
-    public ResponseEntity<List<Comment>> getCommentsFromRoomId(@PathVariable String roomId) {
+    @Operation(summary = "영상 댓글 조회", description = "특정 영상의 댓글을 최신순으로 페이지 조회합니다(최대 200개). 다음 페이지는 응답의 nextCursor를 cursor로 넘깁니다")
+    public ResponseEntity<CommentPageDTO> getCommentsFromRoomId(@PathVariable String roomId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "50") int size) {
         try {
-            List<Comment> comments = commentService.getCommentsWithRoomId(roomId);
-            return ResponseEntity.ok(comments);
+            return ResponseEntity.ok(commentService.getCommentsWithRoomId(roomId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @GetMapping(value = "/room/{roomId}/export", produces = "application/x-ndjson")
+    @Operation(summary = "영상 댓글 내보내기", description = "특정 영상의 댓글을 작성순 NDJSON으로 스트리밍합니다. from(포함)/to(제외)는 ISO-8601 시각. 동시 export가 상한이면 503")
+    public WebAsyncTask<Void> exportRoomComments(
+            @PathVariable String roomId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            HttpServletResponse response) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (!commentService.tryAcquireExportSlot()) {
+            ErrorResponseException busy = new ErrorResponseException(HttpStatus.SERVICE_UNAVAILABLE);
+            busy.getHeaders().set(HttpHeaders.RETRY_AFTER, EXPORT_RETRY_AFTER_SECONDS);
+            throw busy;
+        }
+        // callable의 finally와 요청 완료 콜백(타임아웃/연결 끊김 포함) 중 먼저 오는 쪽이 한 번만 돌려준다.
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseSlot = () -> {
+            if (released.compareAndSet(false, true)) {
+                commentService.releaseExportSlot();
+            }
+        };
+        try {
+            response.setContentType("application/x-ndjson");
+            WebAsyncTask<Void> task = new WebAsyncTask<>(
+                    commentService.exportTimeoutMillis(),
+                    commentService.exportExecutor(),
+                    () -> {
+                        try {
+                            commentService.exportRoomComments(roomId, from, to, response.getOutputStream());
+                            return null;
+                        } finally {
+                            releaseSlot.run();
+                        }
+                    });
+            task.onCompletion(releaseSlot);
+            return task;
+        } catch (RuntimeException e) {
+            releaseSlot.run();
+            throw e;
+        }
+    }
+
     @GetMapping("/room/{roomId}/date/{startDate}/{endDate}")
-    @Operation(summary = "영상 댓글 기간별 조회", description = "특정 영상의 댓글을 범위 조회 합니다. 영상 건너뛰기 시에 사용")
-    public ResponseEntity<List<Comment>> getCommentsWithRoomIdAndDateRange(@PathVariable String roomId,
-                                                                                 @PathVariable String startDate,
-                                                                                 @PathVariable String endDate) {
+    @Operation(summary = "영상 댓글 기간별 조회", description = "특정 영상의 댓글을 범위 조회 합니다. 영상 건너뛰기 시에 사용. startDate/endDate(포함)는 ISO-8601 시각")
+    public ResponseEntity<List<Comment>> getCommentsWithRoomIdAndDateRange(
+            @PathVariable String roomId,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant startDate,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant endDate) {
         try {
-            List<Comment> comments = commentService.getCommentsWithRoomIdAndDateRange( roomId, startDate, endDate);
+            List<Comment> comments = commentService.getCommentsWithRoomIdAndDateRange(roomId, startDate, endDate);
             return ResponseEntity.ok(comments);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
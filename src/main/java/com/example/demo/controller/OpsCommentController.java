@@ -0,0 +1,35 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.CommentTimelineCache;
+import com.example.demo.service.VodReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/ops/comments")
+@RequiredArgsConstructor
+public class OpsCommentController {
+
+    private final CommentTimelineCache commentTimelineCache;
+    private final VodReplayService vodReplayService;
+
+    /**
+     * 영상 건너뛰기 댓글 캐시 상태.
+     * bucket 적중률(bucketHitRatio)과 seek 응답 지연(avg/max μs), 미리 읽은 bucket 수를 확인한다.
+     */
+    @GetMapping("/timeline-cache")
+    public CommentTimelineCache.TimelineCacheStats timelineCache() {
+        return commentTimelineCache.stats();
+    }
+
+    /**
+     * 다시보기 댓글 재생 상태.
+     * 재생 중 세션 수, 보낸 프레임/댓글 수, 미리 읽기 조회 수와 평균 지연(μs), seek 수를 확인한다.
+     */
+    @GetMapping("/vod-replay")
+    public VodReplayService.VodReplayStats vodReplay() {
+        return vodReplayService.stats();
+    }
+}
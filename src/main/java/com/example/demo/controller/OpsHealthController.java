@@ -0,0 +1,30 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.NodeHealthService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/ops")
+@RequiredArgsConstructor
+public class OpsHealthController {
+
+    private final NodeHealthService nodeHealthService;
+
+    /**
+     * 노드 health 점수 조회.
+     * 새 연결을 받을 수 없는 상태면 503을 반환해 LB health check가 이 노드를 제외할 수 있게 한다.
+     */
+    @GetMapping("/health")
+    public ResponseEntity<NodeHealthService.HealthSnapshot> health() {
+        NodeHealthService.HealthSnapshot snapshot = nodeHealthService.snapshot();
+        HttpStatus status = snapshot.acceptingConnections() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header("X-Node-Health-Score", Integer.toString(snapshot.score()))
+                .body(snapshot);
+    }
+}
@@ -1,12 +1,17 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.ChatRoom;
+import com.example.demo.pubsub.RoomFanoutHandles;
+import com.example.demo.service.ChatRoomIndex;
 import com.example.demo.service.ChatRoomService;
 import com.example.demo.service.ChatRoomSessionTracker;
+import com.example.demo.service.RoomAffinityService;
+import com.example.demo.service.RoomPresenceService;
+import com.example.demo.service.RoomSlowModeService;
 import com.example.demo.service.WebSocketDrainService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
@@ -20,27 +25,35 @@ import java.util.Map;
 public class OpsRoomStatusController {
 
     private final ChatRoomService chatRoomService;
-    private final ChatRoomSessionTracker chatRoomSessionTracker;
     private final WebSocketDrainService drainService;
+    private final ChatRoomSessionTracker chatRoomSessionTracker;
+    private final RoomPresenceService roomPresenceService;
+    private final RoomAffinityService roomAffinityService;
+    private final RoomSlowModeService roomSlowModeService;
+    private final RoomFanoutHandles roomFanoutHandles;
 
+    // 전체 room을 한 번에 내리지 않고 클러스터 시청자 수 내림차순 페이지로 조회한다.
     @GetMapping("/status")
-    public Map<String, Object> status() {
-        List<ChatRoom> rooms = chatRoomService.findAllRoom();
+    public Map<String, Object> status(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "200") int size) {
+        ChatRoomIndex.RoomPage page = chatRoomService.findRoomPage(cursor, size, ChatRoomService.RoomSort.VIEWERS);
         Map<String, ChatRoomService.TopicSnapshot> topicSnapshots = chatRoomService.topicSnapshots();
-        Map<String, Integer> wsCounts = chatRoomSessionTracker.roomSessionCounts();
 
-        List<Map<String, Object>> rows = rooms.stream()
+        List<Map<String, Object>> rows = page.rooms().stream()
                 .map(room -> {
-                    ChatRoomService.TopicSnapshot topic = topicSnapshots.get(room.getRoomId());
+                    ChatRoomService.TopicSnapshot topic = topicSnapshots.get(room.roomId());
                     Map<String, Object> row = new LinkedHashMap<>();
-                    row.put("roomId", room.getRoomId());
-                    row.put("name", room.getName());
-                    row.put("websocketSessions", wsCounts.getOrDefault(room.getRoomId(), 0));
+                    row.put("roomId", room.roomId());
+                    row.put("name", room.name());
+                    row.put("websocketSessions", chatRoomSessionTracker.countByRoom(room.roomId()));
+                    row.put("clusterViewers", room.viewers());
                     row.put("redisListenerCount", topic == null ? 0 : 1);
                     row.put("redisLocalRefCount", topic == null ? 0 : topic.localRefCount());
                     row.put("topicLastTouchedAt", topic == null || topic.lastTouchedAt() == null
                             ? null
                             : topic.lastTouchedAt().toString());
+                    row.put("topicUnsubscribeScheduled", topic != null && topic.unsubscribeScheduled());
                     return row;
                 })
                 .toList();
@@ -48,8 +61,29 @@ public class OpsRoomStatusController {
         Map<String, Object> response = new LinkedHashMap<>();
         response.put("generatedAt", Instant.now().toString());
         response.put("draining", drainService.isDraining());
-        response.put("roomCount", rows.size());
+        response.put("roomCount", page.totalRooms());
         response.put("rooms", rows);
+        response.put("nextCursor", page.nextCursor());
+        response.put("presenceFlush", roomPresenceService.lastFlushStats());
+        // fan-out 비용(메시지 rate x 시청자 수) 상위 room과 slow mode 거절/자동 전환 누적값
+        response.put("slowMode", roomSlowModeService.stats(20));
+        // room fan-out 핸들 수와 전송 누적값(handleMiss: 구독 해지와 경합해 임시 핸들로 보낸 횟수)
+        response.put("fanoutHandles", roomFanoutHandles.stats());
+        return response;
+    }
+
+    /**
+     * room affinity 효과 확인용: 이 노드의 room/세션이 선호 노드 배치와 얼마나 일치하는지.
+     * roomId를 주면 해당 room의 선호 노드 목록도 함께 반환한다.
+     */
+    @GetMapping("/affinity")
+    public Map<String, Object> affinity(@RequestParam(required = false) String roomId) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("stats", roomAffinityService.stats(chatRoomSessionTracker.roomSessionCounts()));
+        if (roomId != null && !roomId.isBlank()) {
+            response.put("roomId", roomId);
+            response.put("preferredNodes", roomAffinityService.preferredNodes(roomId.trim()));
+        }
         return response;
     }
 }
@@ -0,0 +1,56 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.FollowCountService;
+import com.example.demo.service.RecentWatchHistoryCache;
+import com.example.demo.service.WatchHistoryEndTracker;
+import com.example.demo.service.WatchHistoryWriteBehind;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/ops/users")
+@RequiredArgsConstructor
+public class OpsUserController {
+
+    private final FollowCountService followCountService;
+    private final WatchHistoryWriteBehind watchHistoryWriteBehind;
+    private final WatchHistoryEndTracker watchHistoryEndTracker;
+    private final RecentWatchHistoryCache recentWatchHistoryCache;
+
+    /**
+     * 팔로워/팔로잉 수 캐시 상태.
+     * 캐시 적중률(hitRatio), COUNT로 채운 수, 반영 대기 중인 변화분 사용자 수, 보정으로 고친 수를 확인한다.
+     */
+    @GetMapping("/follow-counts")
+    public FollowCountService.FollowCountStats followCounts() {
+        return followCountService.stats();
+    }
+
+    /**
+     * 시청 기록 write-behind 상태.
+     * 큐 적재량, 초당 반영 행 수, batch flush 지연(avg/max μs), spill/재적재 행 수를 확인한다.
+     */
+    @GetMapping("/watch-history")
+    public WatchHistoryWriteBehind.WriteBehindStats watchHistory() {
+        return watchHistoryWriteBehind.stats();
+    }
+
+    /**
+     * 시청 종료 추적 상태.
+     * 시청 중 세션 수, 반영 대기 종료 수, 병합된 종료 수, batch UPDATE 반영 행 수, 대상 행을 못 찾은 종료 수를 확인한다.
+     */
+    @GetMapping("/watch-history/end")
+    public WatchHistoryEndTracker.EndTrackerStats watchHistoryEnd() {
+        return watchHistoryEndTracker.stats();
+    }
+
+    /**
+     * 사용자별 최근 시청 기록 캐시 상태(적중률, 캐시 크기를 넘어 DB로 간 조회 수, 쓰기 경로 반영 수).
+     */
+    @GetMapping("/watch-history/recent")
+    public RecentWatchHistoryCache.RecentCacheStats recentWatchHistory() {
+        return recentWatchHistoryCache.stats();
+    }
+}
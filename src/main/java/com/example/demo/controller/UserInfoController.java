@@ -2,8 +2,11 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.Customer;
 import com.example.demo.model.DTO.CustomerDTO;
+import com.example.demo.model.DTO.CustomerPageDTO;
+import com.example.demo.model.DTO.FollowCountDTO;
 import com.example.demo.model.DTO.UserInfoDTO;
 import com.example.demo.model.DTO.WatchHistoryDTO;
+import com.example.demo.model.DTO.WatchHistoryPageDTO;
 import com.example.demo.service.CustomerService;
 import com.example.demo.service.FollowsService;
 import com.example.demo.service.WatchHistoryService;
@@ -42,11 +45,13 @@ public class UserInfoController {
     @GetMapping("/info/{userId}")
     @Operation(summary = "사용자 정보 조회", description = "아이디, 이름, 팔로우, 팔로워, 스트리밍 횟수")
     public UserInfoDTO getUserInfo(@PathVariable String userId) {
+        // 팔로워/팔로잉 수는 캐시 한 번 조회로 같이 가져온다.
+        FollowCountDTO counts = followsService.getFollowCounts(userId);
         return UserInfoDTO.builder()
                 .userId(userId)
                 .userName(customerService.getCustomerById(userId))
-                .followers(followsService.getFollowedCount(userId))
-                .following(followsService.getFollowingCount(userId))
+                .followers(counts.getFollowerCount())
+                .following(counts.getFollowingCount())
                 .streams(-1) //일단 스트림 횟수 0으로 해놓고 나중에 해결하기.
                 .build();
     }
@@ -66,9 +71,36 @@ public class UserInfoController {
         return watchHistoryService.getRecentWatchHistoriesByUserId(userId, offset, limit);
     }
 
+    @GetMapping("/{userId}/watch_history")
+    @Operation(summary = "최근 시청 기록 페이지 조회", description = "시청 시작 시각 최신순 keyset 페이지. 다음 페이지는 응답의 nextCursor를 cursor로 넘깁니다(최대 200개)")
+    public WatchHistoryPageDTO getWatchHistoryPage(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return watchHistoryService.getWatchHistoryPage(userId, cursor, size);
+    }
+
     @GetMapping("/{userId}/followingI/{page}/{size}")
     public List<CustomerDTO> getFollowingMe(
             @PathVariable String userId, @PathVariable int page, @PathVariable int size) {
         return followsService.getFollowerList(userId, page, size);
     }
+
+    @GetMapping("/{userId}/following")
+    @Operation(summary = "내가 팔로우 하는 사람들 페이지 조회", description = "user id 순 keyset 페이지. 다음 페이지는 응답의 nextCursor를 after로 넘깁니다(최대 200개)")
+    public CustomerPageDTO getMyFollowingPage(
+            @PathVariable String userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size) {
+        return followsService.getFollowingPage(userId, after, size);
+    }
+
+    @GetMapping("/{userId}/followers")
+    @Operation(summary = "나를 팔로우 하는 사람들 페이지 조회", description = "user id 순 keyset 페이지. 다음 페이지는 응답의 nextCursor를 after로 넘깁니다(최대 200개)")
+    public CustomerPageDTO getFollowingMePage(
+            @PathVariable String userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size) {
+        return followsService.getFollowerPage(userId, after, size);
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.VodReplayRequest;
+import com.example.demo.service.VodReplayService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+@RequiredArgsConstructor
+@Controller
+@Slf4j
+public class VodReplayController {
+
+    private final VodReplayService vodReplayService;
+
+    /**
+     * WebSocket "/pub/vod/replay"로 들어오는 다시보기 댓글 재생 제어(START/SEEK/PAUSE/RESUME/SYNC/STOP)를 처리
+     * 댓글은 보낸 세션의 "/user/sub/vod/replay"로 재생 위치에 맞춰 전달된다.
+     */
+    @MessageMapping("/vod/replay")
+    public void replay(VodReplayRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        String sessionId = headerAccessor == null ? null : headerAccessor.getSessionId();
+        if (request == null || request.getAction() == null || sessionId == null) {
+            log.warn("Ignored invalid vod replay request. sessionId={}", sessionId);
+            return;
+        }
+        try {
+            vodReplayService.handle(sessionId, request);
+        } catch (IllegalArgumentException | IllegalStateException exception) {
+            log.warn("Ignored vod replay request. sessionId={}, action={}, reason={}",
+                    sessionId, request.getAction(), exception.getMessage());
+        }
+    }
+}
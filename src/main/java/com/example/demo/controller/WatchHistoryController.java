@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 @RestController
@@ -23,14 +24,17 @@ public class WatchHistoryController {
     @PostMapping
     public ResponseEntity<?> insertWatchHistory(@RequestBody Map<String,String> payload) {
         WatchHistory wh = new WatchHistory();
-        wh.setUserId(String.valueOf(payload.get("userId")));
+        wh.setUserId(payload.get("userId"));
         wh.setVideoId(Long.valueOf(payload.get("videoId")));
-        wh.setStartedAt(LocalDateTime.now());
-        wh.setEndedAt(LocalDateTime.now());
-        //종료 시점, 동영상 스트리밍을 관리하는 ws가 끊어지거나 사용자가 영상을 unmount했을때 업데이트하는 로직 필요
+        // TIMESTAMP(6)에 저장되는 값과 같도록 μs로 자른다(종료 UPDATE가 started_at 등치로 행을 찾는다).
+        wh.setStartedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        // 종료 시점은 비워 두고, 같은 영상 ID로 ENTER한 WebSocket 세션의 QUIT/연결 종료 시각으로 채운다(WatchHistoryEndTracker).
+        // 클라이언트는 응답의 startedAt을 ENTER의 watchStartedAt으로 보낸다.
+        wh.setEndedAt(null);
 
+        // 저장은 write-behind로 비동기 처리되므로 접수 즉시 202로 응답한다.
         boolean success = watchHistoryService.insertWatchHistory(wh);
-        return success ? ResponseEntity.ok().build() :
+        return success ? ResponseEntity.accepted().body(Map.of("startedAt", wh.getStartedAt().toString())) :
                 ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Insert failed");
     }
 }
\ No newline at end of file
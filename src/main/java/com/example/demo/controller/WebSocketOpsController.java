@@ -1,7 +1,14 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.SerialOutboundWriterDecoratorFactory;
+import com.example.demo.service.ChatResumeService;
+import com.example.demo.service.ChatRoomSessionTracker;
+import com.example.demo.service.HandshakeAdmissionService;
+import com.example.demo.service.InboundRateLimiter;
+import com.example.demo.service.SessionHandleTable;
 import com.example.demo.service.WebSocketControlService;
 import com.example.demo.service.WebSocketDrainService;
+import com.example.demo.service.WebSocketLifecycleScheduler;
 import com.example.demo.service.WebSocketSessionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -23,6 +30,13 @@ public class WebSocketOpsController {
     private final WebSocketDrainService drainService;
     private final WebSocketSessionRegistry sessionRegistry;
     private final WebSocketControlService controlService;
+    private final SessionHandleTable sessionHandleTable;
+    private final ChatRoomSessionTracker chatRoomSessionTracker;
+    private final WebSocketLifecycleScheduler lifecycleScheduler;
+    private final HandshakeAdmissionService admissionService;
+    private final ChatResumeService chatResumeService;
+    private final InboundRateLimiter inboundRateLimiter;
+    private final SerialOutboundWriterDecoratorFactory outboundWriter;
 
     @GetMapping("/status")
     public Map<String, Object> status() {
@@ -30,6 +44,23 @@ public class WebSocketOpsController {
         response.put("draining", drainService.isDraining());
         response.put("drainStartedAt", drainService.getDrainStartedAt().map(Instant::toString).orElse(null));
         response.put("activeSessions", sessionRegistry.size());
+        // endpoint별 세션 수(/ws/chat SockJS vs native endpoint)
+        response.put("sessionsByTransport", sessionRegistry.transportCounts());
+        // 세션 handle 배열 길이(상한)와 intern된 room 수: 세션/room 추적 구조의 메모리 규모 확인용
+        response.put("sessionHandleHighWaterMark", sessionHandleTable.highWaterMark());
+        response.put("sessionHandleTableBytes", sessionHandleTable.footprintBytes());
+        response.put("trackedRooms", chatRoomSessionTracker.activeRoomCount());
+        // TTL tick 비용: 세션 수가 아니라 마감된 세션 수에 비례하는지 확인하기 위한 값
+        response.put("ttlDeadlineIndex", sessionRegistry.deadlineIndexStats());
+        response.put("lastLifecycleTick", lifecycleScheduler.lastTickStats());
+        // handshake 입장 제어: 허용/거절 누적값과 직전 1초 rate
+        response.put("handshakeAdmission", admissionService.stats());
+        // SEND 프레임 속도 제한: 세션/sender 한도 초과로 버린 프레임 수와 강제 종료한 세션 수
+        response.put("inboundRateLimit", inboundRateLimiter.stats());
+        // 세션별 직렬 outbound writer: enqueue/소켓 쓰기 지연, 쓰기 1회당 병합 프레임 수, 느린 소비자 종료 수
+        response.put("outboundWriter", outboundWriter.stats());
+        // 재연결 resume/입장 backfill: 로컬 버퍼와 stream 조회 횟수, backfill 지연, 버퍼 규모
+        response.put("resume", chatResumeService.stats());
         return response;
     }
 
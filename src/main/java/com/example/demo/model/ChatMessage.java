@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -24,4 +25,14 @@ public class ChatMessage {
     // - TALK 메시지 단위 전달 여부를 추적해 유실률을 계산하기 위해 서버-클라이언트 간 동일 ID를 유지해야 한다.
     private String msgId;     // 메시지 고유 ID(유실률 추적용)
     private String message;   // 메시지 내용
+    // 아래 ENTER 전용 필드는 방송 전에 비우므로 null이면 직렬화에서 뺀다(TALK/QUIT payload 크기 유지).
+    // 재연결 ENTER 전용: 클라이언트가 마지막으로 본 msgId. 서버는 이후 메시지를 replay하고 ENTER 방송을 생략한다.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resumeFromMsgId;
+    // ENTER 전용: 시청 중인 영상 ID. 세션 종료/QUIT 시각을 시청 기록 종료 시각으로 반영한다.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long videoId;
+    // ENTER 전용: 시청 기록 INSERT 접수 응답의 startedAt(ISO-8601). 종료 시각을 반영할 행을 정확히 찾는 데 쓴다.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String watchStartedAt;
 }
@@ -12,6 +12,10 @@ import lombok.AllArgsConstructor;
 public class ChatRoom {
     private String roomId;
     private String name;
+    // slow mode: 같은 사용자가 이 room에 TALK을 보낼 수 있는 최소 간격(초). 0이면 끔
+    private int slowModeIntervalSeconds;
+    // room 전체 TALK 상한(초당 메시지 수). 0이면 제한 없음
+    private double maxMessagesPerSecond;
 
     // Static factory method for creating rooms
     public static ChatRoom create(String name) {
@@ -20,4 +24,9 @@ public class ChatRoom {
         chatRoom.name = name;
         return chatRoom;
     }
+
+    // 인덱스 스냅샷이 공유하는 객체이므로 설정 변경은 새 객체로 만든다.
+    public ChatRoom withSlowMode(int slowModeIntervalSeconds, double maxMessagesPerSecond) {
+        return new ChatRoom(roomId, name, slowModeIntervalSeconds, maxMessagesPerSecond);
+    }
 }
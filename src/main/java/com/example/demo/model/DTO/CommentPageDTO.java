@@ -0,0 +1,16 @@
+package com.example.demo.model.DTO;
+
+import com.example.demo.entity.Comment;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CommentPageDTO {
+    public List<Comment> comments;
+    // 다음 페이지 요청에 그대로 넘기는 값. 마지막 페이지면 null
+    public String nextCursor;
+    public int size;
+}
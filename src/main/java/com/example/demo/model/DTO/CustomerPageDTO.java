@@ -0,0 +1,15 @@
+package com.example.demo.model.DTO;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CustomerPageDTO {
+    public List<CustomerDTO> customers;
+    // 다음 페이지 요청의 after로 그대로 넘기는 값(마지막 user id). 마지막 페이지면 null
+    public String nextCursor;
+    public int size;
+}
@@ -0,0 +1,10 @@
+package com.example.demo.model.DTO;
+
+import lombok.Data;
+
+@Data
+public class FollowCountDTO {
+    public String userId;
+    public int followerCount;  // 나를 팔로우하는 사람 수
+    public int followingCount; // 내가 팔로우하는 사람 수
+}
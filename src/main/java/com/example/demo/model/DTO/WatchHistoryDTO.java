@@ -1,5 +1,6 @@
 package com.example.demo.model.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.Getter;
@@ -19,4 +20,7 @@ public class WatchHistoryDTO {
     public LocalDateTime startedAt;
     @JsonProperty("ended_at")
     public LocalDateTime endedAt;
+    // keyset 페이지 tiebreaker(Oracle ROWID 문자열). 아직 DB에 쓰이지 않은(write-behind 대기) 행은 null
+    @JsonIgnore
+    public String rowId;
 }
@@ -0,0 +1,23 @@
+package com.example.demo.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * "/pub/vod/replay"로 들어오는 다시보기 댓글 재생 제어 메시지.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class VodReplayRequest {
+    public enum Action {
+        START, SEEK, PAUSE, RESUME, SYNC, STOP
+    }
+    private Action action;
+    private String roomId;
+    // 현재 재생 위치에 해당하는 원 방송 시각(epoch millis). START/SEEK/SYNC에서 사용
+    private Long positionMillis;
+    // 재생 배속(기본 1.0)
+    private Double playbackRate;
+}
@@ -15,4 +15,8 @@ public class WsControlMessage {
     private int retryAfterMs;
     private int reconnectJitterMaxMs;
     private String serverId;
+    // REDIRECT 전용: 이 room의 선호 노드와 접속 URL
+    private String roomId;
+    private String targetNodeId;
+    private String targetUrl;
 }
@@ -1,6 +1,8 @@
 package com.example.demo.pubsub;
 
 import com.example.demo.model.ChatMessage;
+import com.example.demo.service.RecentMessageBuffer;
+import com.example.demo.service.RoomSlowModeService;
 import com.example.demo.service.WebSocketSessionRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -9,7 +11,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -34,8 +35,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class RedisSubscriber implements MessageListener {
 
     private final RedisTemplate<String, Object> redisTemplate; // RedisTemplate을 주입받아 사용
-    private final SimpMessagingTemplate messagingTemplate; // 특정 Broker로 메시지를 전달
+    // room별 destination/헤더 템플릿을 재사용해 broker 채널로 전달
+    private final RoomFanoutHandles roomFanoutHandles;
     private final WebSocketSessionRegistry webSocketSessionRegistry;
+    // resume replay용 room별 최근 메시지 버퍼
+    private final RecentMessageBuffer recentMessageBuffer;
+    private final RoomSlowModeService roomSlowModeService;
 
     // TALK 메시지 fan-out 전용 실행기 튜닝값들
     // 목적: 시스템 메시지(ENTER/QUIT)와 작업 큐를 분리해 혼잡 전파를 줄이기 위함
@@ -74,12 +79,16 @@ public class RedisSubscriber implements MessageListener {
 
     public RedisSubscriber(
             RedisTemplate<String, Object> redisTemplate,
-            SimpMessagingTemplate messagingTemplate,
-            WebSocketSessionRegistry webSocketSessionRegistry
+            RoomFanoutHandles roomFanoutHandles,
+            WebSocketSessionRegistry webSocketSessionRegistry,
+            RecentMessageBuffer recentMessageBuffer,
+            RoomSlowModeService roomSlowModeService
     ) {
         this.redisTemplate = redisTemplate;
-        this.messagingTemplate = messagingTemplate;
+        this.roomFanoutHandles = roomFanoutHandles;
         this.webSocketSessionRegistry = webSocketSessionRegistry;
+        this.recentMessageBuffer = recentMessageBuffer;
+        this.roomSlowModeService = roomSlowModeService;
     }
 
     @PostConstruct
@@ -138,6 +147,11 @@ public class RedisSubscriber implements MessageListener {
 
             // WebSocket 구독자에게 채팅 메시지 발송
             if (chatMessage != null) {
+                recentMessageBuffer.append(chatMessage);
+                // room 메시지 rate(fan-out 비용) 측정: 구독으로 받은 TALK는 클러스터 전체 발행분이다.
+                if (chatMessage.getType() == ChatMessage.MessageType.TALK) {
+                    roomSlowModeService.recordDelivered(chatMessage.getRoomId());
+                }
                 dispatchFanout(chatMessage);
             }
         } catch (Exception e) {
@@ -145,6 +159,19 @@ public class RedisSubscriber implements MessageListener {
         }
     }
 
+    /**
+     * TALK fan-out 큐 점유율(0~1). 노드 health 점수 계산에 사용한다.
+     */
+    public double talkQueueUtilization() {
+        ThreadPoolExecutor executor = talkFanoutExecutor;
+        if (executor == null) {
+            return 0.0;
+        }
+        int depth = executor.getQueue().size();
+        int capacity = depth + executor.getQueue().remainingCapacity();
+        return capacity == 0 ? 0.0 : (double) depth / capacity;
+    }
+
     private void dispatchFanout(ChatMessage chatMessage) {
         boolean talk = chatMessage.getType() == ChatMessage.MessageType.TALK;
         // TALK만 배치 대상: 시스템 메시지는 즉시성이 중요하므로 배치하지 않는다.
@@ -241,7 +268,7 @@ public class RedisSubscriber implements MessageListener {
         long startedAt = System.nanoTime();
         Throwable throwable = null;
         try {
-            messagingTemplate.convertAndSend("/sub/chat/room/" + chatMessage.getRoomId(), chatMessage);
+            roomFanoutHandles.send(chatMessage.getRoomId(), chatMessage);
         } catch (Exception exception) {
             throwable = exception;
             log.warn(
@@ -254,7 +281,7 @@ public class RedisSubscriber implements MessageListener {
         } finally {
             long durationMs = Math.max(0L, (System.nanoTime() - startedAt) / 1_000_000L);
             if (durationMs > 500) {
-                log.debug("Fan-out convertAndSend took {}ms. roomId={}", durationMs, chatMessage.getRoomId());
+                log.debug("Fan-out send took {}ms. roomId={}", durationMs, chatMessage.getRoomId());
             }
         }
     }
@@ -268,14 +295,14 @@ public class RedisSubscriber implements MessageListener {
             payload.put("roomId", roomId);
             payload.put("count", messages.size());
             payload.put("messages", messages);
-            messagingTemplate.convertAndSend("/sub/chat/room/" + roomId, (Object) payload);
+            roomFanoutHandles.send(roomId, payload);
         } catch (Exception exception) {
             throwable = exception;
             log.warn("Failed to fan-out batched TALK messages. roomId={}, count={}", roomId, messages.size(), exception);
         } finally {
             long durationMs = Math.max(0L, (System.nanoTime() - startedAt) / 1_000_000L);
             if (durationMs > 500) {
-                log.debug("Fan-out batch convertAndSend took {}ms. roomId={}, count={}", durationMs, roomId, messages.size());
+                log.debug("Fan-out batch send took {}ms. roomId={}, count={}", durationMs, roomId, messages.size());
             }
         }
     }
@@ -313,17 +340,8 @@ public class RedisSubscriber implements MessageListener {
     }
 
     private int disconnectSessionsForBackpressure(int target, String reason) {
-        int closed = 0;
-        for (WebSocketSessionRegistry.SessionSnapshot snapshot : webSocketSessionRegistry.snapshots()) {
-            if (closed >= target) {
-                break;
-            }
-            boolean sessionClosed = webSocketSessionRegistry.closeSession(snapshot.sessionId(), reason);
-            if (sessionClosed) {
-                closed++;
-            }
-        }
-        return closed;
+        // 전체 세션 스냅샷을 만들지 않고 필요한 개수만 registry에서 골라 닫는다.
+        return webSocketSessionRegistry.closeSessions(target, reason);
     }
 
     private ThreadPoolExecutor buildExecutor(
@@ -0,0 +1,107 @@
+package com.example.demo.pubsub;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * room별 fan-out 핸들.
+ * - room topic을 구독할 때(로컬 첫 입장) destination/content-type/message-type 헤더 템플릿을 한 번 만들어 둔다.
+ * - 전송 시에는 payload를 broker 메시징 템플릿에 설정된 message converter(앱의 Jackson 설정)로 한 번 직렬화하고,
+ *   헤더 템플릿을 복사해 id/timestamp만 새로 붙인 헤더로 broker 채널에 보낸다.
+ *   SimpMessagingTemplate.convertAndSend와 달리 header accessor 생성, destination 조립, 템플릿 후처리를 메시지마다 하지 않는다.
+ */
+@Slf4j
+@Component
+public class RoomFanoutHandles {
+
+    private static final String ROOM_DESTINATION_PREFIX = "/sub/chat/room/";
+
+    private final MessageChannel brokerChannel;
+    private final MessageConverter messageConverter;
+    private final ConcurrentHashMap<String, Handle> handles = new ConcurrentHashMap<>();
+    private final LongAdder sentTotal = new LongAdder();
+    private final LongAdder handleMissTotal = new LongAdder();
+    private final LongAdder serializationFailureTotal = new LongAdder();
+
+    public RoomFanoutHandles(
+            @Qualifier("brokerChannel") MessageChannel brokerChannel,
+            SimpMessagingTemplate brokerMessagingTemplate
+    ) {
+        this.brokerChannel = brokerChannel;
+        this.messageConverter = brokerMessagingTemplate.getMessageConverter();
+    }
+
+    /**
+     * room topic 구독 시점에 호출한다. 이미 있으면 기존 핸들을 그대로 쓴다.
+     */
+    public void open(String roomId) {
+        handles.computeIfAbsent(roomId, Handle::new);
+    }
+
+    /**
+     * room topic 구독 해지 시점에 호출한다.
+     */
+    public void close(String roomId) {
+        handles.remove(roomId);
+    }
+
+    /**
+     * room 구독자 전체에게 payload를 보낸다.
+     * 구독 해지와 경합해 핸들이 없으면 임시 핸들로 보낸다(캐시하지 않음).
+     */
+    public void send(String roomId, Object payload) {
+        Handle handle = handles.get(roomId);
+        if (handle == null) {
+            handleMissTotal.increment();
+            handle = new Handle(roomId);
+        }
+        Message<?> converted;
+        try {
+            converted = messageConverter.toMessage(payload, handle.headers);
+        } catch (RuntimeException exception) {
+            serializationFailureTotal.increment();
+            log.warn("Failed to serialize fan-out payload. roomId={}", roomId, exception);
+            return;
+        }
+        if (converted == null) {
+            serializationFailureTotal.increment();
+            log.warn("No message converter for fan-out payload. roomId={}, type={}", roomId, payload.getClass().getName());
+            return;
+        }
+        // MessageHeaders(Map)는 템플릿을 복사하면서 id/timestamp를 새로 발급한다.
+        brokerChannel.send(MessageBuilder.createMessage(converted.getPayload(), new MessageHeaders(handle.headers)));
+        sentTotal.increment();
+    }
+
+    public HandleStats stats() {
+        return new HandleStats(handles.size(), sentTotal.sum(), handleMissTotal.sum(), serializationFailureTotal.sum());
+    }
+
+    private static final class Handle {
+        // 모든 메시지에 공통인 헤더. 불변 MessageHeaders라 여러 스레드가 동시에 복사해도 된다.
+        private final MessageHeaders headers;
+
+        private Handle(String roomId) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(ROOM_DESTINATION_PREFIX + roomId);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            this.headers = accessor.toMessageHeaders();
+        }
+    }
+
+    public record HandleStats(int openHandles, long sentTotal, long handleMissTotal, long serializationFailureTotal) {
+    }
+}
@@ -5,22 +5,18 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends MongoRepository<Comment, String> {
 
-    @Query(value = "{ 'user_id' : ?0 }", sort = "{ 'createdAt' : -1 }")
-    List<Comment> findByUserIdOrderByCreatedAtDesc(String userId);
-
-    @Query("{ 'room_id' : ?0 }")
-    List<Comment> findByRoomId(String roomId);
-
     @Query("{ 'user_id' : ?0, 'room_id' : ?1 }")
     List<Comment> findByUserIDAndRoomId(String userId, String roomId);
 
-    @Query("{'room_id': ?0, 'createdAt': { $gte: ?1, $lte: ?2 } }")
+    // createdAt은 Date로 저장되므로 Instant로 받아 같은 타입으로 비교한다(문자열 비교는 BSON 타입이 달라 매칭되지 않음).
+    @Query(value = "{'room_id': ?0, 'createdAt': { $gte: ?1, $lte: ?2 } }", sort = "{ 'createdAt': 1, '_id': 1 }")
     List<Comment> findByRoomIdAndCreatedAtBetween(
-            String roomId, String startDate, String endDate
+            String roomId, Instant start, Instant end
     );
 }
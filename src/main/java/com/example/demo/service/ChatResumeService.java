@@ -0,0 +1,240 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재연결 세션 resume / 입장 backfill 처리.
+ * - 클라이언트가 ENTER에 실어 보낸 resumeFromMsgId 이후 메시지를 찾아 해당 세션에만 REPLAY 프레임으로 보낸다.
+ * - 1순위: 로컬 RecentMessageBuffer, 2순위: room stream(chat:stream:room:{roomId})을 최신부터 역방향 조회(최대 max-replay개)
+ * - 토큰은 msgId만 받는다. stream 기록(XADD)은 발행 뒤 비동기로 붙으므로 클라이언트가 live 프레임에서 stream id를 알 수 없어,
+ *   stream id 토큰 + XRANGE 대신 최근 max-replay개 안에서 msgId를 찾는다.
+ * - resume 토큰이 없는 입장은 최근 N개 메시지를 BACKFILL 프레임 하나로 보내 첫 메시지까지 빈 화면을 없앤다.
+ * - 클라이언트는 live 구독을 먼저 연 뒤 ENTER를 보내므로 replay와 live가 겹칠 수 있다. 중복은 msgId로 걸러낸다.
+ */
+@Slf4j
+@Service
+public class ChatResumeService {
+
+    private static final String REPLAY_DESTINATION = "/sub/chat/replay";
+
+    private final RecentMessageBuffer recentMessageBuffer;
+    private final StringRedisTemplate streamStringRedisTemplate;
+    private final WebSocketControlService controlService;
+    private final LongAdder replayedFromBuffer = new LongAdder();
+    private final LongAdder replayedFromStream = new LongAdder();
+    private final LongAdder replayTruncated = new LongAdder();
+    private final LongAdder backfillFromBuffer = new LongAdder();
+    private final LongAdder backfillFromStream = new LongAdder();
+    // 입장 처리 시작 ~ backfill 프레임 전송까지 걸린 시간(join-to-first-message 지연 관찰용)
+    private final LongAdder backfillLatencyMicrosTotal = new LongAdder();
+    private volatile long backfillLatencyMicrosMax;
+
+    @Value("${chat.stream.key-prefix:chat:stream:room:}")
+    private String streamKeyPrefix;
+    // stream 역방향 조회 상한: 이보다 오래 끊겨 있었으면 최근 max-replay개만 보내고 truncated로 표시한다.
+    @Value("${chat.resume.max-replay:500}")
+    private int maxReplay;
+    // 입장 직후 보내는 최근 메시지 수(0이면 backfill하지 않음)
+    @Value("${chat.recent.backfill-size:50}")
+    private int backfillSize;
+
+    public ChatResumeService(
+            RecentMessageBuffer recentMessageBuffer,
+            @Qualifier("streamStringRedisTemplate") StringRedisTemplate streamStringRedisTemplate,
+            WebSocketControlService controlService
+    ) {
+        this.recentMessageBuffer = recentMessageBuffer;
+        this.streamStringRedisTemplate = streamStringRedisTemplate;
+        this.controlService = controlService;
+    }
+
+    /**
+     * resumeFromMsgId 이후 메시지를 세션에 replay한다.
+     * 반환값의 resolved는 토큰을 버퍼나 stream에서 찾아 빈틈 없이 이어 붙였는지 여부
+     * (false면 최근 메시지만 truncated로 보냈거나 조회에 실패한 것이다).
+     */
+    public ReplayResult replay(String sessionId, String roomId, String resumeFromMsgId) {
+        List<ChatMessage> gap = recentMessageBuffer.messagesAfter(roomId, resumeFromMsgId);
+        boolean truncated = false;
+        if (gap != null) {
+            replayedFromBuffer.increment();
+        } else {
+            StreamGap streamGap = readGapFromStream(roomId, resumeFromMsgId);
+            gap = streamGap.messages();
+            truncated = streamGap.truncated();
+            replayedFromStream.increment();
+            if (truncated) {
+                replayTruncated.increment();
+            }
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "REPLAY");
+        payload.put("roomId", roomId);
+        payload.put("resumeFromMsgId", resumeFromMsgId);
+        payload.put("truncated", truncated);
+        payload.put("count", gap.size());
+        payload.put("messages", gap);
+        controlService.sendToSession(sessionId, REPLAY_DESTINATION, payload);
+        return new ReplayResult(gap.size(), !truncated);
+    }
+
+    /**
+     * 새로 입장한 세션에 room의 최근 backfill-size개 메시지를 보낸다.
+     * 이 노드가 room을 막 구독해 버퍼가 없거나 구독 이후 메시지만 있으면 stream 최신 구간으로 대신하고 버퍼를 seed한다.
+     */
+    public int backfill(String sessionId, String roomId, long enterStartedAtNanos) {
+        if (backfillSize <= 0) {
+            return 0;
+        }
+        List<ChatMessage> latest = recentMessageBuffer.latest(roomId, backfillSize);
+        if (latest != null) {
+            backfillFromBuffer.increment();
+        } else {
+            latest = readLatestFromStream(roomId, backfillSize);
+            backfillFromStream.increment();
+            if (latest == null) {
+                latest = List.of();
+            } else {
+                // 다음 입장부터는 버퍼로 응답하도록 구독 이전 구간을 채워 둔다.
+                recentMessageBuffer.seed(roomId, latest);
+            }
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "BACKFILL");
+        payload.put("roomId", roomId);
+        payload.put("truncated", false);
+        payload.put("count", latest.size());
+        payload.put("messages", latest);
+        controlService.sendToSession(sessionId, REPLAY_DESTINATION, payload);
+
+        long latencyMicros = (System.nanoTime() - enterStartedAtNanos) / 1_000L;
+        backfillLatencyMicrosTotal.add(latencyMicros);
+        if (latencyMicros > backfillLatencyMicrosMax) {
+            backfillLatencyMicrosMax = latencyMicros;
+        }
+        return latest.size();
+    }
+
+    public ResumeStats stats() {
+        long backfills = backfillFromBuffer.sum() + backfillFromStream.sum();
+        return new ResumeStats(
+                replayedFromBuffer.sum(),
+                replayedFromStream.sum(),
+                replayTruncated.sum(),
+                backfillFromBuffer.sum(),
+                backfillFromStream.sum(),
+                backfills == 0 ? 0L : backfillLatencyMicrosTotal.sum() / backfills,
+                backfillLatencyMicrosMax,
+                recentMessageBuffer.stats()
+        );
+    }
+
+    /**
+     * stream 최신 count개(오래된 순). 조회 실패 시 null(빈 stream과 구분해 seed하지 않기 위함)
+     */
+    private List<ChatMessage> readLatestFromStream(String roomId, int count) {
+        List<MapRecord<String, Object, Object>> newestFirst;
+        try {
+            newestFirst = streamStringRedisTemplate.opsForStream()
+                    .reverseRange(streamKeyPrefix + roomId, Range.unbounded(), Limit.limit().count(count));
+        } catch (Exception exception) {
+            log.warn("Failed to read room stream for backfill. roomId={}", roomId, exception);
+            return null;
+        }
+        if (newestFirst == null) {
+            return List.of();
+        }
+        List<ChatMessage> latest = new ArrayList<>(newestFirst.size());
+        for (MapRecord<String, Object, Object> record : newestFirst) {
+            ChatMessage message = toChatMessage(record.getValue());
+            if (message != null) {
+                latest.add(message);
+            }
+        }
+        return latest.reversed();
+    }
+
+    private StreamGap readGapFromStream(String roomId, String resumeFromMsgId) {
+        String streamKey = streamKeyPrefix + roomId;
+        List<MapRecord<String, Object, Object>> newestFirst;
+        try {
+            newestFirst = streamStringRedisTemplate.opsForStream()
+                    .reverseRange(streamKey, Range.unbounded(), Limit.limit().count(Math.max(1, maxReplay)));
+        } catch (Exception exception) {
+            log.warn("Failed to read room stream for resume. roomId={}", roomId, exception);
+            return new StreamGap(List.of(), true);
+        }
+        if (newestFirst == null || newestFirst.isEmpty()) {
+            // 토큰을 가진 클라이언트인데 stream이 비어 있으면 그 사이 기록이 만료/삭제된 것이다.
+            return new StreamGap(List.of(), true);
+        }
+        List<ChatMessage> gap = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : newestFirst) {
+            Map<Object, Object> fields = record.getValue();
+            if (resumeFromMsgId.equals(fields.get("msgId"))) {
+                return new StreamGap(gap.reversed(), false);
+            }
+            ChatMessage message = toChatMessage(fields);
+            if (message != null) {
+                gap.add(message);
+            }
+        }
+        // 마지막으로 본 msgId를 조회 범위 안에서 찾지 못함: 최근 max-replay개만 보낸다.
+        return new StreamGap(gap.reversed(), true);
+    }
+
+    private ChatMessage toChatMessage(Map<Object, Object> fields) {
+        Object type = fields.get("type");
+        if (type == null || String.valueOf(type).isEmpty()) {
+            return null;
+        }
+        try {
+            return ChatMessage.builder()
+                    .type(ChatMessage.MessageType.valueOf(String.valueOf(type)))
+                    .roomId(valueOf(fields.get("roomId")))
+                    .sender(valueOf(fields.get("sender")))
+                    .msgId(valueOf(fields.get("msgId")))
+                    .message(valueOf(fields.get("message")))
+                    .build();
+        } catch (IllegalArgumentException unknownType) {
+            return null;
+        }
+    }
+
+    private String valueOf(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private record StreamGap(List<ChatMessage> messages, boolean truncated) {
+    }
+
+    public record ReplayResult(int replayed, boolean resolved) {
+    }
+
+    public record ResumeStats(
+            long replayedFromBuffer,
+            long replayedFromStream,
+            long truncated,
+            long backfillFromBuffer,
+            long backfillFromStream,
+            long backfillLatencyMicrosAvg,
+            long backfillLatencyMicrosMax,
+            RecentMessageBuffer.BufferStats buffer
+    ) {
+    }
+}
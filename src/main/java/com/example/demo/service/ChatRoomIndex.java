@@ -0,0 +1,305 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatRoom;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * CHAT_ROOM hash의 메모리 인덱스.
+ * - 목록 조회(/chat/rooms, /ops/rooms/status)는 Redis HVALS 대신 이 스냅샷을 사용한다.
+ * - 스냅샷은 ChatRoomService가 HSCAN으로 주기적으로 교체하고, 생성/단건 조회 시 upsert로 보강한다.
+ * - 스냅샷은 불변 객체로 교체(copy-on-write)하므로 조회 경로는 락 없이 읽는다.
+ */
+@Component
+public class ChatRoomIndex {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // ETag는 내용 해시가 아니라 스냅샷 버전으로 만든다. 재시작 후 버전이 겹치지 않도록 기동 시각을 붙인다.
+    private final String etagPrefix = "\"rooms-" + Long.toHexString(System.currentTimeMillis()) + "-";
+    private long version;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * HSCAN으로 새로 읽은 전체 room 목록으로 스냅샷을 교체한다.
+     * 모든 room의 필드가 기존 스냅샷과 같을 때만 기존 스냅샷(=같은 ETag)을 유지한다.
+     */
+    public synchronized void replaceAll(Collection<ChatRoom> rooms) {
+        Map<String, ChatRoom> byId = new HashMap<>(Math.max(16, rooms.size() * 2));
+        for (ChatRoom room : rooms) {
+            if (room != null && room.getRoomId() != null) {
+                byId.put(room.getRoomId(), room);
+            }
+        }
+        if (sameRooms(snapshot.byId, byId)) {
+            return;
+        }
+        TreeMap<String, ChatRoom> sorted = new TreeMap<>(byId);
+        snapshot = new Snapshot(
+                Collections.unmodifiableMap(byId),
+                sorted.keySet().toArray(new String[0]),
+                sorted.values().toArray(new ChatRoom[0]),
+                nextEtag());
+    }
+
+    /**
+     * 생성 직후/Redis 단건 조회로 알게 된 room을 다음 refresh 전까지 반영한다.
+     * 정렬된 배열에 이분 탐색으로 한 건만 끼워 넣거나 바꾸며, 전체를 다시 정렬하지 않는다.
+     */
+    public synchronized void upsert(ChatRoom room) {
+        if (room == null || room.getRoomId() == null) {
+            return;
+        }
+        Snapshot current = snapshot;
+        if (sameRoom(current.byId.get(room.getRoomId()), room)) {
+            return;
+        }
+        Map<String, ChatRoom> byId = new HashMap<>(current.byId);
+        byId.put(room.getRoomId(), room);
+
+        int position = Arrays.binarySearch(current.sortedIds, room.getRoomId());
+        String[] ids;
+        ChatRoom[] rooms;
+        if (position >= 0) {
+            ids = current.sortedIds;
+            rooms = current.sortedRooms.clone();
+            rooms[position] = room;
+        } else {
+            int insertAt = -(position + 1);
+            int length = current.sortedIds.length;
+            ids = new String[length + 1];
+            rooms = new ChatRoom[length + 1];
+            System.arraycopy(current.sortedIds, 0, ids, 0, insertAt);
+            System.arraycopy(current.sortedRooms, 0, rooms, 0, insertAt);
+            ids[insertAt] = room.getRoomId();
+            rooms[insertAt] = room;
+            System.arraycopy(current.sortedIds, insertAt, ids, insertAt + 1, length - insertAt);
+            System.arraycopy(current.sortedRooms, insertAt, rooms, insertAt + 1, length - insertAt);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(byId), ids, rooms, nextEtag());
+    }
+
+    public ChatRoom get(String roomId) {
+        return roomId == null ? null : snapshot.byId.get(roomId);
+    }
+
+    public List<ChatRoom> all() {
+        return snapshot.roomList;
+    }
+
+    public int size() {
+        return snapshot.sortedIds.length;
+    }
+
+    public String etag() {
+        return snapshot.etag;
+    }
+
+    /**
+     * roomId 순 keyset 페이지.
+     * cursor는 직전 페이지 마지막 roomId를 인코딩한 값이다.
+     */
+    public RoomPage pageById(String cursor, int size, Map<String, Integer> viewerCounts) {
+        Snapshot current = snapshot;
+        int pageSize = normalizePageSize(size);
+        int start = 0;
+        String afterRoomId = decodeCursor(cursor);
+        if (afterRoomId != null) {
+            int position = Arrays.binarySearch(current.sortedIds, afterRoomId);
+            start = position >= 0 ? position + 1 : -(position + 1);
+        }
+
+        List<RoomView> rows = new ArrayList<>(Math.min(pageSize, Math.max(0, current.sortedIds.length - start)));
+        int index = start;
+        for (; index < current.sortedIds.length && rows.size() < pageSize; index++) {
+            ChatRoom room = current.sortedRooms[index];
+            rows.add(new RoomView(room.getRoomId(), room.getName(), viewerCounts.getOrDefault(room.getRoomId(), 0)));
+        }
+        String nextCursor = index < current.sortedIds.length && !rows.isEmpty()
+                ? encodeCursor(rows.get(rows.size() - 1).roomId())
+                : null;
+        return new RoomPage(rows, nextCursor, current.sortedIds.length, pageEtag(rows, nextCursor));
+    }
+
+    /**
+     * 시청자 수 내림차순(동률은 roomId 오름차순) keyset 페이지.
+     * 시청자가 있는 room만 정렬하고, 시청자 0인 room은 이미 정렬된 roomId 순서를 그대로 이어 붙인다.
+     * cursor는 "시청자수:roomId"를 인코딩한 값이다.
+     */
+    public RoomPage pageByViewers(String cursor, int size, Map<String, Integer> viewerCounts) {
+        Snapshot current = snapshot;
+        int pageSize = normalizePageSize(size);
+
+        List<RoomView> watched = new ArrayList<>();
+        viewerCounts.forEach((roomId, count) -> {
+            ChatRoom room = current.byId.get(roomId);
+            if (room != null && count != null && count > 0) {
+                watched.add(new RoomView(roomId, room.getName(), count));
+            }
+        });
+        watched.sort(VIEWER_ORDER);
+
+        int afterViewers = Integer.MAX_VALUE;
+        String afterRoomId = null;
+        String decoded = decodeCursor(cursor);
+        if (decoded != null) {
+            int separator = decoded.indexOf(':');
+            if (separator > 0) {
+                try {
+                    afterViewers = Integer.parseInt(decoded.substring(0, separator));
+                    afterRoomId = decoded.substring(separator + 1);
+                } catch (NumberFormatException ignored) {
+                    afterViewers = Integer.MAX_VALUE;
+                }
+            }
+        }
+
+        List<RoomView> rows = new ArrayList<>(pageSize);
+        boolean more = false;
+        if (afterViewers > 0) {
+            for (RoomView view : watched) {
+                if (!isAfter(view, afterViewers, afterRoomId)) {
+                    continue;
+                }
+                if (rows.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                rows.add(view);
+            }
+        }
+
+        if (!more) {
+            // 시청자 0 구간: roomId 순서로 이어서 읽되 시청자가 있는 room은 앞 구간에서 이미 반환했으므로 건너뛴다.
+            int start = 0;
+            if (afterViewers == 0 && afterRoomId != null) {
+                int position = Arrays.binarySearch(current.sortedIds, afterRoomId);
+                start = position >= 0 ? position + 1 : -(position + 1);
+            }
+            for (int index = start; index < current.sortedIds.length; index++) {
+                String roomId = current.sortedIds[index];
+                if (viewerCounts.getOrDefault(roomId, 0) > 0) {
+                    continue;
+                }
+                if (rows.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                rows.add(new RoomView(roomId, current.sortedRooms[index].getName(), 0));
+            }
+        }
+
+        String nextCursor = null;
+        if (more && !rows.isEmpty()) {
+            RoomView last = rows.get(rows.size() - 1);
+            nextCursor = encodeCursor(last.viewers() + ":" + last.roomId());
+        }
+        return new RoomPage(rows, nextCursor, current.sortedIds.length, pageEtag(rows, nextCursor));
+    }
+
+    private boolean isAfter(RoomView view, int afterViewers, String afterRoomId) {
+        if (afterRoomId == null) {
+            return true;
+        }
+        if (view.viewers() != afterViewers) {
+            return view.viewers() < afterViewers;
+        }
+        return view.roomId().compareTo(afterRoomId) > 0;
+    }
+
+    private String nextEtag() {
+        return etagPrefix + Long.toHexString(++version) + "\"";
+    }
+
+    private static boolean sameRooms(Map<String, ChatRoom> current, Map<String, ChatRoom> next) {
+        if (current.size() != next.size()) {
+            return false;
+        }
+        for (Map.Entry<String, ChatRoom> entry : next.entrySet()) {
+            if (!sameRoom(current.get(entry.getKey()), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameRoom(ChatRoom current, ChatRoom next) {
+        return current != null
+                && current.getRoomId().equals(next.getRoomId())
+                && Objects.equals(current.getName(), next.getName())
+                && current.getSlowModeIntervalSeconds() == next.getSlowModeIntervalSeconds()
+                && Double.compare(current.getMaxMessagesPerSecond(), next.getMaxMessagesPerSecond()) == 0;
+    }
+
+    private int normalizePageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    }
+
+    private String pageEtag(List<RoomView> rows, String nextCursor) {
+        int hash = 1;
+        for (RoomView row : rows) {
+            hash = 31 * hash + row.hashCode();
+        }
+        hash = 31 * hash + (nextCursor == null ? 0 : nextCursor.hashCode());
+        return "\"rooms-page-" + Integer.toHexString(hash) + "\"";
+    }
+
+    private static String encodeCursor(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+    }
+
+    private static final Comparator<RoomView> VIEWER_ORDER = Comparator
+            .comparingInt(RoomView::viewers).reversed()
+            .thenComparing(RoomView::roomId);
+
+    /**
+     * 페이지 응답 행. viewers는 RoomPresenceService 기준 클러스터 전체 시청자 수다.
+     */
+    public record RoomView(String roomId, String name, int viewers) {
+    }
+
+    public record RoomPage(List<RoomView> rooms, String nextCursor, int totalRooms, String etag) {
+    }
+
+    private static final class Snapshot {
+        private static final Snapshot EMPTY =
+                new Snapshot(Collections.emptyMap(), new String[0], new ChatRoom[0], "\"rooms-empty\"");
+
+        private final Map<String, ChatRoom> byId;
+        private final String[] sortedIds;
+        private final ChatRoom[] sortedRooms;
+        private final List<ChatRoom> roomList;
+        private final String etag;
+
+        private Snapshot(Map<String, ChatRoom> byId, String[] sortedIds, ChatRoom[] sortedRooms, String etag) {
+            this.byId = byId;
+            this.sortedIds = sortedIds;
+            this.sortedRooms = sortedRooms;
+            this.roomList = Collections.unmodifiableList(Arrays.asList(sortedRooms));
+            this.etag = etag;
+        }
+    }
+}
@@ -2,30 +2,40 @@ package com.example.demo.service;
 
 import com.example.demo.model.ChatRoom;
 import com.example.demo.pubsub.RedisSubscriber;
+import com.example.demo.pubsub.RoomFanoutHandles;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 @RequiredArgsConstructor
 @Service
 @Slf4j
-public class ChatRoomService {
+public class ChatRoomService implements RoomOccupancyListener {
     // Redis
     private static final String CHAT_ROOMS = "CHAT_ROOM";
     private final RedisTemplate<String, Object> redisTemplate;
@@ -35,35 +45,83 @@ public class ChatRoomService {
     private final RedisMessageListenerContainer redisMessageListenerContainer;
     private final RedisSubscriber redisSubscriber; // Redis Pub/Sub 메시지를 처리하는 구독자
     private final ChatRoomSessionTracker chatRoomSessionTracker;
-    // roomId -> topic 상태(구독 토픽 + 로컬 참조 카운트 + 마지막 활동 시간)
+    // CHAT_ROOM hash 메모리 인덱스: 목록/단건 조회가 매번 Redis를 치지 않도록 한다.
+    private final ChatRoomIndex chatRoomIndex;
+    // 클러스터 전체 시청자 수(노드별 presence hash 합산)
+    private final RoomPresenceService roomPresenceService;
+    private final RecentMessageBuffer recentMessageBuffer;
+    // room별 fan-out destination/헤더 템플릿: topic 구독과 수명을 같이한다.
+    private final RoomFanoutHandles roomFanoutHandles;
+    // roomId -> topic 상태(구독 토픽 + 해지 예약 + 마지막 활동 시간)
+    // 로컬 참조 카운트는 따로 두지 않고 ChatRoomSessionTracker의 room 멤버 수를 단일 원본으로 쓴다.
     private Map<String, TopicState> topics;
+    // room이 비었을 때 유예시간 뒤 구독 해지를 실행하는 타이머
+    private ScheduledExecutorService topicUnsubscribeScheduler;
 
     @Value("${chat.topic.cleanup.idle-threshold:60s}")
-    // topic 정리 임계시간: 로컬 참조가 0이고 이 시간 동안 활동이 없으면 구독 해지
+    // topic 정리 유예시간: 로컬 세션이 0이 된 뒤 이 시간 동안 다시 들어오지 않으면 구독 해지
     private Duration topicCleanupIdleThreshold;
 
-    @Value("${chat.topic.reconcile.interval:15s}")
-    // 변경: refcount와 실제 websocket 세션 수를 주기적으로 맞추는 보정 주기
-    private Duration topicReconcileInterval;
+    @Value("${chat.room.index.scan-batch-size:500}")
+    // HSCAN 1회 호출당 COUNT 힌트: HVALS처럼 한 번에 전체를 돌려받지 않고 나눠 읽는다.
+    private int roomIndexScanBatchSize;
 
     @PostConstruct
     private void init() {
         opsHashChatRoom = redisTemplate.opsForHash();
         topics = new ConcurrentHashMap<>();
+        topicUnsubscribeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "topic-unsubscribe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        chatRoomSessionTracker.addOccupancyListener(this);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        topicUnsubscribeScheduler.shutdownNow();
     }
 
     /**
-     * 모든 채팅방 조회
+     * 모든 채팅방 조회 (메모리 인덱스 기준)
      */
     public List<ChatRoom> findAllRoom() {
-        return opsHashChatRoom.values(CHAT_ROOMS);
+        return chatRoomIndex.all();
+    }
+
+    /**
+     * 전체 목록 응답의 ETag. 인덱스 내용이 바뀔 때만 값이 달라진다.
+     */
+    public String roomListEtag() {
+        return chatRoomIndex.etag();
+    }
+
+    /**
+     * 채팅방 목록 페이지 조회
+     * - sort=ID: roomId 오름차순 keyset
+     * - sort=VIEWERS: 클러스터 전체 시청자 수 내림차순 keyset
+     */
+    public ChatRoomIndex.RoomPage findRoomPage(String cursor, int size, RoomSort sort) {
+        Map<String, Integer> viewerCounts = roomPresenceService.clusterViewerCounts();
+        if (sort == RoomSort.VIEWERS) {
+            return chatRoomIndex.pageByViewers(cursor, size, viewerCounts);
+        }
+        return chatRoomIndex.pageById(cursor, size, viewerCounts);
     }
 
     /**
      * 특정 채팅방 조회
+     * 인덱스에 없으면(다른 서버에서 방금 생성된 room 등) Redis에서 읽고 인덱스에 반영한다.
      */
     public ChatRoom findRoomById(String roomId) {
-        return opsHashChatRoom.get(CHAT_ROOMS, roomId);
+        ChatRoom indexed = chatRoomIndex.get(roomId);
+        if (indexed != null) {
+            return indexed;
+        }
+        ChatRoom chatRoom = opsHashChatRoom.get(CHAT_ROOMS, roomId);
+        chatRoomIndex.upsert(chatRoom);
+        return chatRoom;
     }
 
     /**
@@ -72,80 +130,128 @@ public class ChatRoomService {
     public ChatRoom createChatRoom(String name) {
         ChatRoom chatRoom = ChatRoom.create(name);
         opsHashChatRoom.put(CHAT_ROOMS, chatRoom.getRoomId(), chatRoom);
+        chatRoomIndex.upsert(chatRoom);
         return chatRoom;
     }
 
     /**
-     * 채팅방 입장 시, 해당 채팅방의 메시지를 받기 위한 Redis Topic 구독
+     * room slow mode 설정 변경. CHAT_ROOM hash의 room 값에 함께 저장한다.
+     * 다른 노드에는 다음 인덱스 refresh(chat.room.index.refresh-interval) 때 반영된다.
      */
-    public void enterChatRoom(String roomId) {
+    public ChatRoom updateSlowMode(String roomId, int intervalSeconds, double maxMessagesPerSecond) {
+        if (intervalSeconds < 0 || maxMessagesPerSecond < 0) {
+            throw new IllegalArgumentException("slow mode values must be >= 0");
+        }
+        ChatRoom chatRoom = findRoomById(roomId);
+        if (chatRoom == null) {
+            throw new NoSuchElementException("chat room not found: " + roomId);
+        }
+        ChatRoom updated = chatRoom.withSlowMode(intervalSeconds, maxMessagesPerSecond);
+        opsHashChatRoom.put(CHAT_ROOMS, roomId, updated);
+        chatRoomIndex.upsert(updated);
+        return updated;
+    }
+
+    /**
+     * CHAT_ROOM hash를 HSCAN으로 나눠 읽어 메모리 인덱스를 교체한다.
+     * HVALS 한 번으로 전체를 받는 대신 COUNT 단위로 커서를 진행해 Redis 슬롯 점유와 대형 응답 할당을 피한다.
+     */
+    @Scheduled(fixedDelayString = "${chat.room.index.refresh-interval:10s}")
+    public void refreshRoomIndex() {
+        long startedAt = System.nanoTime();
+        List<ChatRoom> rooms = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().count(Math.max(roomIndexScanBatchSize, 1)).build();
+        try (Cursor<Map.Entry<String, ChatRoom>> cursor = opsHashChatRoom.scan(CHAT_ROOMS, options)) {
+            while (cursor.hasNext()) {
+                ChatRoom room = cursor.next().getValue();
+                if (room != null) {
+                    rooms.add(room);
+                }
+            }
+        } catch (Exception exception) {
+            // 스캔 실패 시 기존 스냅샷을 유지한다(부분 결과로 목록이 줄어드는 것을 방지).
+            log.warn("Failed to refresh chat room index. keeping previous snapshot (size={})", chatRoomIndex.size(), exception);
+            return;
+        }
+        chatRoomIndex.replaceAll(rooms);
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000L;
+        log.debug("Refreshed chat room index. rooms={}, elapsedMs={}", rooms.size(), elapsedMs);
+    }
+
+    /**
+     * room에 첫 로컬 세션이 들어옴(0 -> 1): Redis topic을 구독하고 대기 중인 해지 예약을 취소한다.
+     * 전이 이벤트는 서로 다른 스레드에서 순서가 뒤바뀌어 도착할 수 있다. 뒤이은 1 -> 0 이벤트가 먼저 처리돼
+     * (그때는 topic이 없어 무시됨) 지금 이미 비어 있으면, 취소 대신 해지를 예약해 구독이 남지 않게 한다.
+     */
+    @Override
+    public void onRoomOccupied(String roomId) {
         topics.compute(roomId, (id, state) -> {
-            // 첫 입장(room topic 미존재) 시에만 Redis listener를 실제 등록
             if (state == null) {
                 ChannelTopic newTopic = new ChannelTopic(id);
+                // 첫 메시지가 도착하기 전에 핸들을 준비해 둔다.
+                roomFanoutHandles.open(id);
                 redisMessageListenerContainer.addMessageListener(redisSubscriber, newTopic);
                 log.info("Subscribed to Redis topic: {}", id);
                 state = new TopicState(newTopic);
             }
-            // 동일 방에 로컬 사용자가 추가되었음을 카운트
-            state.localRefCount.incrementAndGet();
             state.touch();
+            if (chatRoomSessionTracker.countByRoom(id) > 0) {
+                state.cancelPendingUnsubscribe();
+            } else {
+                scheduleUnsubscribe(id, state);
+            }
             return state;
         });
     }
 
     /**
-     * 채팅방 퇴장 시 로컬 참조 카운트를 감소시킨다.
-     * 바로 구독 해지하지 않고 스케줄러가 유예시간을 둔 뒤 정리한다.
+     * room의 마지막 로컬 세션이 나감(1 -> 0): 바로 해지하지 않고 유예시간 뒤 해지를 예약한다.
+     * 유예시간 안에 다시 들어오면(새로고침/재연결) 구독을 그대로 재사용한다.
+     * topic이 아직 없으면(앞선 0 -> 1 이벤트가 늦게 도착하는 중) 무시하고, 그 이벤트가 비어 있음을 보고 예약한다.
      */
-    public void leaveChatRoom(String roomId) {
+    @Override
+    public void onRoomVacated(String roomId) {
         topics.computeIfPresent(roomId, (id, state) -> {
-            // 중복 QUIT/비정상 흐름에서도 음수로 내려가지 않게 방어
-            state.localRefCount.updateAndGet(current -> Math.max(0, current - 1));
             state.touch();
+            scheduleUnsubscribe(id, state);
             return state;
         });
     }
 
-    @Scheduled(fixedDelayString = "${chat.topic.reconcile.interval:15s}")
-    public void reconcileTopicRefCounts() {
-        // 변경: 비정상 종료/중복 이벤트로 어긋난 refcount를 실제 websocket 세션 수로 보정한다.
-        topics.forEach((roomId, state) -> {
-            int expected = chatRoomSessionTracker.countByRoom(roomId);
-            int current = state.localRefCount.get();
-            if (current == expected) {
-                return;
-            }
-            state.localRefCount.set(expected);
-            state.touch();
-            log.warn("Reconciled topic refcount. roomId={}, previousRefCount={}, expectedRefCount={}, interval={}",
-                    roomId, current, expected, topicReconcileInterval);
-        });
+    // topics.compute 안에서만 호출한다. 이미 예약돼 있으면 그대로 둔다.
+    private void scheduleUnsubscribe(String roomId, TopicState state) {
+        if (state.pendingUnsubscribe != null) {
+            return;
+        }
+        long generation = ++state.unsubscribeGeneration;
+        state.pendingUnsubscribe = topicUnsubscribeScheduler.schedule(
+                () -> unsubscribeIfVacant(roomId, state, generation),
+                Math.max(0L, topicCleanupIdleThreshold.toMillis()),
+                TimeUnit.MILLISECONDS
+        );
     }
 
     /**
-     * 주기적으로 유휴 topic 정리:
-     * - 로컬 참조 카운트가 0이고
-     * - 마지막 활동 이후 일정 시간이 지난 경우
+     * 유예시간 만료 시점에 tracker의 현재 카운트를 다시 확인해 여전히 0일 때만 해지한다.
+     * 그 사이 세션이 다시 들어왔으면 구독을 유지한다(그 세션이 나갈 때 1 -> 0 이벤트로 다시 예약된다).
+     * 이벤트 순서 역전 자체는 이 확인으로 막을 수 없고, onRoomOccupied가 빈 room을 보고 예약하는 것으로 처리한다.
      */
-    @Scheduled(fixedDelayString = "${chat.topic.cleanup.interval:30s}")
-    public void cleanupIdleTopics() {
-        Instant now = Instant.now();
-
-        topics.forEach((roomId, state) -> {
-            if (state.localRefCount.get() > 0) {
-                return;
-            }
-            Instant lastTouchedAt = state.lastTouchedAt.get();
-            if (lastTouchedAt.plus(topicCleanupIdleThreshold).isAfter(now)) {
-                return;
+    private void unsubscribeIfVacant(String roomId, TopicState expected, long generation) {
+        topics.computeIfPresent(roomId, (id, state) -> {
+            // 이미 취소됐거나 새로 예약된 해지라면 이 실행은 무시한다.
+            if (state != expected || state.unsubscribeGeneration != generation) {
+                return state;
             }
-
-            // remove(roomId, state)로 CAS 제거하여 경쟁 상태에서 중복 해지를 방지
-            if (topics.remove(roomId, state)) {
-                redisMessageListenerContainer.removeMessageListener(redisSubscriber, state.topic);
-                log.info("Unsubscribed idle Redis topic: {} (idle for {})", roomId, topicCleanupIdleThreshold);
+            state.pendingUnsubscribe = null;
+            if (chatRoomSessionTracker.countByRoom(id) > 0) {
+                return state;
             }
+            redisMessageListenerContainer.removeMessageListener(redisSubscriber, state.topic);
+            roomFanoutHandles.close(id);
+            // 구독을 끊으면 버퍼가 더 이상 갱신되지 않으므로 resume 대상에서 제외한다.
+            recentMessageBuffer.evict(id);
+            log.info("Unsubscribed idle Redis topic: {} (idle for {})", id, topicCleanupIdleThreshold);
+            return null;
         });
     }
 
@@ -164,16 +270,18 @@ public class ChatRoomService {
      *
      * 반환 Map 의미:
      * - key: roomId
-     * - value.localRefCount: 서버가 현재 인지한 room의 로컬 참조 수
-     * - value.lastTouchedAt: ENTER/QUIT/reconcile 등으로 마지막 갱신된 시각
+     * - value.localRefCount: tracker 기준 room의 로컬 세션 수
+     * - value.lastTouchedAt: 점유/비점유 전이로 마지막 갱신된 시각
      * - value.subscribed: topic이 topics 맵에 존재하는지(현재 구현에서는 존재 시 true)
+     * - value.unsubscribeScheduled: 유예시간 뒤 해지가 예약되어 있는지
      */
     public Map<String, TopicSnapshot> topicSnapshots() {
         Map<String, TopicSnapshot> snapshots = new LinkedHashMap<>();
         topics.forEach((roomId, state) -> snapshots.put(roomId, new TopicSnapshot(
-                state.localRefCount.get(),
+                chatRoomSessionTracker.countByRoom(roomId),
                 state.lastTouchedAt.get(),
-                true
+                true,
+                state.pendingUnsubscribe != null
         )));
         return snapshots;
     }
@@ -182,13 +290,34 @@ public class ChatRoomService {
      * room topic 상태 조회 전용 불변 DTO.
      * OpsRoomStatusController에서 방별 websocket/listener 상태 응답을 만들 때 사용된다.
      */
-    public record TopicSnapshot(int localRefCount, Instant lastTouchedAt, boolean subscribed) {
+    public record TopicSnapshot(int localRefCount, Instant lastTouchedAt, boolean subscribed, boolean unsubscribeScheduled) {
+    }
+
+    /**
+     * 채팅방 목록 정렬 기준.
+     */
+    public enum RoomSort {
+        ID,
+        VIEWERS;
+
+        public static RoomSort from(String value) {
+            if (value == null || value.isBlank()) {
+                return ID;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "viewers" -> VIEWERS;
+                case "id" -> ID;
+                default -> throw new IllegalArgumentException("unsupported sort: " + value);
+            };
+        }
     }
 
     private static class TopicState {
         private final ChannelTopic topic;
-        private final AtomicInteger localRefCount = new AtomicInteger(0);
         private final AtomicReference<Instant> lastTouchedAt = new AtomicReference<>(Instant.now());
+        // topics.compute 안에서만 읽고 쓴다(room 단위로 직렬화됨).
+        private volatile ScheduledFuture<?> pendingUnsubscribe;
+        private long unsubscribeGeneration;
 
         private TopicState(ChannelTopic topic) {
             this.topic = topic;
@@ -197,5 +326,14 @@ public class ChatRoomService {
         private void touch() {
             lastTouchedAt.set(Instant.now());
         }
+
+        private void cancelPendingUnsubscribe() {
+            ScheduledFuture<?> pending = pendingUnsubscribe;
+            if (pending != null) {
+                pending.cancel(false);
+                pendingUnsubscribe = null;
+                unsubscribeGeneration++;
+            }
+        }
     }
 }
@@ -2,41 +2,60 @@ package com.example.demo.service;
 
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * websocket session -> room 소속 추적.
+ * - 쓰기(ENTER/QUIT/종료)는 StampedLock write lock 하나로 직렬화한다.
+ * - room별 세션 수/room 목록 조회는 ConcurrentHashMap과 volatile 크기로 락 없이 읽는다.
+ * - session의 현재 room 조회는 optimistic read로 읽고, 쓰기와 겹친 경우에만 read lock으로 다시 읽는다.
+ */
 @Component
 public class ChatRoomSessionTracker {
 
+    private static final int NO_ROOM = -1;
+
+    private final SessionHandleTable sessionHandleTable;
+    // room 점유 전이(0 -> 1, 1 -> 0) 구독자. room별 구독/참조 카운트는 이 tracker를 단일 원본으로 삼는다.
+    private final List<RoomOccupancyListener> occupancyListeners = new CopyOnWriteArrayList<>();
+    private final StampedLock lock = new StampedLock();
+
     // 변경: websocket 1개는 1개 room만 소속되도록 session -> room 단일 매핑으로 관리
-    private final Map<String, String> sessionToRoom = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> roomToSessions = new ConcurrentHashMap<>();
+    // - session은 SessionHandleTable의 int handle, room은 intern된 roomId의 slot 번호로 저장한다.
+    // - roomSlotByHandle[handle] = room slot, roomsBySlot[slot] = room(멤버 handle 집합 포함)
+    private int[] roomSlotByHandle = newRoomSlots(1024);
+    private final ConcurrentHashMap<String, RoomMembers> roomsById = new ConcurrentHashMap<>();
+    private RoomMembers[] roomsBySlot = new RoomMembers[64];
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int nextSlot;
+
+    public ChatRoomSessionTracker(SessionHandleTable sessionHandleTable) {
+        this.sessionHandleTable = sessionHandleTable;
+    }
+
+    public void addOccupancyListener(RoomOccupancyListener listener) {
+        occupancyListeners.add(listener);
+    }
 
     /**
      * session을 room에 바인딩한다.
      * - 같은 room으로 중복 ENTER: false
      * - 다른 room으로 ENTER: 기존 room에서 분리 후 새 room으로 이동
+     * - registry에 등록되지 않은(이미 종료된) session: false
      */
     public boolean bindSessionToRoom(String sessionId, String roomId) {
-        if (isBlank(sessionId) || isBlank(roomId)) {
+        Transition transition = bindInternal(sessionId, roomId);
+        if (transition == null) {
             return false;
         }
-        String normalizedSessionId = sessionId.trim();
-        String normalizedRoomId = roomId.trim();
-
-        String previousRoomId = sessionToRoom.get(normalizedSessionId);
-        if (normalizedRoomId.equals(previousRoomId)) {
-            return false;
-        }
-
-        if (previousRoomId != null) {
-            removeFromRoom(previousRoomId, normalizedSessionId);
-        }
-        sessionToRoom.put(normalizedSessionId, normalizedRoomId);
-        roomToSessions.computeIfAbsent(normalizedRoomId, key -> ConcurrentHashMap.newKeySet())
-                .add(normalizedSessionId);
+        fire(transition);
         return true;
     }
 
@@ -44,71 +63,265 @@ public class ChatRoomSessionTracker {
         if (isBlank(sessionId)) {
             return null;
         }
-        return sessionToRoom.get(sessionId.trim());
+        int handle = sessionHandleTable.handleOf(sessionId.trim());
+        if (handle == SessionHandleTable.NO_HANDLE) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        String roomId = roomIdOf(roomSlotByHandle, roomsBySlot, handle);
+        if (lock.validate(stamp)) {
+            return roomId;
+        }
+        stamp = lock.readLock();
+        try {
+            return roomIdOf(roomSlotByHandle, roomsBySlot, handle);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     // 변경: 중복 QUIT 방지를 위해 실제 해제 여부를 반환(단일 해제 로직 사용)
     public boolean unbindSessionFromRoom(String sessionId, String roomId) {
-        return detachSessionInternal(sessionId, roomId) != null;
+        return detachSession(sessionId, roomId, false) != null;
     }
 
-    // 변경: disconnect 시 단일 room 해제 로직을 재사용하기 위해 roomId를 반환
+    /**
+     * 연결 종료 시 session을 room에서 떼고 SessionHandleTable의 handle까지 반납한다.
+     * 두 작업을 같은 write lock 안에서 해야, 사이에 들어온 ENTER가 곧 재사용될 handle에 room을 다시 기록하지 못한다.
+     * 반환값은 해제된 roomId(소속 room이 없었으면 null)
+     */
     public String unregisterSession(String sessionId) {
-        return detachSessionInternal(sessionId, null);
+        return detachSession(sessionId, null, true);
     }
 
     public int countByRoom(String roomId) {
         if (isBlank(roomId)) {
             return 0;
         }
-        Set<String> sessions = roomToSessions.get(roomId.trim());
-        return sessions == null ? 0 : sessions.size();
+        RoomMembers room = roomsById.get(roomId.trim());
+        return room == null ? 0 : room.size;
     }
 
     public Map<String, Integer> roomSessionCounts() {
-        Map<String, Integer> snapshot = new LinkedHashMap<>();
-        roomToSessions.forEach((roomId, sessions) -> snapshot.put(roomId, sessions.size()));
+        Map<String, Integer> snapshot = new LinkedHashMap<>(roomsById.size() * 2);
+        roomsById.forEach((roomId, room) -> {
+            int size = room.size;
+            if (size > 0) {
+                snapshot.put(roomId, size);
+            }
+        });
         return snapshot;
     }
 
-    private void removeFromRoom(String roomId, String sessionId) {
-        Set<String> sessions = roomToSessions.get(roomId);
-        if (sessions == null) {
-            return;
+    /**
+     * 현재 intern되어 있는(세션이 1개 이상 있는) room 수.
+     */
+    public int activeRoomCount() {
+        return roomsById.size();
+    }
+
+    private Transition bindInternal(String sessionId, String roomId) {
+        if (isBlank(sessionId) || isBlank(roomId)) {
+            return null;
         }
-        sessions.remove(sessionId);
-        if (sessions.isEmpty()) {
-            roomToSessions.remove(roomId, sessions);
+        long stamp = lock.writeLock();
+        try {
+            // handle 조회도 write lock 안에서 해야 unregisterSession의 handle 반납과 엇갈리지 않는다.
+            int handle = sessionHandleTable.handleOf(sessionId.trim());
+            if (handle == SessionHandleTable.NO_HANDLE) {
+                return null;
+            }
+            String normalizedRoomId = roomId.trim();
+            ensureHandleCapacity(handle);
+
+            int previousSlot = roomSlotByHandle[handle];
+            if (previousSlot != NO_ROOM && roomsBySlot[previousSlot].roomId.equals(normalizedRoomId)) {
+                return null;
+            }
+            String vacated = null;
+            if (previousSlot != NO_ROOM) {
+                String previousRoomId = roomsBySlot[previousSlot].roomId;
+                if (removeFromRoom(previousSlot, handle)) {
+                    vacated = previousRoomId;
+                }
+            }
+            boolean newlyOccupied = !roomsById.containsKey(normalizedRoomId);
+            RoomMembers room = internRoom(normalizedRoomId);
+            roomSlotByHandle[handle] = room.slot;
+            room.add(handle);
+            return new Transition(vacated, newlyOccupied ? normalizedRoomId : null);
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
+    private String detachSession(String sessionId, String expectedRoomId, boolean releaseHandle) {
+        Transition transition = detachSessionInternal(sessionId, expectedRoomId, releaseHandle);
+        if (transition == null) {
+            return null;
+        }
+        fire(transition);
+        return transition.detachedRoomId;
+    }
+
     /**
      * session 해제의 단일 진입점.
      * - expectedRoomId가 있으면 해당 room에 바인딩된 경우만 해제
      * - expectedRoomId가 null이면 현재 바인딩된 room을 해제
-     * 반환값은 실제로 해제된 roomId(없으면 null)
+     * - releaseHandle이면 같은 락 안에서 handle도 반납한다(room 소속이 없어도 반납)
+     * 반환값은 실제로 해제된 room과 그로 인한 점유 전이(없으면 null)
      */
-    private String detachSessionInternal(String sessionId, String expectedRoomId) {
+    private Transition detachSessionInternal(String sessionId, String expectedRoomId, boolean releaseHandle) {
         if (isBlank(sessionId)) {
             return null;
         }
         String normalizedSessionId = sessionId.trim();
-        String boundRoom = sessionToRoom.get(normalizedSessionId);
-        if (boundRoom == null) {
-            return null;
+        long stamp = lock.writeLock();
+        try {
+            int handle = sessionHandleTable.handleOf(normalizedSessionId);
+            int slot = slotOfSession(handle);
+            Transition transition = null;
+            if (slot != NO_ROOM) {
+                String boundRoom = roomsBySlot[slot].roomId;
+                String expected = isBlank(expectedRoomId) ? null : expectedRoomId.trim();
+                if (expected == null || expected.equals(boundRoom)) {
+                    roomSlotByHandle[handle] = NO_ROOM;
+                    boolean vacated = removeFromRoom(slot, handle);
+                    transition = new Transition(vacated ? boundRoom : null, null, boundRoom);
+                }
+            }
+            if (releaseHandle) {
+                sessionHandleTable.release(normalizedSessionId);
+            }
+            return transition;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 점유 전이 이벤트는 tracker 락을 놓은 뒤 호출한다(구독자가 Redis 구독 등 느린 작업을 할 수 있으므로).
+     * vacated를 먼저 보내 방 이동 시 이전 room 정리가 새 room 구독보다 앞서게 한다.
+     */
+    private void fire(Transition transition) {
+        for (RoomOccupancyListener listener : occupancyListeners) {
+            if (transition.vacatedRoomId != null) {
+                listener.onRoomVacated(transition.vacatedRoomId);
+            }
+            if (transition.occupiedRoomId != null) {
+                listener.onRoomOccupied(transition.occupiedRoomId);
+            }
+        }
+    }
+
+    private int slotOfSession(int handle) {
+        if (handle < 0 || handle >= roomSlotByHandle.length) {
+            return NO_ROOM;
         }
+        return roomSlotByHandle[handle];
+    }
 
-        String expected = isBlank(expectedRoomId) ? null : expectedRoomId.trim();
-        if (expected != null && !expected.equals(boundRoom)) {
+    /**
+     * optimistic read용: 지역 변수로 받은 배열만 보고 범위를 확인한다(결과는 validate 실패 시 버려진다).
+     */
+    private static String roomIdOf(int[] slotsByHandle, RoomMembers[] rooms, int handle) {
+        if (handle < 0 || handle >= slotsByHandle.length) {
             return null;
         }
+        int slot = slotsByHandle[handle];
+        if (slot < 0 || slot >= rooms.length) {
+            return null;
+        }
+        RoomMembers room = rooms[slot];
+        return room == null ? null : room.roomId;
+    }
+
+    private RoomMembers internRoom(String roomId) {
+        RoomMembers existing = roomsById.get(roomId);
+        if (existing != null) {
+            return existing;
+        }
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : nextSlot++;
+        if (slot >= roomsBySlot.length) {
+            roomsBySlot = Arrays.copyOf(roomsBySlot, roomsBySlot.length << 1);
+        }
+        RoomMembers room = new RoomMembers(roomId, slot);
+        roomsBySlot[slot] = room;
+        roomsById.put(roomId, room);
+        return room;
+    }
+
+    /**
+     * 반환값: 이 제거로 room이 비었으면 true
+     */
+    private boolean removeFromRoom(int slot, int handle) {
+        RoomMembers room = roomsBySlot[slot];
+        room.remove(handle);
+        if (room.size > 0) {
+            return false;
+        }
+        // 빈 room은 intern 테이블에서 내려 roomId 문자열/집합을 GC 대상으로 만든다.
+        roomsById.remove(room.roomId);
+        roomsBySlot[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length << 1);
+        }
+        freeSlots[freeSlotCount++] = slot;
+        return true;
+    }
+
+    private void ensureHandleCapacity(int handle) {
+        if (handle < roomSlotByHandle.length) {
+            return;
+        }
+        int capacity = roomSlotByHandle.length;
+        while (capacity <= handle) {
+            capacity <<= 1;
+        }
+        int[] grown = newRoomSlots(capacity);
+        System.arraycopy(roomSlotByHandle, 0, grown, 0, roomSlotByHandle.length);
+        roomSlotByHandle = grown;
+    }
 
-        sessionToRoom.remove(normalizedSessionId);
-        removeFromRoom(boundRoom, normalizedSessionId);
-        return boundRoom;
+    private static int[] newRoomSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, NO_ROOM);
+        return slots;
     }
 
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
+
+    /**
+     * intern된 room. members는 write lock 안에서만 바꾸고, size는 락 없는 조회용으로 volatile로 따로 둔다.
+     */
+    private static final class RoomMembers {
+        private final String roomId;
+        private final int slot;
+        private final IntHashSet members = new IntHashSet();
+        private volatile int size;
+
+        private RoomMembers(String roomId, int slot) {
+            this.roomId = roomId;
+            this.slot = slot;
+        }
+
+        private void add(int handle) {
+            if (members.add(handle)) {
+                size = members.size();
+            }
+        }
+
+        private void remove(int handle) {
+            members.remove(handle);
+            size = members.size();
+        }
+    }
+
+    private record Transition(String vacatedRoomId, String occupiedRoomId, String detachedRoomId) {
+        private Transition(String vacatedRoomId, String occupiedRoomId) {
+            this(vacatedRoomId, occupiedRoomId, null);
+        }
+    }
 }
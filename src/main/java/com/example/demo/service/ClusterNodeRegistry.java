@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 살아있는 chat 노드 목록.
+ * - 각 노드는 주기적으로 sorted set(score=heartbeat 시각)에 자신을 기록한다.
+ * - heartbeat-ttl 안에 갱신된 노드만 live로 본다. 죽은 노드는 다음 heartbeat에서 정리된다.
+ * - 노드별 데이터(presence 등)는 nodeId 기준 key로 분리해 노드가 죽으면 함께 만료되게 한다.
+ */
+@Slf4j
+@Component
+public class ClusterNodeRegistry {
+
+    private static final String NODES_KEY = "chat:cluster:nodes";
+    // nodeId -> 클라이언트가 직접 접속할 수 있는 websocket endpoint URL
+    private static final String NODE_URLS_KEY = "chat:cluster:node-urls";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final Duration heartbeatTtl;
+    private final String publicUrl;
+    private volatile List<String> liveNodeIds;
+    private volatile Map<String, String> nodeUrls = Map.of();
+
+    public ClusterNodeRegistry(
+            @Qualifier("streamStringRedisTemplate") StringRedisTemplate redisTemplate,
+            @Value("${chat.node.id:${server.port:8080}}") String nodeId,
+            @Value("${chat.node.heartbeat-ttl:15s}") Duration heartbeatTtl,
+            @Value("${chat.node.public-url:}") String publicUrl
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId;
+        this.heartbeatTtl = heartbeatTtl;
+        this.publicUrl = publicUrl == null ? "" : publicUrl.trim();
+        this.liveNodeIds = List.of(nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.node.heartbeat-interval:2s}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            if (!publicUrl.isEmpty()) {
+                redisTemplate.opsForHash().put(NODE_URLS_KEY, nodeId, publicUrl);
+            }
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - heartbeatTtl.toMillis());
+            Set<String> members = redisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+            List<String> live = new ArrayList<>(members == null ? Set.of() : members);
+            if (!live.contains(nodeId)) {
+                live.add(nodeId);
+            }
+            live.sort(null);
+            liveNodeIds = List.copyOf(live);
+            Map<Object, Object> urls = redisTemplate.opsForHash().entries(NODE_URLS_KEY);
+            Map<String, String> liveUrls = new HashMap<>();
+            urls.forEach((id, url) -> {
+                if (live.contains(String.valueOf(id))) {
+                    liveUrls.put(String.valueOf(id), String.valueOf(url));
+                }
+            });
+            nodeUrls = Map.copyOf(liveUrls);
+        } catch (Exception exception) {
+            // Redis 장애 중에는 직전 목록을 유지한다.
+            log.warn("Failed to heartbeat cluster node. nodeId={}, keepingLiveNodes={}", nodeId, liveNodeIds, exception);
+        }
+    }
+
+    @PreDestroy
+    public void deregister() {
+        try {
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+            redisTemplate.opsForHash().delete(NODE_URLS_KEY, nodeId);
+        } catch (Exception exception) {
+            log.debug("Failed to deregister cluster node. nodeId={}", nodeId, exception);
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * live 노드 id 목록(정렬됨, 자기 자신 포함).
+     */
+    public List<String> liveNodeIds() {
+        return liveNodeIds;
+    }
+
+    /**
+     * live 노드의 공개 websocket URL(chat.node.public-url을 설정한 노드만).
+     */
+    public String publicUrlOf(String targetNodeId) {
+        return nodeUrls.get(targetNodeId);
+    }
+
+    public Duration heartbeatTtl() {
+        return heartbeatTtl;
+    }
+}
@@ -1,35 +1,295 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.Comment;
+import com.example.demo.model.DTO.CommentPageDTO;
 import com.example.demo.repository.CommentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
 
 @Service
 public class CommentService {
 
     private static final Logger logger = LoggerFactory.getLogger(CommentService.class);
 
+    public static final int MAX_PAGE_SIZE = 200;
+    private static final List<String> PAGE_FIELDS = List.of("_id", "user_id", "room_id", "comment", "createdAt");
+    private static final byte[] NEWLINE = {'\n'};
+    // cursor에서 createdAt이 없는 댓글을 나타내는 값
+    private static final String NULL_CREATED_AT = "-";
+
     @Autowired
     CommentRepository commentRepository;
 
-    public List<Comment> getUserComments(String userId) {
-        List<Comment> comments = commentRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        return comments;
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    CommentTimelineCache commentTimelineCache;
+
+    // NDJSON 한 줄 단위 직렬화용. API 응답과 같은 설정(날짜 형식 등)을 쓰도록 앱 mapper를 그대로 쓴다.
+    @Autowired
+    JsonMapper jsonMapper;
+
+    @Value("${chat.comment.export.batch-size:500}")
+    // export 시 Mongo cursor가 한 번에 가져오는 문서 수(getMore 단위)
+    private int exportBatchSize;
+
+    @Value("${chat.comment.export.flush-every:1000}")
+    private int exportFlushEvery;
+
+    @Value("${chat.comment.export.max-concurrent:4}")
+    // 동시에 열 수 있는 export(= Mongo cursor) 수. 넘으면 503으로 거절한다.
+    private int exportMaxConcurrent;
+
+    @Value("${chat.comment.export.timeout:30m}")
+    private Duration exportTimeout;
+
+    private Semaphore exportSlots;
+    // export 전용 실행기. MVC 기본 async 실행기/타임아웃과 분리해 다른 async 요청에 영향을 주지 않는다.
+    private ThreadPoolTaskExecutor exportExecutor;
+
+    @PostConstruct
+    public void startExportExecutor() {
+        int maxConcurrent = Math.max(1, exportMaxConcurrent);
+        exportSlots = new Semaphore(maxConcurrent);
+        exportExecutor = new ThreadPoolTaskExecutor();
+        exportExecutor.setThreadNamePrefix("comment-export-");
+        exportExecutor.setCorePoolSize(maxConcurrent);
+        exportExecutor.setMaxPoolSize(maxConcurrent);
+        // slot을 얻은 요청만 제출하므로 큐는 slot 수면 충분하다.
+        exportExecutor.setQueueCapacity(maxConcurrent);
+        exportExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void stopExportExecutor() {
+        exportExecutor.shutdown();
+    }
+
+    /**
+     * 페이지 조회가 쓰는 (room_id|user_id, createdAt, _id) 복합 인덱스를 기동 시 생성한다.
+     * 이미 있으면 Mongo가 그대로 두므로 매 기동 호출해도 된다. Mongo가 내려가 있어도 기동은 막지 않는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(Comment.class);
+            indexOps.createIndex(new Index()
+                    .on("room_id", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("room_createdAt_id"));
+            indexOps.createIndex(new Index()
+                    .on("user_id", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("user_createdAt_id"));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to create comment indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 사용자 댓글 최신순 페이지.
+     */
+    public CommentPageDTO getUserComments(String userId, String cursor, int size) {
+        return findPage(Criteria.where("user_id").is(userId), cursor, size);
     }
 
     public List<Comment> getCommentsWithUserIdRoomId(String userId, String roomId) {
         return commentRepository.findByUserIDAndRoomId(userId, roomId);
     }
-    public List<Comment> getCommentsWithRoomId(String roomId) {
-        return commentRepository.findByRoomId(roomId);
+
+    /**
+     * 영상 댓글 최신순 페이지.
+     */
+    public CommentPageDTO getCommentsWithRoomId(String roomId, String cursor, int size) {
+        return findPage(Criteria.where("room_id").is(roomId), cursor, size);
+    }
+
+    public ThreadPoolTaskExecutor exportExecutor() {
+        return exportExecutor;
+    }
+
+    public long exportTimeoutMillis() {
+        return exportTimeout.toMillis();
+    }
+
+    /**
+     * export slot을 얻는다. false면 동시 export 수 상한에 걸린 것이다.
+     * 얻은 slot은 export가 끝나거나(정상/오류/타임아웃) 시작하지 못했을 때 releaseExportSlot으로 한 번만 돌려준다.
+     */
+    public boolean tryAcquireExportSlot() {
+        return exportSlots.tryAcquire();
+    }
+
+    public void releaseExportSlot() {
+        exportSlots.release();
+    }
+
+    /**
+     * 영상 댓글을 createdAt 오름차순 NDJSON(한 줄에 댓글 하나)으로 out에 쓴다.
+     * - 결과를 모으지 않고 Mongo cursor에서 batch 단위로 읽어 바로 쓰므로 메모리는 batch 크기만큼만 쓴다.
+     * - out.write가 느린 클라이언트 때문에 막히면 cursor도 다음 batch를 가져오지 않는다(자연스러운 backpressure).
+     * - 클라이언트가 끊으면 write의 IOException으로 빠져나오며 cursor는 try-with-resources로 닫힌다.
+     * 반환값은 쓴 댓글 수
+     */
+    public long exportRoomComments(String roomId, Instant from, Instant to, OutputStream out) throws IOException {
+        Criteria criteria = Criteria.where("room_id").is(roomId);
+        if (from != null || to != null) {
+            Criteria createdAt = Criteria.where("createdAt");
+            if (from != null) {
+                createdAt = createdAt.gte(Date.from(from));
+            }
+            if (to != null) {
+                createdAt = createdAt.lt(Date.from(to));
+            }
+            criteria = new Criteria().andOperator(criteria, createdAt);
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt").and(Sort.by(Sort.Direction.ASC, "_id")))
+                .cursorBatchSize(Math.max(1, exportBatchSize));
+        PAGE_FIELDS.forEach(field -> query.fields().include(field));
+
+        long startedAt = System.nanoTime();
+        try (Stream<Comment> comments = mongoTemplate.stream(query, Comment.class)) {
+            long written = writeNdjson(comments.iterator(), out);
+            logger.info("Comment export finished. roomId={}, written={}, elapsedMs={}",
+                    roomId, written, (System.nanoTime() - startedAt) / 1_000_000L);
+            return written;
+        } catch (IOException | RuntimeException e) {
+            logger.info("Comment export aborted. roomId={}, elapsedMs={}, reason={}",
+                    roomId, (System.nanoTime() - startedAt) / 1_000_000L, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 댓글마다 JSON 한 줄을 쓰고 flush-every건마다 flush 한다. out의 IOException은 그대로 올린다.
+     */
+    long writeNdjson(Iterator<Comment> comments, OutputStream out) throws IOException {
+        int flushEvery = Math.max(1, exportFlushEvery);
+        long written = 0L;
+        while (comments.hasNext()) {
+            out.write(jsonMapper.writeValueAsBytes(comments.next()));
+            out.write(NEWLINE);
+            if (++written % flushEvery == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * 영상 건너뛰기용 [start, end] 구간 댓글(작성순). 시간 bucket 캐시에서 응답한다.
+     */
+    public List<Comment> getCommentsWithRoomIdAndDateRange(String roomId, Instant start, Instant end) {
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+        return commentTimelineCache.seek(roomId, start, end);
+    }
+
+    /**
+     * (createdAt desc, _id desc) keyset 페이지.
+     * skip 없이 직전 페이지 마지막 (createdAt, _id) 다음부터 인덱스를 이어 읽고, size+1개를 읽어 다음 페이지 유무를 판단한다.
+     */
+    private CommentPageDTO findPage(Criteria owner, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Criteria criteria = owner;
+        Cursor after = decodeCursor(cursor);
+        if (after != null && after.createdAt() == null) {
+            // createdAt이 없는 댓글은 내림차순에서 가장 뒤에 오므로 그 구간 안에서 _id로만 이어 읽는다.
+            criteria = new Criteria().andOperator(owner,
+                    Criteria.where("createdAt").is(null),
+                    Criteria.where("_id").lt(after.id()));
+        } else if (after != null) {
+            // createdAt 비교($lt)는 null/누락 문서와 맞지 않으므로, 날짜 구간 뒤에 오는 그 문서들을 따로 포함한다.
+            criteria = new Criteria().andOperator(owner, new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(after.createdAt()),
+                    new Criteria().andOperator(
+                            Criteria.where("createdAt").is(after.createdAt()),
+                            Criteria.where("_id").lt(after.id())),
+                    Criteria.where("createdAt").is(null)));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "_id")))
+                .limit(pageSize + 1);
+        // 엔티티 필드만 읽는다(문서에 엔티티 밖 필드가 붙어 있어도 전송하지 않음). 응답 형태는 projection 전과 같다.
+        PAGE_FIELDS.forEach(field -> query.fields().include(field));
+
+        List<Comment> comments = mongoTemplate.find(query, Comment.class);
+        String nextCursor = null;
+        if (comments.size() > pageSize) {
+            comments = comments.subList(0, pageSize);
+            nextCursor = encodeCursor(comments.get(pageSize - 1));
+        }
+        return CommentPageDTO.builder()
+                .comments(comments)
+                .nextCursor(nextCursor)
+                .size(comments.size())
+                .build();
+    }
+
+    /**
+     * cursor 원문은 "createdAt(epoch ms):_id". createdAt이 없는 댓글은 epoch 0과 구분되도록 "-:_id"로 쓴다.
+     */
+    private static String encodeCursor(Comment last) {
+        String createdAt = last.getCreatedAt() == null ? NULL_CREATED_AT : Long.toString(last.getCreatedAt().getTime());
+        String raw = createdAt + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            String createdAtPart = raw.substring(0, separator);
+            Date createdAt = NULL_CREATED_AT.equals(createdAtPart) ? null : new Date(Long.parseLong(createdAtPart));
+            String id = raw.substring(separator + 1);
+            if (id.isEmpty()) {
+                throw new IllegalArgumentException("empty id");
+            }
+            // _id는 보통 ObjectId로 저장되므로 같은 타입으로 비교해야 인덱스 순서와 맞는다.
+            return new Cursor(createdAt, ObjectId.isValid(id) ? new ObjectId(id) : id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
     }
 
-    public List<Comment> getCommentsWithRoomIdAndDateRange( String roomId, String startDate, String endDate) {
-        return commentRepository.findByRoomIdAndCreatedAtBetween( roomId, startDate, endDate);
+    // createdAt이 null이면 createdAt 없는 댓글 구간의 cursor
+    private record Cursor(Date createdAt, Object id) {
     }
 }
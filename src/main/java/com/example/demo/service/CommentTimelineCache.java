@@ -0,0 +1,283 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Comment;
+import com.example.demo.repository.CommentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 영상 건너뛰기(seek)용 댓글 타임라인 캐시.
+ * - room의 댓글을 고정 길이 시간 구간(bucket) 단위로 캐시하고, seek 범위에 걸친 bucket을 조합해 응답한다.
+ * - 캐시에 없는 bucket은 연속 구간을 Mongo 범위 쿼리 한 번으로 읽어 bucket별로 나눠 넣는다.
+ * - 응답 후 seek 범위 앞뒤 bucket을 백그라운드로 미리 읽어 다음 seek가 캐시에서 끝나게 한다.
+ * - 아직 댓글이 쌓이는 최근 bucket(끝 시각 + settle 이내)은 캐시하지 않고 매번 읽는다.
+ * - bucket 수(max-buckets)와 전체 댓글 수(max-comments)를 함께 제한하며 가장 오래 쓰이지 않은 bucket부터 내보낸다.
+ *   bucket마다 댓글 수가 크게 다르므로 메모리는 bucket 수가 아니라 댓글 수로 묶는다.
+ */
+@Slf4j
+@Service
+public class CommentTimelineCache {
+
+    private final CommentRepository commentRepository;
+    private final long bucketMillis;
+    private final int maxBuckets;
+    private final long maxComments;
+    private final int maxCommentsPerBucket;
+    private final int maxBucketsPerSeek;
+    private final int prefetchBuckets;
+    private final long settleMillis;
+    // 접근 순서 LRU. 조회/갱신은 이 객체 락 안에서만 한다.
+    private final LinkedHashMap<BucketKey, List<Comment>> buckets = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedComments;
+    private final Set<BucketKey> prefetching = ConcurrentHashMap.newKeySet();
+    private final ExecutorService prefetchExecutor;
+
+    private final LongAdder seeks = new LongAdder();
+    private final LongAdder bucketHits = new LongAdder();
+    private final LongAdder bucketMisses = new LongAdder();
+    private final LongAdder uncachedSeeks = new LongAdder();
+    private final LongAdder prefetchedBuckets = new LongAdder();
+    private final LongAdder seekNanos = new LongAdder();
+    private final LongAccumulator seekMaxNanos = new LongAccumulator(Math::max, 0L);
+
+    public CommentTimelineCache(
+            CommentRepository commentRepository,
+            @Value("${chat.comment.timeline.bucket-size:1m}") Duration bucketSize,
+            @Value("${chat.comment.timeline.max-buckets:20000}") int maxBuckets,
+            @Value("${chat.comment.timeline.max-comments:1000000}") long maxComments,
+            @Value("${chat.comment.timeline.max-comments-per-bucket:5000}") int maxCommentsPerBucket,
+            @Value("${chat.comment.timeline.max-buckets-per-seek:60}") int maxBucketsPerSeek,
+            @Value("${chat.comment.timeline.prefetch-buckets:2}") int prefetchBuckets,
+            @Value("${chat.comment.timeline.settle:10s}") Duration settle
+    ) {
+        this.commentRepository = commentRepository;
+        this.bucketMillis = Math.max(1_000L, bucketSize.toMillis());
+        this.maxBuckets = Math.max(1, maxBuckets);
+        this.maxCommentsPerBucket = Math.max(1, maxCommentsPerBucket);
+        // 한 bucket 상한보다 작으면 방금 넣은 bucket까지 바로 내보내게 되므로 최소 한 bucket은 담을 수 있게 한다.
+        this.maxComments = Math.max(this.maxCommentsPerBucket, maxComments);
+        this.maxBucketsPerSeek = Math.max(1, maxBucketsPerSeek);
+        this.prefetchBuckets = Math.max(0, prefetchBuckets);
+        this.settleMillis = Math.max(0L, settle.toMillis());
+        // 미리 읽기는 응답 경로가 아니므로 작은 고정 풀 + 유한 큐로 두고, 넘치면 건너뛴다.
+        this.prefetchExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(256), runnable -> {
+                    Thread thread = new Thread(runnable, "comment-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * [start, end] 구간 댓글(createdAt 오름차순).
+     */
+    public List<Comment> seek(String roomId, Instant start, Instant end) {
+        long startedAt = System.nanoTime();
+        try {
+            long firstBucket = Math.floorDiv(start.toEpochMilli(), bucketMillis);
+            long lastBucket = Math.floorDiv(end.toEpochMilli(), bucketMillis);
+            if (lastBucket - firstBucket + 1 > maxBucketsPerSeek) {
+                // 긴 구간 조회는 캐시를 오염시키지 않도록 직접 읽는다.
+                uncachedSeeks.increment();
+                return commentRepository.findByRoomIdAndCreatedAtBetween(roomId, start, end);
+            }
+
+            Map<Long, List<Comment>> resolved = resolve(roomId, firstBucket, lastBucket);
+            List<Comment> result = new ArrayList<>();
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                for (Comment comment : resolved.getOrDefault(bucket, List.of())) {
+                    Date createdAt = comment.getCreatedAt();
+                    if (createdAt != null && !createdAt.toInstant().isBefore(start) && !createdAt.toInstant().isAfter(end)) {
+                        result.add(comment);
+                    }
+                }
+            }
+            prefetchAround(roomId, firstBucket, lastBucket);
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - startedAt;
+            seeks.increment();
+            seekNanos.add(elapsed);
+            seekMaxNanos.accumulate(elapsed);
+        }
+    }
+
+    public TimelineCacheStats stats() {
+        long hits = bucketHits.sum();
+        long misses = bucketMisses.sum();
+        long seekCount = seeks.sum();
+        int bucketCount;
+        long comments;
+        synchronized (buckets) {
+            bucketCount = buckets.size();
+            comments = cachedComments;
+        }
+        return new TimelineCacheStats(
+                bucketMillis,
+                bucketCount,
+                comments,
+                maxComments,
+                seekCount,
+                uncachedSeeks.sum(),
+                hits,
+                misses,
+                hits + misses == 0 ? 0.0 : (double) hits / (hits + misses),
+                prefetchedBuckets.sum(),
+                seekCount == 0 ? 0L : seekNanos.sum() / seekCount / 1_000L,
+                seekMaxNanos.get() / 1_000L
+        );
+    }
+
+    /**
+     * 범위 bucket을 캐시에서 찾고, 없는 bucket은 연속 구간 단위로 Mongo에서 읽어 채운다.
+     */
+    private Map<Long, List<Comment>> resolve(String roomId, long firstBucket, long lastBucket) {
+        Map<Long, List<Comment>> resolved = new HashMap<>();
+        synchronized (buckets) {
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                List<Comment> cached = buckets.get(new BucketKey(roomId, bucket));
+                if (cached != null) {
+                    resolved.put(bucket, cached);
+                }
+            }
+        }
+        bucketHits.add(resolved.size());
+        long missStart = -1L;
+        for (long bucket = firstBucket; bucket <= lastBucket + 1; bucket++) {
+            boolean missing = bucket <= lastBucket && !resolved.containsKey(bucket);
+            if (missing && missStart < 0) {
+                missStart = bucket;
+            } else if (!missing && missStart >= 0) {
+                bucketMisses.add(bucket - missStart);
+                resolved.putAll(load(roomId, missStart, bucket - 1));
+                missStart = -1L;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * [fromBucket, toBucket] 구간을 범위 쿼리 한 번으로 읽어 bucket별로 나누고, 확정된 bucket은 캐시에 넣는다.
+     */
+    private Map<Long, List<Comment>> load(String roomId, long fromBucket, long toBucket) {
+        Instant from = Instant.ofEpochMilli(fromBucket * bucketMillis);
+        Instant to = Instant.ofEpochMilli((toBucket + 1) * bucketMillis - 1);
+        List<Comment> comments = commentRepository.findByRoomIdAndCreatedAtBetween(roomId, from, to);
+
+        Map<Long, List<Comment>> loaded = new HashMap<>();
+        for (long bucket = fromBucket; bucket <= toBucket; bucket++) {
+            loaded.put(bucket, new ArrayList<>());
+        }
+        for (Comment comment : comments) {
+            if (comment.getCreatedAt() != null) {
+                long bucket = Math.floorDiv(comment.getCreatedAt().getTime(), bucketMillis);
+                List<Comment> target = loaded.get(bucket);
+                if (target != null) {
+                    target.add(comment);
+                }
+            }
+        }
+        long settledBefore = System.currentTimeMillis() - settleMillis;
+        synchronized (buckets) {
+            for (Map.Entry<Long, List<Comment>> entry : loaded.entrySet()) {
+                List<Comment> bucketComments = List.copyOf(entry.getValue());
+                entry.setValue(bucketComments);
+                boolean settled = (entry.getKey() + 1) * bucketMillis <= settledBefore;
+                if (settled && bucketComments.size() <= maxCommentsPerBucket) {
+                    List<Comment> previous = buckets.put(new BucketKey(roomId, entry.getKey()), bucketComments);
+                    cachedComments += bucketComments.size() - (previous == null ? 0 : previous.size());
+                }
+            }
+            evictOverflow();
+        }
+        return loaded;
+    }
+
+    private void prefetchAround(String roomId, long firstBucket, long lastBucket) {
+        for (int offset = 1; offset <= prefetchBuckets; offset++) {
+            prefetch(roomId, firstBucket - offset);
+            prefetch(roomId, lastBucket + offset);
+        }
+    }
+
+    private void prefetch(String roomId, long bucket) {
+        BucketKey key = new BucketKey(roomId, bucket);
+        if ((bucket + 1) * bucketMillis > System.currentTimeMillis() - settleMillis) {
+            return;
+        }
+        synchronized (buckets) {
+            if (buckets.containsKey(key)) {
+                return;
+            }
+        }
+        if (!prefetching.add(key)) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    load(roomId, bucket, bucket);
+                    prefetchedBuckets.increment();
+                } catch (RuntimeException exception) {
+                    log.debug("Comment bucket prefetch failed. roomId={}, bucket={}", roomId, bucket, exception);
+                } finally {
+                    prefetching.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            prefetching.remove(key);
+        }
+    }
+
+    private void evictOverflow() {
+        var iterator = buckets.entrySet().iterator();
+        while ((buckets.size() > maxBuckets || cachedComments > maxComments) && iterator.hasNext()) {
+            cachedComments -= iterator.next().getValue().size();
+            iterator.remove();
+        }
+    }
+
+    private record BucketKey(String roomId, long bucket) {
+    }
+
+    public record TimelineCacheStats(
+            long bucketMillis,
+            int cachedBuckets,
+            long cachedComments,
+            long maxComments,
+            long seeks,
+            long uncachedSeeks,
+            long bucketHits,
+            long bucketMisses,
+            double bucketHitRatio,
+            long prefetchedBuckets,
+            long seekMicrosAvg,
+            long seekMicrosMax
+    ) {
+    }
+}
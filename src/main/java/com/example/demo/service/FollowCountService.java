@@ -0,0 +1,303 @@
+package com.example.demo.service;
+
+import com.example.demo.model.DTO.FollowCountDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 팔로워/팔로잉 수 캐시.
+ * - 프로필 조회마다 follows를 COUNT하지 않고 follow_counts 유지값을 TTL 캐시에서 응답한다.
+ * - 팔로우 저장 시 캐시에 있는 값은 바로 고치고, 변화분(delta)은 사용자별로 모아 주기적으로 batch UPDATE 한다.
+ * - follow_counts에 행이 없는 사용자는 처음 조회할 때 COUNT로 채운다.
+ * - 캐시에 올라 있는(자주 조회되는) 사용자는 주기적으로 COUNT로 다시 맞춰 유실/경합 오차를 없앤다.
+ * - COUNT로 덮어쓸 때는 COUNT 전에 이미 쌓여 있던 변화분(그 팔로우는 INSERT가 끝난 뒤 기록되므로 COUNT에 들어 있다)만 빼고,
+ *   COUNT 도중 들어온 변화분은 남긴다. flush와 COUNT 덮어쓰기는 flushLock으로 서로 겹치지 않게 한다.
+ */
+@Slf4j
+@Service
+public class FollowCountService {
+
+    private static final String MAPPER = "com.example.mapper.FollowsMapper.";
+
+    private final SqlSession sqlSession;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final ConcurrentHashMap<String, CachedCounts> cache = new ConcurrentHashMap<>();
+    // 아직 DB에 반영하지 않은 사용자별 변화분
+    private final ConcurrentHashMap<String, Delta> pendingDeltas = new ConcurrentHashMap<>();
+    // flush가 꺼내 간 변화분의 UPDATE가 COUNT 덮어쓰기 뒤에 적용되면 이중 집계되므로 둘을 직렬화한다.
+    private final Object flushLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder seeded = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder reconciled = new LongAdder();
+    private final LongAdder reconcileCorrections = new LongAdder();
+
+    @Value("${chat.follow.count-cache.ttl:30s}")
+    private Duration ttl;
+    @Value("${chat.follow.count-cache.max-entries:100000}")
+    private int maxEntries;
+    @Value("${chat.follow.count-cache.reconcile-batch:500}")
+    private int reconcileBatch;
+    // 직전 reconcile이 마지막으로 맞춘 userId(스케줄 스레드에서만 읽고 쓴다)
+    private String reconcileCursor;
+
+    public FollowCountService(SqlSession sqlSession, SqlSessionFactory sqlSessionFactory) {
+        this.sqlSession = sqlSession;
+        this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    public FollowCountDTO getCounts(String userId) {
+        long now = System.currentTimeMillis();
+        CachedCounts cached = cache.get(userId);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            hits.increment();
+            return cached.toDto(userId);
+        }
+        misses.increment();
+        FollowCountDTO stored = sqlSession.selectOne(MAPPER + "selectFollowCounts", userId);
+        Delta pending;
+        if (stored == null) {
+            Recount recount = recount(userId);
+            stored = recount.exact();
+            seeded.increment();
+            pending = recount.remaining();
+        } else {
+            // DB에 아직 반영되지 않은 변화분을 더해야 방금 한 팔로우가 캐시 만료 뒤에도 보인다.
+            pending = pendingDeltas.get(userId);
+        }
+        int followers = stored.getFollowerCount() + (pending == null ? 0 : pending.followers());
+        int following = stored.getFollowingCount() + (pending == null ? 0 : pending.following());
+        if (cache.size() >= maxEntries) {
+            evictExpired(now);
+        }
+        if (cache.size() < maxEntries) {
+            cache.put(userId, new CachedCounts(followers, following, now + ttl.toMillis()));
+        }
+        return new CachedCounts(followers, following, 0L).toDto(userId);
+    }
+
+    /**
+     * follower가 streamer를 새로 팔로우했을 때 호출한다(이미 팔로우 중이면 호출하지 않는다).
+     */
+    public void recordFollow(String followerId, String streamerId) {
+        applyDelta(streamerId, 1, 0);
+        applyDelta(followerId, 0, 1);
+    }
+
+    /**
+     * 모인 변화분을 batch 실행기로 한 번에 UPDATE 한다. 실패하면 변화분을 되돌려 다음 주기에 다시 시도한다.
+     */
+    @Scheduled(fixedDelayString = "${chat.follow.count-flush-interval:1s}")
+    public void flushDeltas() {
+        if (pendingDeltas.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            flushPendingDeltas();
+        }
+    }
+
+    private void flushPendingDeltas() {
+        Map<String, Delta> drained = new HashMap<>();
+        for (String userId : pendingDeltas.keySet()) {
+            Delta delta = pendingDeltas.remove(userId);
+            if (delta != null && !delta.isZero()) {
+                drained.put(userId, delta);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        try (SqlSession batch = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            for (Map.Entry<String, Delta> entry : drained.entrySet()) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("userId", entry.getKey());
+                params.put("followerDelta", entry.getValue().followers());
+                params.put("followingDelta", entry.getValue().following());
+                batch.update(MAPPER + "updateFollowCountDelta", params);
+            }
+            batch.flushStatements();
+            batch.commit();
+            flushedRows.add(drained.size());
+        } catch (RuntimeException exception) {
+            flushFailures.increment();
+            drained.forEach((userId, delta) -> pendingDeltas.merge(userId, delta, Delta::plus));
+            log.warn("Failed to flush follow count deltas. users={}", drained.size(), exception);
+        }
+    }
+
+    /**
+     * 캐시에 올라 있는 사용자를 COUNT 결과로 다시 맞춘다. 변화분을 먼저 반영한 뒤 덮어쓴다.
+     * 한 주기에 reconcile-batch명씩, userId 순서로 직전 주기가 멈춘 다음 사용자부터 돌아가며 맞춘다
+     * (캐시 사용자가 batch보다 많아도 모든 사용자가 차례로 보정된다).
+     */
+    @Scheduled(fixedDelayString = "${chat.follow.count-reconcile-interval:10m}")
+    public void reconcile() {
+        flushDeltas();
+        List<String> userIds = new ArrayList<>(cache.keySet());
+        Collections.sort(userIds);
+        int limit = Math.min(userIds.size(), Math.max(0, reconcileBatch));
+        int start = nextReconcileIndex(userIds);
+        for (int i = 0; i < limit; i++) {
+            String userId = userIds.get((start + i) % userIds.size());
+            reconcileCursor = userId;
+            try {
+                CachedCounts previous = cache.get(userId);
+                Recount recount = recount(userId);
+                int followers = recount.followers();
+                int following = recount.following();
+                cache.computeIfPresent(userId, (key, cached) ->
+                        new CachedCounts(followers, following, cached.expiresAtMillis()));
+                reconciled.increment();
+                if (previous != null && (previous.followers() != followers || previous.following() != following)) {
+                    reconcileCorrections.increment();
+                }
+            } catch (RuntimeException exception) {
+                log.warn("Failed to reconcile follow counts. userId={}", userId, exception);
+            }
+        }
+        evictExpired(System.currentTimeMillis());
+    }
+
+    public FollowCountStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return new FollowCountStats(
+                cache.size(),
+                hitCount,
+                missCount,
+                hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount),
+                seeded.sum(),
+                pendingDeltas.size(),
+                flushedRows.sum(),
+                flushFailures.sum(),
+                reconciled.sum(),
+                reconcileCorrections.sum()
+        );
+    }
+
+    /**
+     * 정렬된 userIds에서 직전 주기가 마지막으로 맞춘 사용자 다음 위치. 그 사용자가 캐시에서 빠졌어도 순서상 다음부터 잇는다.
+     */
+    private int nextReconcileIndex(List<String> userIds) {
+        if (reconcileCursor == null || userIds.isEmpty()) {
+            return 0;
+        }
+        int index = Collections.binarySearch(userIds, reconcileCursor);
+        int next = index >= 0 ? index + 1 : -index - 1;
+        return next >= userIds.size() ? 0 : next;
+    }
+
+    private void applyDelta(String userId, int followers, int following) {
+        Delta delta = new Delta(followers, following);
+        pendingDeltas.merge(userId, delta, Delta::plus);
+        cache.computeIfPresent(userId, (key, cached) ->
+                new CachedCounts(cached.followers() + followers, cached.following() + following, cached.expiresAtMillis()));
+    }
+
+    /**
+     * COUNT로 follow_counts를 덮어쓰고, 그 뒤에도 DB에 더해야 할 변화분을 남긴다.
+     * COUNT 전에 잡아 둔 변화분은 COUNT에 이미 들어 있으므로 빼고(다시 더하면 이중 집계), COUNT 도중 들어온 변화분은 남긴다.
+     */
+    private Recount recount(String userId) {
+        synchronized (flushLock) {
+            Delta before = pendingDeltas.getOrDefault(userId, Delta.ZERO);
+            FollowCountDTO exact = countAndStore(userId);
+            Delta remaining = pendingDeltas.compute(userId, (key, current) -> {
+                Delta left = (current == null ? Delta.ZERO : current).minus(before);
+                return left.isZero() ? null : left;
+            });
+            return new Recount(exact, remaining == null ? Delta.ZERO : remaining);
+        }
+    }
+
+    private FollowCountDTO countAndStore(String userId) {
+        int followers = sqlSession.selectOne(MAPPER + "selectFollowedCount", userId);
+        int following = sqlSession.selectOne(MAPPER + "selectFollowingCount", userId);
+        Map<String, Object> params = new HashMap<>();
+        params.put("userId", userId);
+        params.put("followerCount", followers);
+        params.put("followingCount", following);
+        sqlSession.update(MAPPER + "upsertFollowCounts", params);
+
+        FollowCountDTO counts = new FollowCountDTO();
+        counts.setUserId(userId);
+        counts.setFollowerCount(followers);
+        counts.setFollowingCount(following);
+        return counts;
+    }
+
+    private void evictExpired(long now) {
+        cache.entrySet().removeIf(entry -> entry.getValue().expiresAtMillis() <= now);
+    }
+
+    private record CachedCounts(int followers, int following, long expiresAtMillis) {
+        private FollowCountDTO toDto(String userId) {
+            FollowCountDTO counts = new FollowCountDTO();
+            counts.setUserId(userId);
+            counts.setFollowerCount(followers);
+            counts.setFollowingCount(following);
+            return counts;
+        }
+    }
+
+    private record Delta(int followers, int following) {
+        private static final Delta ZERO = new Delta(0, 0);
+
+        private Delta plus(Delta other) {
+            return new Delta(followers + other.followers, following + other.following);
+        }
+
+        private Delta minus(Delta other) {
+            return new Delta(followers - other.followers, following - other.following);
+        }
+
+        private boolean isZero() {
+            return followers == 0 && following == 0;
+        }
+    }
+
+    /**
+     * COUNT 결과와 아직 DB에 더하지 않은 변화분. 사용자에게 보일 값은 둘의 합이다.
+     */
+    private record Recount(FollowCountDTO exact, Delta remaining) {
+        private int followers() {
+            return exact.getFollowerCount() + remaining.followers();
+        }
+
+        private int following() {
+            return exact.getFollowingCount() + remaining.following();
+        }
+    }
+
+    public record FollowCountStats(
+            int cachedUsers,
+            long hits,
+            long misses,
+            double hitRatio,
+            long seededFromCount,
+            int pendingDeltaUsers,
+            long flushedRows,
+            long flushFailures,
+            long reconciled,
+            long reconcileCorrections
+    ) {
+    }
+}
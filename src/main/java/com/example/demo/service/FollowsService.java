@@ -1,12 +1,15 @@
 package com.example.demo.service;
 
-import com.example.demo.entity.Follows;
 import com.example.demo.model.DTO.CustomerDTO;
+import com.example.demo.model.DTO.CustomerPageDTO;
+import com.example.demo.model.DTO.FollowCountDTO;
 import com.example.demo.repository.CustomerRepository;
-import com.example.demo.repository.FollowsRepository;
 import org.apache.ibatis.session.SqlSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -17,45 +20,57 @@ import java.util.Map;
 @Service
 public class FollowsService {
 
-    private final FollowsRepository followsRepository;
+    private static final Logger logger = LoggerFactory.getLogger(FollowsService.class);
+
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final CustomerRepository customerRepository;
     private final SqlSession sqlSession;
+    private final FollowCountService followCountService;
 
-    public FollowsService(FollowsRepository followsRepository,
-                        CustomerRepository customerRepository,
-                        SqlSession sqlSession) {
-        this.followsRepository = followsRepository;
+    public FollowsService(CustomerRepository customerRepository,
+                        SqlSession sqlSession,
+                        FollowCountService followCountService) {
         this.customerRepository = customerRepository;
         this.sqlSession = sqlSession;
+        this.followCountService = followCountService;
     }
 
 
 
     public int getFollowingCount(String customerId) {
         //내가 팔로우하는 사람들 수
-        return sqlSession.selectOne("com.example.mapper.FollowsMapper.selectFollowingCount", customerId);
+        return followCountService.getCounts(customerId).getFollowingCount();
     }
 
     public int getFollowedCount(String customerId) {
         //나를 팔로우하는 사람들 수
-        return sqlSession.selectOne("com.example.mapper.FollowsMapper.selectFollowedCount", customerId);
+        return followCountService.getCounts(customerId).getFollowerCount();
+    }
+
+    public FollowCountDTO getFollowCounts(String customerId) {
+        return followCountService.getCounts(customerId);
     }
 
     public boolean subscribeUser(String fromCustomerId, String toCustomerId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("followingUserId", fromCustomerId);
+        params.put("followedUserId", toCustomerId);
+        params.put("followedAt", LocalDateTime.now());
         try {
-            Follows follow = Follows.builder()
-                    .followingUserId(fromCustomerId)
-                    .followedUserId(toCustomerId)
-                    .followedAt(LocalDateTime.now())
-                    .build();
-
-            followsRepository.save(follow);
+            // 조회 후 저장하면 동시 요청이 둘 다 "없음"을 보고 수를 두 번 올릴 수 있으므로 바로 INSERT 한다.
+            sqlSession.insert("com.example.mapper.FollowsMapper.insertFollow", params);
+        }
+        catch (DuplicateKeyException e) {
+            // 이미 팔로우 중: 성공으로 보되 수는 다시 올리지 않는다.
             return true;
         }
         catch (DataAccessException e) {
-            System.err.println("Failed to save follow relationship: " + e.getMessage());
+            logger.warn("Failed to save follow relationship: {}", e.getMessage());
             return false;
         }
+        followCountService.recordFollow(fromCustomerId, toCustomerId);
+        return true;
     }
 
     public List<CustomerDTO> getFollowingList(String customerId, int offset, int limit) {
@@ -65,8 +80,6 @@ public class FollowsService {
         params.put("offset", offset);
         params.put("limit", limit);
 
-        System.out.println("Getting following list for userId: " + customerId + ", offset: " + offset + ", limit: " + limit);
-        System.out.println(params);
         return sqlSession.selectList("com.example.mapper.FollowsMapper.selectFollowingByUserId", params);
     }
 
@@ -77,11 +90,42 @@ public class FollowsService {
         params.put("offset", offset);
         params.put("limit", limit);
 
-        System.out.println(params);
+        return sqlSession.selectList("com.example.mapper.FollowsMapper.selectFollowedByUserId", params);
+    }
 
-        System.out.println("Getting follower list for userId: " + customerId + ", offset: " + offset + ", limit: " + limit);
+    /**
+     * 내가 팔로우하는 사람들(user id 오름차순) keyset 페이지.
+     * after는 직전 페이지 nextCursor(마지막 user id). OFFSET 없이 인덱스를 after 다음부터 이어 읽는다.
+     */
+    public CustomerPageDTO getFollowingPage(String customerId, String after, int size) {
+        return findPage("selectFollowingByUserIdAfter", customerId, after, size);
+    }
 
-        return sqlSession.selectList("com.example.mapper.FollowsMapper.selectFollowedByUserId", params);
+    /**
+     * 나를 팔로우하는 사람들(user id 오름차순) keyset 페이지.
+     */
+    public CustomerPageDTO getFollowerPage(String customerId, String after, int size) {
+        return findPage("selectFollowedByUserIdAfter", customerId, after, size);
     }
 
+    private CustomerPageDTO findPage(String statement, String customerId, String after, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Map<String, Object> params = new HashMap<>();
+        params.put("userId", customerId);
+        params.put("afterUserId", after == null || after.isBlank() ? null : after.trim());
+        // 한 건 더 읽어 다음 페이지 유무를 판단한다.
+        params.put("limit", pageSize + 1);
+
+        List<CustomerDTO> customers = sqlSession.selectList("com.example.mapper.FollowsMapper." + statement, params);
+        String nextCursor = null;
+        if (customers.size() > pageSize) {
+            customers = customers.subList(0, pageSize);
+            nextCursor = customers.get(pageSize - 1).getCustomerId();
+        }
+        return CustomerPageDTO.builder()
+                .customers(customers)
+                .nextCursor(nextCursor)
+                .size(customers.size())
+                .build();
+    }
 }
@@ -0,0 +1,134 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WebSocketAdmissionProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * websocket handshake 입장 제어.
+ * - 토큰 버킷으로 노드당 handshake 속도를 제한하고, 동시에 진행 중인 handshake 수를 제한한다.
+ * - 거절 시 Retry-After는 최근 거절량/허용 속도로 계산한 대기열 길이 안에서 무작위로 퍼뜨려
+ *   거절된 클라이언트가 같은 시각에 다시 몰리지 않게 한다.
+ */
+@Service
+public class HandshakeAdmissionService {
+
+    private final WebSocketAdmissionProperties properties;
+    private final NodeHealthService nodeHealthService;
+    private final TokenBucket handshakeBucket;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder admittedTotal = new LongAdder();
+    private final LongAdder rejectedRateLimitedTotal = new LongAdder();
+    private final LongAdder rejectedConcurrencyTotal = new LongAdder();
+    private final LongAdder rejectedUnhealthyTotal = new LongAdder();
+    // 1초 단위 rate 계산용 직전 누적값
+    private long admittedAtLastRoll;
+    private long rejectedAtLastRoll;
+    private volatile long admittedPerSecond;
+    private volatile long rejectedPerSecond;
+
+    public HandshakeAdmissionService(WebSocketAdmissionProperties properties, NodeHealthService nodeHealthService) {
+        this.properties = properties;
+        this.nodeHealthService = nodeHealthService;
+        this.handshakeBucket = new TokenBucket(properties.getHandshakesPerSecond(), properties.getHandshakeBurst());
+    }
+
+    /**
+     * handshake 입장을 시도한다. admitted=true면 handshake 종료 시 반드시 release()를 호출해야 한다.
+     */
+    public Decision tryAdmit() {
+        if (!properties.isEnabled()) {
+            return Decision.ADMITTED;
+        }
+        // fan-out 큐/힙이 포화에 가까운 노드는 새 세션을 받지 않고 다른 upstream으로 넘긴다.
+        if (!nodeHealthService.isAcceptingConnections()) {
+            rejectedUnhealthyTotal.increment();
+            return Decision.rejected("unhealthy", retryAfterSeconds(0L));
+        }
+        if (inFlight.incrementAndGet() > properties.getMaxConcurrentHandshakes()) {
+            inFlight.decrementAndGet();
+            rejectedConcurrencyTotal.increment();
+            return Decision.rejected("concurrency", retryAfterSeconds(0L));
+        }
+        long waitNanos = handshakeBucket.tryAcquire();
+        if (waitNanos > 0) {
+            inFlight.decrementAndGet();
+            rejectedRateLimitedTotal.increment();
+            return Decision.rejected("rate", retryAfterSeconds(waitNanos));
+        }
+        admittedTotal.increment();
+        return Decision.ADMITTED;
+    }
+
+    public void release() {
+        if (properties.isEnabled()) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedRate = 1_000L)
+    public synchronized void rollRates() {
+        long admitted = admittedTotal.sum();
+        long rejected = rejectedTotal();
+        admittedPerSecond = admitted - admittedAtLastRoll;
+        rejectedPerSecond = rejected - rejectedAtLastRoll;
+        admittedAtLastRoll = admitted;
+        rejectedAtLastRoll = rejected;
+    }
+
+    public AdmissionStats stats() {
+        return new AdmissionStats(
+                properties.isEnabled(),
+                inFlight.get(),
+                admittedTotal.sum(),
+                rejectedRateLimitedTotal.sum(),
+                rejectedConcurrencyTotal.sum(),
+                rejectedUnhealthyTotal.sum(),
+                admittedPerSecond,
+                rejectedPerSecond
+        );
+    }
+
+    /**
+     * Retry-After(초) = 다음 토큰까지의 대기 + [0, 최근 거절량 / 허용 속도] 구간의 무작위 값.
+     * 거절이 많을수록 재시도가 더 넓은 구간으로 분산된다.
+     */
+    private long retryAfterSeconds(long waitNanos) {
+        long minMs = properties.getRetryAfterMin().toMillis();
+        long maxMs = Math.max(minMs, properties.getRetryAfterMax().toMillis());
+        long pendingRetries = Math.max(rejectedPerSecond, rejectedTotal() - rejectedAtLastRoll);
+        long backlogMs = (long) (pendingRetries * 1_000L / Math.max(0.001, properties.getHandshakesPerSecond()));
+        long spreadMs = backlogMs > 0 ? ThreadLocalRandom.current().nextLong(backlogMs + 1) : 0L;
+        long retryMs = Math.min(maxMs, Math.max(minMs, TimeUnit.NANOSECONDS.toMillis(waitNanos) + spreadMs));
+        return Math.max(1L, (retryMs + 999L) / 1_000L);
+    }
+
+    private long rejectedTotal() {
+        return rejectedRateLimitedTotal.sum() + rejectedConcurrencyTotal.sum() + rejectedUnhealthyTotal.sum();
+    }
+
+    public record Decision(boolean admitted, String rejectReason, long retryAfterSeconds) {
+        static final Decision ADMITTED = new Decision(true, null, 0L);
+
+        static Decision rejected(String reason, long retryAfterSeconds) {
+            return new Decision(false, reason, retryAfterSeconds);
+        }
+    }
+
+    public record AdmissionStats(
+            boolean enabled,
+            int inFlightHandshakes,
+            long admittedTotal,
+            long rejectedRateLimitedTotal,
+            long rejectedConcurrencyTotal,
+            long rejectedUnhealthyTotal,
+            long admittedPerSecond,
+            long rejectedPerSecond
+    ) {
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WebSocketInboundRateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * STOMP SEND 프레임 유입 속도 제한.
+ * - 세션별/ sender별 lock-free 토큰 버킷(GCRA) 두 개를 모두 통과해야 허용한다.
+ * - sender 버킷은 인증된 principal이 있으면 principal 이름으로 세션을 넘어 공유한다.
+ *   principal이 없으면 ENTER payload의 sender는 클라이언트가 마음대로 정한 값이므로 세션 안에서만 쓴다
+ *   (다른 사용자 이름을 대서 그 사용자의 한도를 소진시키지 못하게).
+ * - 한도를 넘긴 프레임은 inbound 채널 큐에 들어가기 전에 버려지므로 역직렬화/검증/stream append/PUBLISH 비용이 없다.
+ * - violation-window 안에 close-after-violations회 이상 넘긴 세션은 abusive로 보고 연결을 닫는다.
+ */
+@Slf4j
+@Service
+public class InboundRateLimiter {
+
+    // ENTER 처리 시 sender를 세션 attribute에 기록해 이후 프레임의 sender 버킷 키로 쓴다(principal이 없을 때).
+    public static final String SENDER_ATTRIBUTE = "chat.sender";
+
+    private final WebSocketInboundRateLimitProperties properties;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final ConcurrentHashMap<String, SessionLimit> sessionLimits = new ConcurrentHashMap<>();
+    // 인증된 principal 이름 -> 여러 세션이 공유하는 sender 버킷
+    private final ConcurrentHashMap<String, SenderLimit> senderLimits = new ConcurrentHashMap<>();
+    private final LongAdder admittedTotal = new LongAdder();
+    private final LongAdder rejectedSessionTotal = new LongAdder();
+    private final LongAdder rejectedSenderTotal = new LongAdder();
+    private final LongAdder closedSessionsTotal = new LongAdder();
+
+    public InboundRateLimiter(WebSocketInboundRateLimitProperties properties, WebSocketSessionRegistry sessionRegistry) {
+        this.properties = properties;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * SEND 프레임 1개 허용 여부.
+     * principalName이 있으면 그 이름으로, 없으면 이 세션이 ENTER로 밝힌 sender로 sender 버킷을 고른다.
+     * 둘 다 없으면(ENTER 전 익명 세션) 세션 버킷만 검사한다.
+     */
+    public boolean tryAcquire(String sessionId, String principalName, String sender) {
+        long now = System.nanoTime();
+        SessionLimit sessionLimit = sessionLimits.computeIfAbsent(sessionId, ignored -> new SessionLimit(newSessionBucket()));
+        if (sessionLimit.bucket.tryAcquire(now) > 0) {
+            rejectedSessionTotal.increment();
+            recordViolation(sessionId, sessionLimit, now);
+            return false;
+        }
+        SenderLimit senderLimit = null;
+        if (principalName != null) {
+            senderLimit = senderLimits.computeIfAbsent(principalName, ignored -> new SenderLimit(null, newSenderBucket()));
+        } else if (sender != null) {
+            senderLimit = sessionLimit.senderLimit;
+            if (senderLimit == null || !sender.equals(senderLimit.sender)) {
+                // 세션 안 sender 버킷. sender를 바꿔도 세션 버킷은 그대로라 한도를 우회할 수 없다.
+                senderLimit = new SenderLimit(sender, newSenderBucket());
+                sessionLimit.senderLimit = senderLimit;
+            }
+        }
+        if (senderLimit != null) {
+            senderLimit.lastSeenNanos = now;
+            if (senderLimit.bucket.tryAcquire(now) > 0) {
+                rejectedSenderTotal.increment();
+                recordViolation(sessionId, sessionLimit, now);
+                return false;
+            }
+        }
+        admittedTotal.increment();
+        return true;
+    }
+
+    public void sessionClosed(String sessionId) {
+        if (sessionId != null) {
+            sessionLimits.remove(sessionId);
+        }
+    }
+
+    /**
+     * 오래 조용한 principal sender 버킷 정리(세션 안 sender 버킷은 세션 종료 시 함께 지워진다). 버킷이 다시 만들어져도 burst만큼만 허용되므로 한도가 풀리지 않는다.
+     */
+    @Scheduled(fixedDelayString = "${chat.ws.inbound-rate.sender-sweep-interval-ms:60000}")
+    public void evictIdleSenders() {
+        long idleNanos = properties.getSenderIdleEviction().toNanos();
+        long now = System.nanoTime();
+        senderLimits.values().removeIf(limit -> now - limit.lastSeenNanos > idleNanos);
+    }
+
+    public RateLimitStats stats() {
+        return new RateLimitStats(
+                properties.isEnabled(),
+                admittedTotal.sum(),
+                rejectedSessionTotal.sum(),
+                rejectedSenderTotal.sum(),
+                closedSessionsTotal.sum(),
+                sessionLimits.size(),
+                senderLimits.size()
+        );
+    }
+
+    private TokenBucket newSessionBucket() {
+        return new TokenBucket(properties.getSessionMessagesPerSecond(), properties.getSessionBurst());
+    }
+
+    private TokenBucket newSenderBucket() {
+        return new TokenBucket(properties.getSenderMessagesPerSecond(), properties.getSenderBurst());
+    }
+
+    private void recordViolation(String sessionId, SessionLimit limit, long now) {
+        int threshold = properties.getCloseAfterViolations();
+        if (threshold <= 0) {
+            return;
+        }
+        long windowNanos = properties.getViolationWindow().toNanos();
+        long windowStart = limit.windowStartNanos.get();
+        if (now - windowStart > windowNanos && limit.windowStartNanos.compareAndSet(windowStart, now)) {
+            limit.violations.set(0);
+        }
+        if (limit.violations.incrementAndGet() >= threshold && limit.closing.compareAndSet(false, true)) {
+            closedSessionsTotal.increment();
+            log.warn("Closing abusive websocket session. sessionId={}, violations={}", sessionId, limit.violations.get());
+            sessionRegistry.closeSession(sessionId, "Rate limit exceeded");
+        }
+    }
+
+    private static final class SessionLimit {
+        private final TokenBucket bucket;
+        private final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+        private final AtomicInteger violations = new AtomicInteger();
+        private final AtomicBoolean closing = new AtomicBoolean();
+        // principal 없는 세션의 sender 버킷(같은 세션의 프레임은 순서대로 들어오지만 경합해도 버킷 하나가 새로 생길 뿐이다)
+        private volatile SenderLimit senderLimit;
+
+        private SessionLimit(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class SenderLimit {
+        // 세션 안 버킷이면 ENTER로 밝힌 sender, principal 버킷이면 null
+        private final String sender;
+        private final TokenBucket bucket;
+        private volatile long lastSeenNanos = System.nanoTime();
+
+        private SenderLimit(String sender, TokenBucket bucket) {
+            this.sender = sender;
+            this.bucket = bucket;
+        }
+    }
+
+    public record RateLimitStats(
+            boolean enabled,
+            long admittedTotal,
+            long rejectedSessionLimitTotal,
+            long rejectedSenderLimitTotal,
+            long closedSessionsTotal,
+            int trackedSessions,
+            int trackedSenders
+    ) {
+    }
+}
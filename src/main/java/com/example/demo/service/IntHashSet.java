@@ -0,0 +1,158 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 0 이상의 int만 담는 open addressing(선형 탐사) 집합.
+ * - Set&lt;String&gt;/Set&lt;Integer&gt; 대비 원소당 박싱/노드 객체가 없어 세션 수가 커져도 힙 사용량이 작다.
+ * - 삭제는 tombstone 없이 backward-shift로 처리해 탐사 길이가 누적되지 않는다.
+ * - 스레드 안전하지 않으므로 소유 객체의 락 안에서만 사용한다.
+ */
+final class IntHashSet {
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] slots;
+    private int size;
+
+    IntHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    IntHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    boolean add(int value) {
+        checkValue(value);
+        if ((size + 1) * 4 > slots.length * 3) {
+            resize(slots.length << 1);
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        return true;
+    }
+
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    boolean remove(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                shiftBack(index, mask);
+                size--;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(IntConsumer consumer) {
+        for (int value : slots) {
+            if (value != EMPTY) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    /**
+     * 원소를 배열로 복사한다. 락 밖에서 순회해야 할 때 사용한다.
+     */
+    int[] toArray() {
+        int[] values = new int[size];
+        int position = 0;
+        for (int value : slots) {
+            if (value != EMPTY) {
+                values[position++] = value;
+            }
+        }
+        return values;
+    }
+
+    private void shiftBack(int removedIndex, int mask) {
+        int gap = removedIndex;
+        int index = (gap + 1) & mask;
+        while (slots[index] != EMPTY) {
+            int home = mix(slots[index]) & mask;
+            // home이 (gap, index] 구간 밖이면 gap으로 당겨도 탐사 경로가 끊기지 않는다.
+            boolean movable = gap <= index
+                    ? (home <= gap || home > index)
+                    : (home <= gap && home > index);
+            if (movable) {
+                slots[gap] = slots[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[gap] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        int[] previous = slots;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int value : previous) {
+            if (value == EMPTY) {
+                continue;
+            }
+            int index = mix(value) & mask;
+            while (slots[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = value;
+        }
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be >= 0: " + value);
+        }
+    }
+}
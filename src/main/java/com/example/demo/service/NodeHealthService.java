@@ -0,0 +1,157 @@
+package com.example.demo.service;
+
+import com.example.demo.pubsub.RedisSubscriber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 노드 부하 점수(0~100, 높을수록 여유) 계산.
+ * - 입력: TALK fan-out 큐 점유율, clientOutboundChannel 큐 점유율(serial writer를 끈 경우만), 직전 구간 GC pause 비율, old gen 점유율
+ * - 각 입력을 0~1 압력값으로 정규화하고 가장 나쁜 값을 점수로 쓴다(하나만 포화돼도 지연이 튀기 때문).
+ * - 점수가 refuse-below-score 미만이면 새 handshake를 받지 않고, /ops/health가 503을 반환한다.
+ */
+@Slf4j
+@Service
+public class NodeHealthService {
+
+    private final ObjectProvider<RedisSubscriber> redisSubscriberProvider;
+    // WebSocketConfig -> handshake interceptor -> 이 서비스로 이어지는 순환 생성을 피하려고 지연 조회한다.
+    private final ObjectProvider<Executor> outboundExecutorProvider;
+    // G1 Concurrent GC / ZGC Cycles처럼 애플리케이션을 멈추지 않는 동시 수집기는 pause 계산에서 제외한다.
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .filter(gcBean -> !gcBean.getName().contains("Concurrent") && !gcBean.getName().contains("Cycles"))
+            .toList();
+    private final MemoryPoolMXBean oldGenPool = findOldGenPool();
+
+    @Value("${chat.node.health.refuse-below-score:20}")
+    private int refuseBelowScore;
+    // 샘플 구간 중 GC에 쓴 시간 비율이 이 값이면 GC 압력 1.0으로 본다.
+    @Value("${chat.node.health.gc-pause-ratio-limit:0.2}")
+    private double gcPauseRatioLimit;
+
+    private long lastSampleNanos = System.nanoTime();
+    private long lastGcTimeMs = totalGcTimeMs();
+    private volatile HealthSnapshot snapshot = new HealthSnapshot(Instant.now(), 100, true, 0.0, 0.0, 0.0, 0.0);
+
+    public NodeHealthService(
+            ObjectProvider<RedisSubscriber> redisSubscriberProvider,
+            @Qualifier("clientOutboundChannelExecutor") ObjectProvider<Executor> outboundExecutorProvider
+    ) {
+        this.redisSubscriberProvider = redisSubscriberProvider;
+        this.outboundExecutorProvider = outboundExecutorProvider;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.node.health.sample-interval:1s}")
+    public synchronized void sample() {
+        long nowNanos = System.nanoTime();
+        long gcTimeMs = totalGcTimeMs();
+        long elapsedMs = Math.max(1L, (nowNanos - lastSampleNanos) / 1_000_000L);
+        double gcPauseRatio = Math.min(1.0, (double) Math.max(0L, gcTimeMs - lastGcTimeMs) / elapsedMs);
+        lastSampleNanos = nowNanos;
+        lastGcTimeMs = gcTimeMs;
+
+        RedisSubscriber redisSubscriber = redisSubscriberProvider.getIfAvailable();
+        double talkQueue = redisSubscriber == null ? 0.0 : redisSubscriber.talkQueueUtilization();
+        double outboundQueue = outboundQueueUtilization();
+        double oldGen = oldGenOccupancy();
+        double gcPressure = gcPauseRatioLimit <= 0 ? 0.0 : Math.min(1.0, gcPauseRatio / gcPauseRatioLimit);
+
+        double pressure = Math.max(Math.max(talkQueue, outboundQueue), Math.max(gcPressure, oldGen));
+        int score = (int) Math.round(100.0 * (1.0 - Math.min(1.0, pressure)));
+        boolean accepting = score >= refuseBelowScore;
+        if (accepting != snapshot.acceptingConnections()) {
+            log.warn("Node health changed. accepting={}, score={}, talkQueue={}, outboundQueue={}, gcPauseRatio={}, oldGen={}",
+                    accepting, score, talkQueue, outboundQueue, gcPauseRatio, oldGen);
+        }
+        snapshot = new HealthSnapshot(Instant.now(), score, accepting, talkQueue, outboundQueue, gcPauseRatio, oldGen);
+    }
+
+    public boolean isAcceptingConnections() {
+        return snapshot.acceptingConnections();
+    }
+
+    public HealthSnapshot snapshot() {
+        return snapshot;
+    }
+
+    private double outboundQueueUtilization() {
+        // serial writer를 켜면 outbound 채널은 풀 없이 호출 스레드에서 돈다(적체는 writer 한도가 세션 단위로 끊는다).
+        if (!(outboundExecutorProvider.getIfAvailable() instanceof ThreadPoolTaskExecutor executor)) {
+            return 0.0;
+        }
+        ThreadPoolExecutor pool;
+        try {
+            pool = executor.getThreadPoolExecutor();
+        } catch (IllegalStateException notInitialized) {
+            return 0.0;
+        }
+        int depth = pool.getQueue().size();
+        int capacity = depth + pool.getQueue().remainingCapacity();
+        return capacity == 0 ? 0.0 : (double) depth / capacity;
+    }
+
+    /**
+     * old gen 점유율. 직전 GC 직후 사용량(collectionUsage)을 우선 사용해 GC 전 일시적 증가를 무시한다.
+     */
+    private double oldGenOccupancy() {
+        MemoryUsage usage = null;
+        if (oldGenPool != null) {
+            usage = oldGenPool.getCollectionUsage();
+            if (usage == null || usage.getUsed() == 0) {
+                usage = oldGenPool.getUsage();
+            }
+        }
+        if (usage == null || usage.getMax() <= 0) {
+            usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        return max <= 0 ? 0.0 : Math.min(1.0, (double) usage.getUsed() / max);
+    }
+
+    private long totalGcTimeMs() {
+        long total = 0L;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            long time = gcBean.getCollectionTime();
+            if (time > 0) {
+                total += time;
+            }
+        }
+        return total;
+    }
+
+    private static MemoryPoolMXBean findOldGenPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && (name.contains("Old Gen") || name.contains("Tenured"))) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    public record HealthSnapshot(
+            Instant sampledAt,
+            int score,
+            boolean acceptingConnections,
+            double talkQueueUtilization,
+            double outboundQueueUtilization,
+            double gcPauseRatio,
+            double oldGenOccupancy
+    ) {
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 이 노드가 구독 중인 room의 최근 메시지 버퍼.
+ * - RedisSubscriber가 Pub/Sub로 받은 메시지를 fan-out 전에 넣는다.
+ * - 재연결 세션의 resume(마지막으로 본 msgId 이후 replay)과 입장 직후 backfill(최근 N개)을
+ *   Redis stream 조회 없이 처리하기 위함
+ * - room별 버퍼는 고정 크기 배열 ring이라 메시지마다 노드를 할당하지 않는다.
+ * - 구독 직후 ring에는 구독 이후 메시지만 있으므로, 처음 backfill에서 stream 최신 구간으로 앞쪽을 채운다(seed).
+ * - append/조회는 ConcurrentHashMap 조회 후 ring 단위 락만 잡는다. 전역 락은 새 room 등록/내보내기에서만 잡는다.
+ * - 전체 room 수를 max-rooms로 제한하고, 넘치면 가장 오래 쓰이지 않은 room을 내보내며
+ *   그 배열은 새 room에 재사용한다(전역 메모리 상한 = max-rooms x per-room-capacity 슬롯).
+ */
+@Component
+public class RecentMessageBuffer {
+
+    private final int perRoomCapacity;
+    private final int maxRooms;
+    private final ConcurrentHashMap<String, Ring> rings = new ConcurrentHashMap<>();
+    // 내보낸 room의 ring 재사용 풀(this 락 안에서만 사용)
+    private final ArrayDeque<Ring> freeRings = new ArrayDeque<>();
+    private final LongAdder evictedRooms = new LongAdder();
+    private final LongAdder seededRooms = new LongAdder();
+
+    public RecentMessageBuffer(
+            @Value("${chat.recent.per-room-capacity:200}") int perRoomCapacity,
+            @Value("${chat.recent.max-rooms:5000}") int maxRooms
+    ) {
+        this.perRoomCapacity = Math.max(1, perRoomCapacity);
+        this.maxRooms = Math.max(1, maxRooms);
+    }
+
+    public void append(ChatMessage message) {
+        if (message == null || message.getRoomId() == null) {
+            return;
+        }
+        String roomId = message.getRoomId();
+        while (true) {
+            Ring ring = rings.get(roomId);
+            if (ring == null) {
+                ring = acquire(roomId);
+            }
+            synchronized (ring) {
+                // 조회와 lock 사이에 ring이 내보내져 다른 room에 재사용됐으면 다시 받는다.
+                if (roomId.equals(ring.owner)) {
+                    ring.add(message);
+                    ring.lastUsedNanos = System.nanoTime();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * msgId 이후에 들어온 메시지(오래된 순).
+     * 버퍼에 msgId가 없으면(이미 밀려났거나 이 노드가 받지 못한 경우) null을 반환한다.
+     */
+    public List<ChatMessage> messagesAfter(String roomId, String msgId) {
+        Ring ring = lookup(roomId);
+        if (ring == null || msgId == null) {
+            return null;
+        }
+        synchronized (ring) {
+            if (!roomId.equals(ring.owner)) {
+                return null;
+            }
+            ring.lastUsedNanos = System.nanoTime();
+            List<ChatMessage> after = new ArrayList<>();
+            for (int offset = ring.size - 1; offset >= 0; offset--) {
+                ChatMessage message = ring.get(offset);
+                if (msgId.equals(message.getMsgId())) {
+                    return after.reversed();
+                }
+                after.add(message);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 최근 limit개 메시지(오래된 순).
+     * 버퍼가 없는 room이거나, 아직 stream으로 seed하지 않았는데 limit보다 적게 들고 있으면 null
+     * (구독 이후 메시지만 있는 ring으로 backfill하면 그 이전 대화가 빠진다).
+     */
+    public List<ChatMessage> latest(String roomId, int limit) {
+        Ring ring = lookup(roomId);
+        if (ring == null) {
+            return null;
+        }
+        synchronized (ring) {
+            if (!roomId.equals(ring.owner)) {
+                return null;
+            }
+            if (!ring.seeded && ring.size < limit) {
+                return null;
+            }
+            ring.lastUsedNanos = System.nanoTime();
+            int count = Math.min(Math.max(0, limit), ring.size);
+            List<ChatMessage> latest = new ArrayList<>(count);
+            for (int offset = ring.size - count; offset < ring.size; offset++) {
+                latest.add(ring.get(offset));
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * stream에서 읽은 최신 구간(오래된 순)으로 ring 앞쪽을 채운다.
+     * ring에 이미 있는 가장 오래된 메시지를 stream 구간에서 찾아 그보다 앞선 메시지만 앞에 붙인다.
+     * stream 기록(XADD)이 pub/sub보다 늦어 그 메시지를 찾지 못하면 채우지 않고 다음 backfill에서 다시 시도한다.
+     */
+    public void seed(String roomId, List<ChatMessage> streamLatest) {
+        Ring ring = lookup(roomId);
+        if (ring == null || streamLatest == null) {
+            return;
+        }
+        synchronized (ring) {
+            if (!roomId.equals(ring.owner) || ring.seeded) {
+                return;
+            }
+            int olderThan = streamLatest.size();
+            if (ring.size > 0) {
+                String oldestMsgId = ring.get(0).getMsgId();
+                olderThan = -1;
+                for (int index = streamLatest.size() - 1; index >= 0; index--) {
+                    if (oldestMsgId != null && oldestMsgId.equals(streamLatest.get(index).getMsgId())) {
+                        olderThan = index;
+                        break;
+                    }
+                }
+                if (olderThan < 0) {
+                    return;
+                }
+            }
+            for (int index = olderThan - 1; index >= 0 && ring.prepend(streamLatest.get(index)); index--) {
+                // ring이 가득 차면 더 오래된 메시지는 버린다.
+            }
+            ring.seeded = true;
+            seededRooms.increment();
+        }
+    }
+
+    /**
+     * room topic 구독을 해지할 때 호출한다. 구독하지 않는 room의 버퍼는 갱신되지 않아 resume에 쓸 수 없다.
+     */
+    public synchronized void evict(String roomId) {
+        Ring ring = roomId == null ? null : rings.remove(roomId);
+        if (ring != null) {
+            release(ring);
+        }
+    }
+
+    public synchronized BufferStats stats() {
+        return new BufferStats(rings.size(), maxRooms, perRoomCapacity, freeRings.size(),
+                evictedRooms.sum(), seededRooms.sum());
+    }
+
+    private Ring lookup(String roomId) {
+        return roomId == null ? null : rings.get(roomId);
+    }
+
+    /**
+     * 새 room 등록(느린 경로). room 수가 상한이면 마지막 사용 시각이 가장 오래된 room을 내보낸다.
+     * 상한 도달 시에만 전체 room을 한 번 훑는다.
+     */
+    private synchronized Ring acquire(String roomId) {
+        Ring ring = rings.get(roomId);
+        if (ring != null) {
+            return ring;
+        }
+        if (rings.size() >= maxRooms) {
+            String eldestRoomId = null;
+            long eldestUsed = Long.MAX_VALUE;
+            for (Map.Entry<String, Ring> entry : rings.entrySet()) {
+                long used = entry.getValue().lastUsedNanos;
+                if (eldestRoomId == null || used - eldestUsed < 0) {
+                    eldestRoomId = entry.getKey();
+                    eldestUsed = used;
+                }
+            }
+            Ring evicted = eldestRoomId == null ? null : rings.remove(eldestRoomId);
+            if (evicted != null) {
+                evictedRooms.increment();
+                release(evicted);
+            }
+        }
+        ring = freeRings.isEmpty() ? new Ring(perRoomCapacity) : freeRings.pop();
+        synchronized (ring) {
+            ring.owner = roomId;
+            ring.lastUsedNanos = System.nanoTime();
+        }
+        rings.put(roomId, ring);
+        return ring;
+    }
+
+    private void release(Ring ring) {
+        synchronized (ring) {
+            ring.clear();
+        }
+        freeRings.push(ring);
+    }
+
+    /**
+     * 고정 크기 원형 버퍼. 가득 차면 가장 오래된 메시지를 덮어쓴다.
+     */
+    private static final class Ring {
+        private final ChatMessage[] slots;
+        // 현재 이 ring을 쓰는 roomId(재사용 풀에 있으면 null)
+        private String owner;
+        private int head;
+        private int size;
+        // stream 최신 구간으로 앞쪽을 채웠는지 여부
+        private boolean seeded;
+        // LRU 내보내기 기준. ring 락 밖(acquire의 훑기)에서도 읽으므로 volatile
+        private volatile long lastUsedNanos;
+
+        private Ring(int capacity) {
+            this.slots = new ChatMessage[capacity];
+        }
+
+        private void add(ChatMessage message) {
+            int tail = (head + size) % slots.length;
+            slots[tail] = message;
+            if (size < slots.length) {
+                size++;
+            } else {
+                head = (head + 1) % slots.length;
+            }
+        }
+
+        // 가장 오래된 메시지 앞에 붙인다. 가득 차 있으면 false
+        private boolean prepend(ChatMessage message) {
+            if (size == slots.length) {
+                return false;
+            }
+            head = (head - 1 + slots.length) % slots.length;
+            slots[head] = message;
+            size++;
+            return true;
+        }
+
+        // offset 0 = 가장 오래된 메시지
+        private ChatMessage get(int offset) {
+            return slots[(head + offset) % slots.length];
+        }
+
+        private void clear() {
+            Arrays.fill(slots, null);
+            owner = null;
+            head = 0;
+            size = 0;
+            seeded = false;
+        }
+    }
+
+    public record BufferStats(
+            int rooms,
+            int maxRooms,
+            int perRoomCapacity,
+            int pooledRings,
+            long evictedRooms,
+            long seededRooms
+    ) {
+    }
+}
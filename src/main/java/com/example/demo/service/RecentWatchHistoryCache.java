@@ -0,0 +1,268 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.WatchHistory;
+import com.example.demo.model.DTO.WatchHistoryDTO;
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 사용자별 최근 시청 기록 캐시.
+ * - 사용자마다 최신 N건(started_at, video_id 내림차순)을 들고, 첫 페이지 조회를 DB 없이 응답한다.
+ * - 시청 기록 INSERT(write-behind 큐 적재)와 시청 종료 시각 반영 시 캐시에 있는 사용자 목록을 바로 고친다.
+ *   그래서 write-behind가 아직 DB에 쓰기 전이어도 본인 조회에는 방금 본 영상이 보인다.
+ * - TTL이 지나면 DB에서 다시 읽어 다른 노드에서 들어온 기록도 반영한다. 이때 아직 DB에 쓰이지 않은(rowId 없는) 대기 행은
+ *   DB 결과에 같은 행이 없으면 TTL 동안 유지해 합친다. 그래서 write-behind가 밀려 있어도 재적재 시 방금 본 영상이 사라지지 않는다.
+ * - INSERT 경로에서 붙이는 행의 영상 이름은 DB 조회 없이 적재 결과로 모아 둔 이름 캐시에서 찾는다.
+ *   없으면 비워 두고 다음 재적재(DB 조인 결과)에서 채운다.
+ */
+@Service
+public class RecentWatchHistoryCache {
+
+    static final String SELECT_STATEMENT = "com.example.mapper.WatchHistoryMapper.selectRecentWatchHistoriesByUserId";
+    // 조회 쿼리와 같은 순서(started_at, video_id 내림차순)
+    private static final Comparator<WatchHistoryDTO> NEWEST_FIRST = Comparator
+            .comparing(WatchHistoryDTO::getStartedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(WatchHistoryDTO::getVideoId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final SqlSession sqlSession;
+    private final ConcurrentHashMap<String, Recent> cache = new ConcurrentHashMap<>();
+    // 적재 결과에서 본 video_id -> 영상 이름. 시청 기록 INSERT 경로가 DB를 부르지 않도록 여기서만 찾는다.
+    private final ConcurrentHashMap<Long, String> videoNames = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder insertsApplied = new LongAdder();
+    private final LongAdder endsApplied = new LongAdder();
+
+    @Value("${chat.watch-history.recent.size:20}")
+    private int recentSize;
+    @Value("${chat.watch-history.recent.ttl:10m}")
+    private Duration ttl;
+    @Value("${chat.watch-history.recent.max-users:100000}")
+    private int maxUsers;
+    @Value("${chat.watch-history.recent.max-video-names:50000}")
+    private int maxVideoNames;
+
+    public RecentWatchHistoryCache(SqlSession sqlSession) {
+        this.sqlSession = sqlSession;
+    }
+
+    public int capacity() {
+        return recentSize;
+    }
+
+    /**
+     * 최신순 limit건. limit이 캐시 크기보다 크면 null(호출자가 DB keyset 조회).
+     * 반환값의 complete는 사용자의 조회 기간 내 기록이 이 목록으로 전부인지 여부
+     */
+    public Slice latest(String userId, int limit) {
+        if (limit > recentSize) {
+            bypassed.increment();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Recent recent = cache.get(userId);
+        if (recent != null && recent.expiresAtMillis() > now) {
+            hits.increment();
+        } else {
+            misses.increment();
+            recent = load(userId, now);
+        }
+        List<WatchHistoryDTO> rows = recent.rows();
+        return new Slice(rows.subList(0, Math.min(limit, rows.size())), recent.complete() && rows.size() <= limit);
+    }
+
+    /**
+     * 시청 기록 INSERT 경로. 캐시에 올라 있는 사용자만 목록 앞에 붙인다.
+     */
+    public void recordStart(WatchHistory watchHistory) {
+        Recent current = cache.get(watchHistory.getUserId());
+        if (current == null) {
+            return;
+        }
+        WatchHistoryDTO row = new WatchHistoryDTO();
+        row.setUserId(watchHistory.getUserId());
+        row.setVideoId(watchHistory.getVideoId());
+        row.setVideoName(videoNameOf(watchHistory.getVideoId()));
+        row.setStartedAt(watchHistory.getStartedAt());
+        row.setEndedAt(watchHistory.getEndedAt());
+        cache.computeIfPresent(watchHistory.getUserId(), (key, recent) -> {
+            List<WatchHistoryDTO> rows = new ArrayList<>(recent.rows().size() + 1);
+            rows.add(row);
+            rows.addAll(recent.rows());
+            boolean complete = recent.complete();
+            if (rows.size() > recentSize) {
+                rows = rows.subList(0, recentSize);
+                complete = false;
+            }
+            return new Recent(List.copyOf(rows), complete, recent.expiresAtMillis());
+        });
+        insertsApplied.increment();
+    }
+
+    /**
+     * 시청 종료 반영 경로. (영상, started_at)이 같은 열린 기록에 종료 시각을 채운다.
+     */
+    public void recordEnd(String userId, Long videoId, LocalDateTime startedAt, LocalDateTime endedAt) {
+        Recent updated = cache.computeIfPresent(userId, (key, recent) -> {
+            List<WatchHistoryDTO> rows = new ArrayList<>(recent.rows().size());
+            for (WatchHistoryDTO row : recent.rows()) {
+                if (row.getEndedAt() == null && Objects.equals(row.getVideoId(), videoId)
+                        && Objects.equals(row.getStartedAt(), startedAt)) {
+                    // 응답으로 나간 객체를 건드리지 않도록 복사본을 고친다.
+                    WatchHistoryDTO ended = copyOf(row);
+                    ended.setEndedAt(endedAt);
+                    rows.add(ended);
+                } else {
+                    rows.add(row);
+                }
+            }
+            return new Recent(List.copyOf(rows), recent.complete(), recent.expiresAtMillis());
+        });
+        if (updated != null) {
+            endsApplied.increment();
+        }
+    }
+
+    public RecentCacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        return new RecentCacheStats(
+                cache.size(),
+                recentSize,
+                hitCount,
+                missCount,
+                hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount),
+                bypassed.sum(),
+                insertsApplied.sum(),
+                endsApplied.sum()
+        );
+    }
+
+    private Recent load(String userId, long now) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("userId", userId);
+        params.put("limit", recentSize + 1);
+        List<WatchHistoryDTO> loaded = sqlSession.selectList(SELECT_STATEMENT, params);
+        rememberVideoNames(loaded);
+        if (cache.size() >= maxUsers) {
+            cache.entrySet().removeIf(entry -> entry.getValue().expiresAtMillis() <= now);
+        }
+        // 조회 중 recordStart가 끼어들어도 잃지 않도록 현재 캐시 값과 합치는 것까지 compute 안에서 한다.
+        Recent merged = cache.compute(userId, (key, current) -> {
+            if (current == null && cache.size() >= maxUsers) {
+                return null;
+            }
+            return mergePending(loaded, current, now);
+        });
+        return merged != null ? merged : mergePending(loaded, null, now);
+    }
+
+    /**
+     * DB에서 읽은 행에 아직 DB에 없는 대기 행(rowId 없음, TTL 안에 시작)을 (started_at, video_id) 내림차순으로 끼워 넣는다.
+     * DB 결과에 같은 (video_id, started_at) 행이 있으면 대기 행은 버린다(종료 시각은 대기 행 쪽이 더 최신일 수 있어 옮겨 준다).
+     */
+    private Recent mergePending(List<WatchHistoryDTO> loaded, Recent current, long now) {
+        List<WatchHistoryDTO> rows = new ArrayList<>(loaded);
+        if (current != null) {
+            LocalDateTime pendingFrom = LocalDateTime.now().minus(ttl);
+            for (WatchHistoryDTO pending : current.rows()) {
+                if (pending.getRowId() != null || pending.getStartedAt() == null
+                        || pending.getStartedAt().isBefore(pendingFrom)) {
+                    continue;
+                }
+                int match = indexOf(rows, pending);
+                if (match < 0) {
+                    rows.add(insertionPoint(rows, pending), pending);
+                } else if (rows.get(match).getEndedAt() == null && pending.getEndedAt() != null) {
+                    WatchHistoryDTO ended = copyOf(rows.get(match));
+                    ended.setEndedAt(pending.getEndedAt());
+                    rows.set(match, ended);
+                }
+            }
+        }
+        boolean complete = rows.size() <= recentSize;
+        if (!complete) {
+            rows = rows.subList(0, recentSize);
+        }
+        return new Recent(List.copyOf(rows), complete, now + ttl.toMillis());
+    }
+
+    private static int indexOf(List<WatchHistoryDTO> rows, WatchHistoryDTO target) {
+        for (int i = 0; i < rows.size(); i++) {
+            WatchHistoryDTO row = rows.get(i);
+            if (Objects.equals(row.getVideoId(), target.getVideoId()) && Objects.equals(row.getStartedAt(), target.getStartedAt())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int insertionPoint(List<WatchHistoryDTO> rows, WatchHistoryDTO pending) {
+        int index = 0;
+        while (index < rows.size() && NEWEST_FIRST.compare(rows.get(index), pending) <= 0) {
+            index++;
+        }
+        return index;
+    }
+
+    private String videoNameOf(Long videoId) {
+        return videoId == null ? null : videoNames.get(videoId);
+    }
+
+    /**
+     * 상한을 넘으면 새 이름은 더 담지 않는다(이미 담긴 이름은 영상 이름 변경 시 다음 적재 때 갱신된다).
+     */
+    private void rememberVideoNames(List<WatchHistoryDTO> rows) {
+        for (WatchHistoryDTO row : rows) {
+            if (row.getVideoId() == null || row.getVideoName() == null) {
+                continue;
+            }
+            if (videoNames.containsKey(row.getVideoId()) || videoNames.size() < maxVideoNames) {
+                videoNames.put(row.getVideoId(), row.getVideoName());
+            }
+        }
+    }
+
+    private static WatchHistoryDTO copyOf(WatchHistoryDTO row) {
+        WatchHistoryDTO copy = new WatchHistoryDTO();
+        copy.setUserId(row.getUserId());
+        copy.setVideoId(row.getVideoId());
+        copy.setVideoName(row.getVideoName());
+        copy.setStartedAt(row.getStartedAt());
+        copy.setEndedAt(row.getEndedAt());
+        copy.setRowId(row.getRowId());
+        return copy;
+    }
+
+    private record Recent(List<WatchHistoryDTO> rows, boolean complete, long expiresAtMillis) {
+    }
+
+    public record Slice(List<WatchHistoryDTO> rows, boolean complete) {
+    }
+
+    public record RecentCacheStats(
+            int cachedUsers,
+            int recentSize,
+            long hits,
+            long misses,
+            double hitRatio,
+            long bypassed,
+            long insertsApplied,
+            long endsApplied
+    ) {
+    }
+}
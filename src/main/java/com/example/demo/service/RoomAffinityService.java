@@ -0,0 +1,196 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * roomId -> 선호 노드 집합(consistent hashing).
+ * - 링은 ClusterNodeRegistry의 live 노드 목록(Redis sorted set)으로 만들므로 모든 노드가 같은 결과를 계산한다.
+ * - 노드 1개가 추가/제거되어도 해당 노드 구간의 room만 선호 노드가 바뀐다.
+ * - 선호 노드가 아닌 노드로 ENTER한 세션에는 REDIRECT 힌트를 보내 같은 room 시청자가 소수 노드에 모이게 한다.
+ *   (room별 Redis 구독/fan-out이 모든 노드에서 중복되는 것을 줄이기 위함)
+ */
+@Slf4j
+@Service
+public class RoomAffinityService {
+
+    private final ClusterNodeRegistry clusterNodeRegistry;
+    private final boolean enabled;
+    private final int preferredNodeCount;
+    private final int virtualNodesPerNode;
+    private volatile Ring ring = new Ring(List.of(), new long[0], new String[0]);
+    private final LongAdder redirectHintsSent = new LongAdder();
+
+    public RoomAffinityService(
+            ClusterNodeRegistry clusterNodeRegistry,
+            @Value("${chat.affinity.enabled:true}") boolean enabled,
+            @Value("${chat.affinity.preferred-nodes:1}") int preferredNodeCount,
+            @Value("${chat.affinity.virtual-nodes:128}") int virtualNodesPerNode
+    ) {
+        this.clusterNodeRegistry = clusterNodeRegistry;
+        this.enabled = enabled;
+        this.preferredNodeCount = Math.max(1, preferredNodeCount);
+        this.virtualNodesPerNode = Math.max(1, virtualNodesPerNode);
+    }
+
+    /**
+     * room의 선호 노드 목록(링 시계방향으로 서로 다른 노드 preferredNodeCount개).
+     */
+    public List<String> preferredNodes(String roomId) {
+        Ring current = currentRing();
+        if (current.points.length == 0) {
+            return List.of();
+        }
+        int wanted = Math.min(preferredNodeCount, current.nodes.size());
+        List<String> preferred = new ArrayList<>(wanted);
+        int index = current.ceilingIndex(hash(roomId));
+        for (int step = 0; step < current.points.length && preferred.size() < wanted; step++) {
+            String owner = current.owners[(index + step) % current.points.length];
+            if (!preferred.contains(owner)) {
+                preferred.add(owner);
+            }
+        }
+        return preferred;
+    }
+
+    public boolean isPreferredLocally(String roomId) {
+        List<String> preferred = preferredNodes(roomId);
+        return preferred.isEmpty() || preferred.contains(clusterNodeRegistry.nodeId());
+    }
+
+    /**
+     * 이 노드가 room의 선호 노드가 아니고, 선호 노드의 접속 URL을 알고 있으면 REDIRECT 대상을 반환한다.
+     */
+    public Optional<RedirectTarget> redirectFor(String roomId) {
+        if (!enabled || roomId == null || isPreferredLocally(roomId)) {
+            return Optional.empty();
+        }
+        for (String nodeId : preferredNodes(roomId)) {
+            String url = clusterNodeRegistry.publicUrlOf(nodeId);
+            if (url != null && !url.isBlank()) {
+                return Optional.of(new RedirectTarget(nodeId, url));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void recordRedirectHint() {
+        redirectHintsSent.increment();
+    }
+
+    /**
+     * 로컬 room 분포 기준 affinity 효과 확인용 통계.
+     * nonPreferredRooms/nonPreferredSessions가 클수록 같은 room이 여러 노드에서 중복 구독/fan-out되고 있다는 뜻이다.
+     */
+    public AffinityStats stats(Map<String, Integer> localRoomCounts) {
+        int preferredRooms = 0;
+        int nonPreferredRooms = 0;
+        long preferredSessions = 0;
+        long nonPreferredSessions = 0;
+        for (Map.Entry<String, Integer> entry : localRoomCounts.entrySet()) {
+            if (isPreferredLocally(entry.getKey())) {
+                preferredRooms++;
+                preferredSessions += entry.getValue();
+            } else {
+                nonPreferredRooms++;
+                nonPreferredSessions += entry.getValue();
+            }
+        }
+        return new AffinityStats(
+                enabled,
+                clusterNodeRegistry.nodeId(),
+                currentRing().nodes,
+                preferredNodeCount,
+                preferredRooms,
+                nonPreferredRooms,
+                preferredSessions,
+                nonPreferredSessions,
+                redirectHintsSent.sum()
+        );
+    }
+
+    private Ring currentRing() {
+        List<String> liveNodes = clusterNodeRegistry.liveNodeIds();
+        Ring current = ring;
+        if (current.nodes.equals(liveNodes)) {
+            return current;
+        }
+        Ring rebuilt = buildRing(liveNodes);
+        ring = rebuilt;
+        log.info("Rebuilt room affinity ring. nodes={}", liveNodes);
+        return rebuilt;
+    }
+
+    private Ring buildRing(List<String> nodes) {
+        int size = nodes.size() * virtualNodesPerNode;
+        long[][] entries = new long[size][2];
+        int position = 0;
+        for (int nodeIndex = 0; nodeIndex < nodes.size(); nodeIndex++) {
+            for (int replica = 0; replica < virtualNodesPerNode; replica++) {
+                entries[position][0] = hash(nodes.get(nodeIndex) + "#" + replica);
+                entries[position][1] = nodeIndex;
+                position++;
+            }
+        }
+        Arrays.sort(entries, (left, right) -> Long.compare(left[0], right[0]));
+        long[] points = new long[size];
+        String[] owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = nodes.get((int) entries[i][1]);
+        }
+        return new Ring(List.copyOf(nodes), points, owners);
+    }
+
+    /**
+     * FNV-1a 64bit + murmur3 finalizer. 노드마다 같은 값을 내야 하므로 String.hashCode 대신 고정 알고리즘을 쓴다.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Ring(List<String> nodes, long[] points, String[] owners) {
+        int ceilingIndex(long value) {
+            int index = Arrays.binarySearch(points, value);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == points.length ? 0 : index;
+        }
+    }
+
+    public record RedirectTarget(String nodeId, String url) {
+    }
+
+    public record AffinityStats(
+            boolean enabled,
+            String nodeId,
+            List<String> ringNodes,
+            int preferredNodesPerRoom,
+            int preferredRooms,
+            int nonPreferredRooms,
+            long preferredSessions,
+            long nonPreferredSessions,
+            long redirectHintsSent
+    ) {
+    }
+}
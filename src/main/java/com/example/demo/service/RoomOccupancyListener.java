@@ -0,0 +1,14 @@
+package com.example.demo.service;
+
+/**
+ * ChatRoomSessionTracker의 room 점유 상태 전이(0 -> 1, 1 -> 0) 수신자.
+ * - tracker 락을 놓은 뒤 호출되므로 구현체는 tracker를 다시 조회해도 된다.
+ * - 서로 다른 스레드의 전이 이벤트는 순서가 뒤바뀌어 도착할 수 있다(예: 0 -> 1 보다 뒤이은 1 -> 0이 먼저 도착).
+ *   구현체는 이벤트 종류를 그대로 믿지 말고, 어느 이벤트를 받든 tracker의 현재 카운트로 최종 상태를 다시 판단해야 한다.
+ */
+public interface RoomOccupancyListener {
+
+    void onRoomOccupied(String roomId);
+
+    void onRoomVacated(String roomId);
+}
@@ -0,0 +1,300 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 클러스터 전체 room 시청자 수.
+ * - 각 노드는 ChatRoomSessionTracker의 로컬 room 카운트를 1초마다 직전 flush 값과 비교해
+ *   바뀐 room만 노드 전용 hash(chat:presence:node:{nodeId})에 한 번의 pipeline으로 반영한다.
+ *   입장/퇴장 이벤트마다 Redis에 쓰지 않는다.
+ * - 노드 hash에는 TTL을 걸어 노드가 죽으면 해당 노드 몫의 시청자 수가 자동으로 사라진다.
+ * - 로컬 시청자가 있는 room은 live 노드 hash를 HMGET으로 합산해 매 주기 /sub/chat/room/{roomId}/presence 로
+ *   시청자 수를 방송한다(값이 바뀐 room만).
+ * - 로컬 시청자가 없는 room(목록 조회용)은 더 긴 주기로 live 노드 hash를 HSCAN해 합산한다.
+ */
+@Slf4j
+@Service
+public class RoomPresenceService {
+
+    private static final String NODE_KEY_PREFIX = "chat:presence:node:";
+    private static final int REDIS_BATCH_FIELDS = 1_000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ChatRoomSessionTracker chatRoomSessionTracker;
+    private final ClusterNodeRegistry clusterNodeRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${chat.presence.global-scan-batch-size:1000}")
+    private int globalScanBatchSize;
+
+    // 마지막으로 Redis에 반영된 로컬 카운트(다음 flush의 diff 기준)
+    private Map<String, Integer> lastFlushedCounts = Map.of();
+    // 0이면 다음 flush에서 노드 hash를 통째로 다시 쓴다(기동 직후, 또는 flush 공백으로 TTL 만료가 의심될 때).
+    private long lastFlushSucceededAtMillis;
+    // 마지막으로 방송한 클러스터 카운트(값이 바뀐 room만 다시 방송)
+    private Map<String, Integer> lastBroadcastCounts = Map.of();
+    // 로컬 활성 room의 최신 클러스터 카운트 / 전체 room의 주기적 합산 카운트
+    private volatile Map<String, Integer> activeRoomClusterCounts = Map.of();
+    private volatile Map<String, Integer> globalClusterCounts = Map.of();
+    private volatile FlushStats lastFlushStats = new FlushStats(0, 0, 0, 0, 0L);
+
+    public RoomPresenceService(
+            @Qualifier("streamStringRedisTemplate") StringRedisTemplate redisTemplate,
+            ChatRoomSessionTracker chatRoomSessionTracker,
+            ClusterNodeRegistry clusterNodeRegistry,
+            SimpMessagingTemplate messagingTemplate
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.chatRoomSessionTracker = chatRoomSessionTracker;
+        this.clusterNodeRegistry = clusterNodeRegistry;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.flush-interval:1s}")
+    public synchronized void flushAndBroadcast() {
+        long startedAt = System.nanoTime();
+        Map<String, Integer> localCounts = chatRoomSessionTracker.roomSessionCounts();
+        int changedRooms;
+        int removedRooms;
+        try {
+            int[] written = flushLocalDiff(localCounts);
+            changedRooms = written[0];
+            removedRooms = written[1];
+        } catch (Exception exception) {
+            // 실패 시 lastFlushedCounts를 유지해 다음 주기에 같은 diff를 다시 반영한다.
+            log.warn("Failed to flush room presence. nodeId={}, rooms={}", clusterNodeRegistry.nodeId(), localCounts.size(), exception);
+            return;
+        }
+        lastFlushedCounts = localCounts;
+        lastFlushSucceededAtMillis = System.currentTimeMillis();
+
+        Map<String, Integer> clusterCounts;
+        try {
+            clusterCounts = aggregate(localCounts);
+        } catch (Exception exception) {
+            log.warn("Failed to aggregate room presence. falling back to local counts", exception);
+            clusterCounts = localCounts;
+        }
+        activeRoomClusterCounts = clusterCounts;
+        int broadcastRooms = broadcastChanged(clusterCounts);
+        long elapsedMicros = (System.nanoTime() - startedAt) / 1_000L;
+        lastFlushStats = new FlushStats(localCounts.size(), changedRooms, removedRooms, broadcastRooms, elapsedMicros);
+    }
+
+    /**
+     * live 노드 hash 전체를 HSCAN으로 합산한다(로컬 시청자가 없는 room까지 포함한 목록 조회용).
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.global-refresh-interval:10s}")
+    public void refreshGlobalCounts() {
+        Map<String, Integer> totals = new HashMap<>();
+        ScanOptions options = ScanOptions.scanOptions().count(Math.max(1, globalScanBatchSize)).build();
+        try {
+            for (String nodeId : clusterNodeRegistry.liveNodeIds()) {
+                try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash().scan(nodeKey(nodeId), options)) {
+                    while (cursor.hasNext()) {
+                        Map.Entry<Object, Object> entry = cursor.next();
+                        totals.merge((String) entry.getKey(), parseCount(entry.getValue()), Integer::sum);
+                    }
+                }
+            }
+        } catch (Exception exception) {
+            log.warn("Failed to refresh global room presence. keeping previous snapshot (rooms={})", globalClusterCounts.size(), exception);
+            return;
+        }
+        globalClusterCounts = totals;
+    }
+
+    /**
+     * roomId -> 클러스터 전체 시청자 수.
+     * 로컬 활성 room은 매 주기 합산값, 그 외 room은 global refresh 주기의 합산값을 사용한다.
+     */
+    public Map<String, Integer> clusterViewerCounts() {
+        Map<String, Integer> global = globalClusterCounts;
+        Map<String, Integer> active = activeRoomClusterCounts;
+        if (active.isEmpty()) {
+            return global;
+        }
+        Map<String, Integer> merged = new HashMap<>(global);
+        merged.putAll(active);
+        return merged;
+    }
+
+    public int clusterViewerCount(String roomId) {
+        Integer active = activeRoomClusterCounts.get(roomId);
+        if (active != null) {
+            return active;
+        }
+        return globalClusterCounts.getOrDefault(roomId, 0);
+    }
+
+    public FlushStats lastFlushStats() {
+        return lastFlushStats;
+    }
+
+    /**
+     * 직전 flush 대비 바뀐 room만 노드 hash에 HSET/HDEL 하고 TTL을 갱신한다(단일 pipeline).
+     * 전체 다시 쓰기는 DEL+HMSET+PEXPIRE를 한 트랜잭션으로 보낸다.
+     * 반환값: {변경 room 수, 삭제 room 수}
+     */
+    private int[] flushLocalDiff(Map<String, Integer> localCounts) {
+        String key = nodeKey(clusterNodeRegistry.nodeId());
+        long ttlMillis = clusterNodeRegistry.heartbeatTtl().toMillis();
+        // 이전 프로세스가 남긴 값이나 TTL로 사라진 hash와 diff 기준이 어긋나지 않도록 전체를 다시 쓴다.
+        boolean fullRewrite = lastFlushSucceededAtMillis == 0
+                || System.currentTimeMillis() - lastFlushSucceededAtMillis > ttlMillis / 2;
+        Map<String, Integer> baseline = fullRewrite ? Map.of() : lastFlushedCounts;
+
+        Map<String, String> changed = new LinkedHashMap<>();
+        localCounts.forEach((roomId, count) -> {
+            if (!Objects.equals(baseline.get(roomId), count)) {
+                changed.put(roomId, Integer.toString(count));
+            }
+        });
+        List<String> removed = new ArrayList<>();
+        for (String roomId : baseline.keySet()) {
+            if (!localCounts.containsKey(roomId)) {
+                removed.add(roomId);
+            }
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            if (fullRewrite) {
+                // DEL과 다시 쓰기 사이에 다른 노드의 합산이 빈 hash를 읽지 않도록 MULTI/EXEC로 묶는다
+                // (stream용 standalone Redis라 트랜잭션을 쓸 수 있다).
+                stringConnection.multi();
+                stringConnection.del(key);
+            }
+            for (Map<String, String> chunk : chunks(changed)) {
+                stringConnection.hMSet(key, chunk);
+            }
+            for (int from = 0; from < removed.size(); from += REDIS_BATCH_FIELDS) {
+                List<String> chunk = removed.subList(from, Math.min(removed.size(), from + REDIS_BATCH_FIELDS));
+                stringConnection.hDel(key, chunk.toArray(String[]::new));
+            }
+            // 변경이 없어도 TTL은 매 주기 갱신한다. 노드가 죽으면 TTL 뒤에 hash가 사라진다.
+            stringConnection.pExpire(key, ttlMillis);
+            if (fullRewrite) {
+                stringConnection.exec();
+            }
+            return null;
+        });
+        return new int[]{changed.size(), removed.size()};
+    }
+
+    /**
+     * 로컬 활성 room에 대해 다른 live 노드 hash를 HMGET으로 읽어 합산한다(단일 pipeline).
+     */
+    private Map<String, Integer> aggregate(Map<String, Integer> localCounts) {
+        if (localCounts.isEmpty()) {
+            return Map.of();
+        }
+        List<String> otherNodes = new ArrayList<>(clusterNodeRegistry.liveNodeIds());
+        otherNodes.remove(clusterNodeRegistry.nodeId());
+        Map<String, Integer> totals = new HashMap<>(localCounts);
+        if (otherNodes.isEmpty()) {
+            return totals;
+        }
+        List<String> roomIds = new ArrayList<>(localCounts.keySet());
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (String nodeId : otherNodes) {
+                String key = nodeKey(nodeId);
+                for (int from = 0; from < roomIds.size(); from += REDIS_BATCH_FIELDS) {
+                    List<String> chunk = roomIds.subList(from, Math.min(roomIds.size(), from + REDIS_BATCH_FIELDS));
+                    stringConnection.hMGet(key, chunk.toArray(String[]::new));
+                }
+            }
+            return null;
+        });
+        // 결과는 (노드, chunk) 순서대로 돌아오므로 같은 순서로 roomId에 대응시킨다.
+        int resultIndex = 0;
+        for (int node = 0; node < otherNodes.size(); node++) {
+            for (int from = 0; from < roomIds.size(); from += REDIS_BATCH_FIELDS) {
+                Object result = resultIndex < results.size() ? results.get(resultIndex) : null;
+                resultIndex++;
+                if (!(result instanceof List<?> values)) {
+                    continue;
+                }
+                for (int offset = 0; offset < values.size(); offset++) {
+                    int count = parseCount(values.get(offset));
+                    if (count > 0) {
+                        totals.merge(roomIds.get(from + offset), count, Integer::sum);
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    private int broadcastChanged(Map<String, Integer> clusterCounts) {
+        int broadcast = 0;
+        for (Map.Entry<String, Integer> entry : clusterCounts.entrySet()) {
+            String roomId = entry.getKey();
+            Integer viewers = entry.getValue();
+            if (Objects.equals(lastBroadcastCounts.get(roomId), viewers)) {
+                continue;
+            }
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("type", "PRESENCE");
+            payload.put("roomId", roomId);
+            payload.put("viewers", viewers);
+            messagingTemplate.convertAndSend("/sub/chat/room/" + roomId + "/presence", (Object) payload);
+            broadcast++;
+        }
+        // 로컬 시청자가 없어진 room은 방송 대상에서 빠지므로 기준값도 함께 정리된다.
+        lastBroadcastCounts = clusterCounts;
+        return broadcast;
+    }
+
+    private static List<Map<String, String>> chunks(Map<String, String> values) {
+        List<Map<String, String>> chunks = new ArrayList<>();
+        Map<String, String> current = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            current.put(entry.getKey(), entry.getValue());
+            if (current.size() == REDIS_BATCH_FIELDS) {
+                chunks.add(current);
+                current = new LinkedHashMap<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private static int parseCount(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    private static String nodeKey(String nodeId) {
+        return NODE_KEY_PREFIX + nodeId;
+    }
+
+    public record FlushStats(int localRooms, int changedRooms, int removedRooms, int broadcastRooms, long elapsedMicros) {
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatRoom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * room 단위 slow mode.
+ * - 사용자별 최소 TALK 간격과 room 전체 TALK 상한을 publish 전에 검사한다.
+ * - 설정값은 ChatRoom(CHAT_ROOM hash)에 저장된 수동 설정과, fan-out 비용으로 켜지는 자동 설정 중 더 엄격한 쪽을 쓴다.
+ * - fan-out 비용 = room 메시지 rate(이 노드가 구독으로 받은 TALK 수, 클러스터 전체 기준) x 클러스터 시청자 수.
+ *   비용이 임계값을 넘으면 자동 slow mode를 켜고, 임계값 * release-ratio 아래로 cooldown 동안 유지되면 끈다.
+ * - 판정 상태는 노드 로컬이다. room affinity로 같은 room 사용자가 한 노드에 모이는 것을 전제로 하며,
+ *   여러 노드에 흩어진 room의 room 상한은 노드별로 적용된다.
+ */
+@Slf4j
+@Service
+public class RoomSlowModeService {
+
+    private final RoomPresenceService roomPresenceService;
+    private final ConcurrentHashMap<String, RoomState> rooms = new ConcurrentHashMap<>();
+    private final LongAdder rejectedUserIntervalTotal = new LongAdder();
+    private final LongAdder rejectedRoomRateTotal = new LongAdder();
+    private final LongAdder autoEnabledTotal = new LongAdder();
+    private long lastEvaluatedAtNanos = System.nanoTime();
+
+    @Value("${chat.slowmode.auto.enabled:true}")
+    private boolean autoEnabled;
+
+    @Value("${chat.slowmode.auto.fanout-threshold:200000}")
+    // 초당 fan-out 전달 수(메시지 rate x 시청자 수) 임계값
+    private double autoFanoutThreshold;
+
+    @Value("${chat.slowmode.auto.release-ratio:0.5}")
+    private double autoReleaseRatio;
+
+    @Value("${chat.slowmode.auto.cooldown:30s}")
+    private Duration autoCooldown;
+
+    @Value("${chat.slowmode.auto.interval:5s}")
+    // 자동 slow mode의 사용자별 최소 TALK 간격
+    private Duration autoInterval;
+
+    public RoomSlowModeService(RoomPresenceService roomPresenceService) {
+        this.roomPresenceService = roomPresenceService;
+    }
+
+    /**
+     * 구독으로 받은 TALK 1건 기록(RedisSubscriber). room 메시지 rate 계산에 쓴다.
+     */
+    public void recordDelivered(String roomId) {
+        rooms.computeIfAbsent(roomId, ignored -> new RoomState()).delivered.increment();
+    }
+
+    /**
+     * TALK 1건 허용 여부. slow mode가 꺼진 room은 상태를 만들지 않고 바로 허용한다.
+     * sender는 사용자 간격을 묶는 키로, TALK 프레임의 sender가 아니라 세션에 묶인 값을 넘긴다
+     * (프레임마다 바꿀 수 있는 값이면 간격 제한을 우회하고 상태가 계속 늘어난다).
+     */
+    public Decision tryAdmit(ChatRoom room, String sender) {
+        RoomState state = rooms.get(room.getRoomId());
+        boolean auto = state != null && state.autoActive;
+        long intervalNanos = Math.max(
+                TimeUnit.SECONDS.toNanos(Math.max(0, room.getSlowModeIntervalSeconds())),
+                auto ? autoInterval.toNanos() : 0L
+        );
+        double maxPerSecond = stricterCap(room.getMaxMessagesPerSecond(), auto ? state.autoMaxMessagesPerSecond : 0.0);
+        if (intervalNanos <= 0 && maxPerSecond <= 0) {
+            return Decision.ADMITTED;
+        }
+        if (state == null) {
+            state = rooms.computeIfAbsent(room.getRoomId(), ignored -> new RoomState());
+        }
+
+        long now = System.nanoTime();
+        Long previous = null;
+        if (intervalNanos > 0) {
+            if (intervalNanos > state.longestIntervalNanos) {
+                state.longestIntervalNanos = intervalNanos;
+            }
+            previous = state.lastTalkBySender.get(sender);
+            if (previous != null && now - previous < intervalNanos) {
+                rejectedUserIntervalTotal.increment();
+                return Decision.rejected("user-interval", intervalNanos - (now - previous));
+            }
+            // 동시에 들어온 같은 sender의 두 번째 메시지는 여기서 걸러진다.
+            boolean claimed = previous == null
+                    ? state.lastTalkBySender.putIfAbsent(sender, now) == null
+                    : state.lastTalkBySender.replace(sender, previous, now);
+            if (!claimed) {
+                rejectedUserIntervalTotal.increment();
+                return Decision.rejected("user-interval", intervalNanos);
+            }
+        }
+        if (maxPerSecond > 0) {
+            long waitNanos = state.roomBucket(maxPerSecond).tryAcquire(now);
+            if (waitNanos > 0) {
+                // room 상한에 걸린 메시지는 사용자 간격을 소모하지 않게 되돌린다.
+                if (intervalNanos > 0) {
+                    if (previous == null) {
+                        state.lastTalkBySender.remove(sender, now);
+                    } else {
+                        state.lastTalkBySender.replace(sender, now, previous);
+                    }
+                }
+                rejectedRoomRateTotal.increment();
+                return Decision.rejected("room-rate", waitNanos);
+            }
+        }
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * room별 메시지 rate/fan-out 비용을 갱신하고 자동 slow mode를 켜고 끈다.
+     */
+    @Scheduled(fixedDelayString = "${chat.slowmode.evaluate-interval:1s}")
+    public synchronized void evaluate() {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(0.001, (now - lastEvaluatedAtNanos) / 1_000_000_000.0);
+        lastEvaluatedAtNanos = now;
+
+        for (Map.Entry<String, RoomState> entry : rooms.entrySet()) {
+            String roomId = entry.getKey();
+            RoomState state = entry.getValue();
+            long delivered = state.delivered.sum();
+            double rate = (delivered - state.deliveredAtLastEvaluation) / elapsedSeconds;
+            state.deliveredAtLastEvaluation = delivered;
+            int viewers = roomPresenceService.clusterViewerCount(roomId);
+            double cost = rate * viewers;
+            state.messagesPerSecond = rate;
+            state.fanoutPerSecond = cost;
+            // 비용을 임계값 안으로 묶는 room 상한
+            state.autoMaxMessagesPerSecond = autoFanoutThreshold / Math.max(1, viewers);
+            updateAutoMode(roomId, state, cost, now);
+
+            // 현재 간격보다 오래된 sender 기록은 더 이상 판정에 쓰이지 않는다.
+            long keepNanos = state.longestIntervalNanos;
+            state.lastTalkBySender.values().removeIf(lastTalk -> now - lastTalk > keepNanos);
+            if (rate == 0 && !state.autoActive && state.lastTalkBySender.isEmpty()) {
+                rooms.remove(roomId, state);
+            }
+        }
+    }
+
+    public SlowModeStats stats(int topRooms) {
+        List<RoomSlowModeView> views = new ArrayList<>();
+        int autoActiveRooms = 0;
+        for (Map.Entry<String, RoomState> entry : rooms.entrySet()) {
+            RoomState state = entry.getValue();
+            if (state.autoActive) {
+                autoActiveRooms++;
+            }
+            views.add(new RoomSlowModeView(
+                    entry.getKey(),
+                    state.messagesPerSecond,
+                    state.fanoutPerSecond,
+                    state.autoActive,
+                    state.autoActive ? state.autoMaxMessagesPerSecond : 0.0
+            ));
+        }
+        views.sort(Comparator.comparingDouble(RoomSlowModeView::fanoutPerSecond).reversed());
+        return new SlowModeStats(
+                autoEnabled,
+                autoFanoutThreshold,
+                autoActiveRooms,
+                autoEnabledTotal.sum(),
+                rejectedUserIntervalTotal.sum(),
+                rejectedRoomRateTotal.sum(),
+                List.copyOf(views.subList(0, Math.min(Math.max(0, topRooms), views.size())))
+        );
+    }
+
+    private void updateAutoMode(String roomId, RoomState state, double cost, long now) {
+        if (!autoEnabled) {
+            state.autoActive = false;
+            return;
+        }
+        if (!state.autoActive) {
+            if (cost > autoFanoutThreshold) {
+                state.autoActive = true;
+                state.calmSinceNanos = 0L;
+                autoEnabledTotal.increment();
+                log.info("Auto slow mode enabled. roomId={}, fanoutPerSecond={}, maxMessagesPerSecond={}",
+                        roomId, Math.round(cost), state.autoMaxMessagesPerSecond);
+            }
+            return;
+        }
+        if (cost >= autoFanoutThreshold * autoReleaseRatio) {
+            state.calmSinceNanos = 0L;
+            return;
+        }
+        if (state.calmSinceNanos == 0L) {
+            state.calmSinceNanos = now;
+        } else if (now - state.calmSinceNanos >= autoCooldown.toNanos()) {
+            state.autoActive = false;
+            state.calmSinceNanos = 0L;
+            log.info("Auto slow mode disabled. roomId={}, fanoutPerSecond={}", roomId, Math.round(cost));
+        }
+    }
+
+    private static double stricterCap(double first, double second) {
+        if (first <= 0) {
+            return Math.max(0.0, second);
+        }
+        if (second <= 0) {
+            return first;
+        }
+        return Math.min(first, second);
+    }
+
+    private static final class RoomState {
+        private final LongAdder delivered = new LongAdder();
+        private final ConcurrentHashMap<String, Long> lastTalkBySender = new ConcurrentHashMap<>();
+        private volatile TokenBucket roomBucket;
+        private volatile double roomBucketRate;
+        private volatile boolean autoActive;
+        private volatile double autoMaxMessagesPerSecond;
+        private volatile double messagesPerSecond;
+        private volatile double fanoutPerSecond;
+        // 최근 적용된 가장 긴 사용자 간격: 이보다 오래된 sender 기록만 정리한다.
+        private volatile long longestIntervalNanos;
+        // evaluate()에서만 접근
+        private long deliveredAtLastEvaluation;
+        private long calmSinceNanos;
+
+        /**
+         * 상한이 바뀌면 버킷을 새로 만든다(자동 상한은 시청자 수에 따라 매 평가마다 조금씩 변하므로 10% 이상 차이일 때만).
+         */
+        private TokenBucket roomBucket(double maxPerSecond) {
+            TokenBucket bucket = roomBucket;
+            double currentRate = roomBucketRate;
+            if (bucket == null || Math.abs(currentRate - maxPerSecond) > currentRate * 0.1) {
+                bucket = new TokenBucket(maxPerSecond, Math.max(1, (int) Math.ceil(maxPerSecond)));
+                roomBucket = bucket;
+                roomBucketRate = maxPerSecond;
+            }
+            return bucket;
+        }
+    }
+
+    public record Decision(boolean admitted, String rejectReason, long retryAfterMs) {
+        static final Decision ADMITTED = new Decision(true, null, 0L);
+
+        static Decision rejected(String reason, long waitNanos) {
+            return new Decision(false, reason, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        }
+    }
+
+    public record RoomSlowModeView(
+            String roomId,
+            double messagesPerSecond,
+            double fanoutPerSecond,
+            boolean autoActive,
+            double autoMaxMessagesPerSecond
+    ) {
+    }
+
+    public record SlowModeStats(
+            boolean autoEnabled,
+            double autoFanoutThreshold,
+            int autoActiveRooms,
+            long autoEnabledTotal,
+            long rejectedUserIntervalTotal,
+            long rejectedRoomRateTotal,
+            List<RoomSlowModeView> topRooms
+    ) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * 세션 handle별 마감시각(TTL 만료/TTL 예고)을 시간 버킷 단위로 묶어 두는 인덱스.
+ * - 마감시각을 granularity 단위로 올림한 버킷 번호에 handle을 넣는다.
+ *   버킷 k의 모든 마감시각은 k * granularity 이하이므로 poll 시 이르게 꺼내지는 일이 없다.
+ * - pollDue는 now까지 도달한 버킷만 꺼내므로 만료될 세션이 없으면 전체 세션을 훑지 않는다.
+ * - 스레드 안전하지 않으므로 소유 객체(WebSocketSessionRegistry)의 락 안에서만 사용한다.
+ */
+final class SessionDeadlineIndex {
+
+    private static final long NOT_SCHEDULED = Long.MIN_VALUE;
+
+    private final long granularityMillis;
+    private final TreeMap<Long, IntHashSet> buckets = new TreeMap<>();
+    private long[] bucketByHandle = newBucketSlots(1024);
+    private int scheduledCount;
+
+    SessionDeadlineIndex(long granularityMillis) {
+        this.granularityMillis = Math.max(1L, granularityMillis);
+    }
+
+    void schedule(int handle, long deadlineEpochMillis) {
+        cancel(handle);
+        ensureCapacity(handle);
+        long bucket = Math.floorDiv(deadlineEpochMillis + granularityMillis - 1, granularityMillis);
+        buckets.computeIfAbsent(bucket, ignored -> new IntHashSet()).add(handle);
+        bucketByHandle[handle] = bucket;
+        scheduledCount++;
+    }
+
+    void cancel(int handle) {
+        if (handle < 0 || handle >= bucketByHandle.length) {
+            return;
+        }
+        long bucket = bucketByHandle[handle];
+        if (bucket == NOT_SCHEDULED) {
+            return;
+        }
+        bucketByHandle[handle] = NOT_SCHEDULED;
+        scheduledCount--;
+        IntHashSet handles = buckets.get(bucket);
+        if (handles != null) {
+            handles.remove(handle);
+            if (handles.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+
+    /**
+     * now 시점까지 마감된 handle을 최대 limit개까지 인덱스에서 제거하며 consumer에 전달한다.
+     * limit을 넘는 나머지는 버킷에 그대로 남아 다음 poll에서 꺼내진다.
+     * 반환값은 꺼낸 handle 수
+     */
+    int pollDue(long nowEpochMillis, int limit, IntConsumer consumer) {
+        long dueBucket = Math.floorDiv(nowEpochMillis, granularityMillis);
+        int polled = 0;
+        Map.Entry<Long, IntHashSet> entry;
+        while (polled < limit && (entry = buckets.firstEntry()) != null && entry.getKey() <= dueBucket) {
+            IntHashSet handles = entry.getValue();
+            for (int handle : handles.toArray()) {
+                if (polled >= limit) {
+                    break;
+                }
+                handles.remove(handle);
+                bucketByHandle[handle] = NOT_SCHEDULED;
+                scheduledCount--;
+                polled++;
+                consumer.accept(handle);
+            }
+            if (handles.isEmpty()) {
+                buckets.remove(entry.getKey());
+            }
+        }
+        return polled;
+    }
+
+    int scheduledCount() {
+        return scheduledCount;
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private void ensureCapacity(int handle) {
+        if (handle < bucketByHandle.length) {
+            return;
+        }
+        int capacity = bucketByHandle.length;
+        while (capacity <= handle) {
+            capacity <<= 1;
+        }
+        long[] grown = newBucketSlots(capacity);
+        System.arraycopy(bucketByHandle, 0, grown, 0, bucketByHandle.length);
+        bucketByHandle = grown;
+    }
+
+    private static long[] newBucketSlots(int capacity) {
+        long[] slots = new long[capacity];
+        Arrays.fill(slots, NOT_SCHEDULED);
+        return slots;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * websocket sessionId에 조밀한(dense) int handle을 부여하는 테이블.
+ * - WebSocketSessionRegistry / ChatRoomSessionTracker는 sessionId 문자열 대신 handle을 키로
+ *   배열·primitive 집합에 상태를 저장한다.
+ * - sessionId -> handle 매핑은 이 테이블 한 곳에만 존재한다.
+ *   HashMap&lt;String, Integer&gt; 대신 String[]/int[] open addressing(선형 탐사) 표로 두어 항목당 Node/Integer 객체가 없다.
+ * - 해제된 handle은 free-list로 재사용해 배열이 세션 수 이상으로 커지지 않게 한다.
+ * - 조회(handleOf/sessionIdOf)는 StampedLock optimistic read로 락 없이 읽고, 쓰기와 겹친 경우에만 read lock으로 다시 읽는다.
+ */
+@Component
+public class SessionHandleTable {
+
+    public static final int NO_HANDLE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+    // sessionId -> handle. keys[i] == null이면 빈 칸이며 load factor는 1/2 이하로 유지한다.
+    private String[] keys = new String[INITIAL_CAPACITY * 2];
+    private int[] values = new int[INITIAL_CAPACITY * 2];
+    private String[] sessionIdByHandle = new String[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[64];
+    private int freeCount;
+    private volatile int size;
+    private volatile int nextHandle;
+
+    /**
+     * sessionId에 handle을 부여한다. 이미 등록된 sessionId면 기존 handle을 반환한다.
+     */
+    public int acquire(String sessionId) {
+        long stamp = lock.writeLock();
+        try {
+            int existing = find(keys, values, sessionId);
+            if (existing != NO_HANDLE) {
+                return existing;
+            }
+            int handle = freeCount > 0 ? freeHandles[--freeCount] : nextHandle++;
+            if (handle >= sessionIdByHandle.length) {
+                sessionIdByHandle = Arrays.copyOf(sessionIdByHandle, sessionIdByHandle.length << 1);
+            }
+            sessionIdByHandle[handle] = sessionId;
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+            insert(keys, values, sessionId, handle);
+            size++;
+            return handle;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int handleOf(String sessionId) {
+        if (sessionId == null) {
+            return NO_HANDLE;
+        }
+        long stamp = lock.tryOptimisticRead();
+        int handle = find(keys, values, sessionId);
+        if (lock.validate(stamp)) {
+            return handle;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(keys, values, sessionId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public String sessionIdOf(int handle) {
+        if (handle < 0) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        String[] byHandle = sessionIdByHandle;
+        String sessionId = handle < byHandle.length ? byHandle[handle] : null;
+        if (lock.validate(stamp)) {
+            return sessionId;
+        }
+        stamp = lock.readLock();
+        try {
+            return handle < sessionIdByHandle.length ? sessionIdByHandle[handle] : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * sessionId의 handle을 반납한다. 반납된 handle은 이후 다른 세션에 재할당될 수 있다.
+     * handle 기반 상태를 가진 쪽은 이 호출과 같은 락 안에서 자기 상태를 먼저 지워야 한다
+     * (ChatRoomSessionTracker.unregisterSession 참고).
+     * 반환값은 반납된 handle(없으면 NO_HANDLE)
+     */
+    public int release(String sessionId) {
+        if (sessionId == null) {
+            return NO_HANDLE;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int handle = remove(sessionId);
+            if (handle == NO_HANDLE) {
+                return NO_HANDLE;
+            }
+            size--;
+            sessionIdByHandle[handle] = null;
+            if (freeCount == freeHandles.length) {
+                freeHandles = Arrays.copyOf(freeHandles, freeHandles.length << 1);
+            }
+            freeHandles[freeCount++] = handle;
+            return handle;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 지금까지 할당된 handle 상한(= handle 기반 배열들이 필요로 하는 길이).
+     */
+    public int highWaterMark() {
+        return nextHandle;
+    }
+
+    /**
+     * 이 테이블이 가진 배열의 대략적인 힙 크기(byte, compressed oops 기준, sessionId 문자열 자체는 제외).
+     * 같은 세션 수의 HashMap&lt;String, Integer&gt;는 항목당 Node(32B)+Integer(16B)+bucket 참조가 더 든다.
+     */
+    public long footprintBytes() {
+        long stamp = lock.readLock();
+        try {
+            return arrayBytes(keys.length, 4) + arrayBytes(values.length, 4)
+                    + arrayBytes(sessionIdByHandle.length, 4) + arrayBytes(freeHandles.length, 4);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * optimistic read 중에는 배열이 동시에 바뀔 수 있으므로 지역 변수로 받은 배열만 보고,
+     * 탐사 횟수를 표 크기로 제한한다(결과는 validate 실패 시 버려진다).
+     */
+    private static int find(String[] keys, int[] values, String sessionId) {
+        if (sessionId == null || keys.length != values.length) {
+            return NO_HANDLE;
+        }
+        int mask = keys.length - 1;
+        int index = mix(sessionId) & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            String key = keys[index];
+            if (key == null) {
+                return NO_HANDLE;
+            }
+            if (key.equals(sessionId)) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return NO_HANDLE;
+    }
+
+    private static void insert(String[] keys, int[] values, String sessionId, int handle) {
+        int mask = keys.length - 1;
+        int index = mix(sessionId) & mask;
+        while (keys[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = sessionId;
+        values[index] = handle;
+    }
+
+    /**
+     * tombstone 없이 backward-shift로 지운다(IntHashSet과 같은 방식).
+     */
+    private int remove(String sessionId) {
+        int mask = keys.length - 1;
+        int index = mix(sessionId) & mask;
+        while (keys[index] != null && !keys[index].equals(sessionId)) {
+            index = (index + 1) & mask;
+        }
+        if (keys[index] == null) {
+            return NO_HANDLE;
+        }
+        int handle = values[index];
+        keys[index] = null;
+        int hole = index;
+        int next = (index + 1) & mask;
+        while (keys[next] != null) {
+            int ideal = mix(keys[next]) & mask;
+            boolean movable = next > hole
+                    ? ideal <= hole || ideal > next
+                    : ideal <= hole && ideal > next;
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                keys[next] = null;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return handle;
+    }
+
+    private void rehash(int capacity) {
+        String[] grownKeys = new String[capacity];
+        int[] grownValues = new int[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                insert(grownKeys, grownValues, keys[i], values[i]);
+            }
+        }
+        // optimistic 조회가 짝이 맞지 않는 배열을 보더라도 find가 길이 불일치로 걸러낸다.
+        keys = grownKeys;
+        values = grownValues;
+    }
+
+    private static int mix(String sessionId) {
+        int hash = sessionId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return 16L + (long) length * elementBytes;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA(Generic Cell Rate Algorithm) 방식의 lock-free 토큰 버킷.
+ * - 상태는 "이론적 도착 시각(TAT)" long 하나뿐이라 CAS 한 번으로 판정/갱신한다.
+ * - ratePerSecond로 토큰이 채워지고 최대 burst개까지 한 번에 소비할 수 있다.
+ */
+public final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be > 0");
+        }
+        this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000L / ratePerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(1, burst);
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime() - burstToleranceNanos);
+    }
+
+    /**
+     * 토큰 1개 소비를 시도한다.
+     * 반환값: 0이면 허용, 양수면 거절이며 다음 토큰까지 기다려야 하는 시간(ns)
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrivalNanos.get();
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long waitNanos = newTat - nowNanos - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(tat, newTat)) {
+                return 0L;
+            }
+        }
+    }
+
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    public long emissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Comment;
+import com.example.demo.model.VodReplayRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 다시보기(VOD) 댓글 재생.
+ * - 클라이언트가 "/pub/vod/replay"로 재생 위치(원 방송 시각)를 알리면, 서버가 세션별 재생 시계를 두고
+ *   그 시각까지 작성된 댓글을 작성순으로 "/user/sub/vod/replay"에 보낸다(tick마다 도달한 댓글을 한 프레임으로).
+ * - 세션별 (createdAt, _id) keyset 커서로 앞으로 재생할 구간을 batch 단위로 미리 읽어 둔다.
+ *   재생 중 짧은 범위 조회를 반복하지 않고, 세션당 순차 읽기 하나로 끝까지 재생한다.
+ * - SEEK는 버퍼를 비우고 커서를 새 위치로 옮긴다. 진행 중이던 조회 결과는 세대 번호로 걸러 버린다.
+ * - PAUSE/RESUME은 재생 시계만 멈추고 다시 잇는다. SYNC는 클라이언트 위치로 시계를 보정한다.
+ */
+@Slf4j
+@Service
+public class VodReplayService {
+
+    private static final String REPLAY_DESTINATION = "/sub/vod/replay";
+    private static final List<String> FIELDS = List.of("_id", "user_id", "comment", "createdAt");
+
+    private final MongoTemplate mongoTemplate;
+    private final WebSocketControlService controlService;
+    private final ConcurrentHashMap<String, ReplaySession> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService fetchExecutor;
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder commentsSent = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder fetchedComments = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder seeks = new LongAdder();
+    private final LongAdder rejectedSessions = new LongAdder();
+
+    // 한 번에 미리 읽는 댓글 수(Mongo 조회 1회 크기)
+    @Value("${chat.vod.batch-size:500}")
+    private int batchSize;
+    // 버퍼의 마지막 댓글이 재생 위치보다 이만큼 앞서 있지 않으면 다음 batch를 읽는다.
+    @Value("${chat.vod.prefetch-ahead:60s}")
+    private Duration prefetchAhead;
+    // 밀린 댓글이 많아도 한 프레임에 싣는 상한(나머지는 다음 tick)
+    @Value("${chat.vod.max-per-frame:200}")
+    private int maxPerFrame;
+    // SYNC 위치가 서버 시계와 이보다 크게 어긋나면 SEEK로 처리한다.
+    @Value("${chat.vod.resync-threshold:5s}")
+    private Duration resyncThreshold;
+    @Value("${chat.vod.max-sessions:2000}")
+    private int maxSessions;
+
+    public VodReplayService(
+            MongoTemplate mongoTemplate,
+            WebSocketControlService controlService,
+            @Value("${chat.vod.fetch-threads:4}") int fetchThreads
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.controlService = controlService;
+        int threads = Math.max(1, fetchThreads);
+        this.fetchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1024), runnable -> {
+                    Thread thread = new Thread(runnable, "vod-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    public void handle(String sessionId, VodReplayRequest request) {
+        switch (request.getAction()) {
+            case START -> start(sessionId, request);
+            case SEEK -> {
+                ReplaySession session = sessions.get(sessionId);
+                if (session != null) {
+                    synchronized (session) {
+                        session.reset(requirePosition(request), System.nanoTime());
+                    }
+                    seeks.increment();
+                }
+            }
+            case PAUSE -> {
+                ReplaySession session = sessions.get(sessionId);
+                if (session != null) {
+                    synchronized (session) {
+                        session.pause(System.nanoTime());
+                    }
+                }
+            }
+            case RESUME -> {
+                ReplaySession session = sessions.get(sessionId);
+                if (session != null) {
+                    synchronized (session) {
+                        session.resume(System.nanoTime());
+                    }
+                }
+            }
+            case SYNC -> sync(sessionId, request);
+            case STOP -> sessions.remove(sessionId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    /**
+     * 재생 시계가 지난 댓글을 세션별로 보내고, 버퍼가 얕아진 세션은 다음 batch 조회를 건다.
+     */
+    @Scheduled(fixedDelayString = "${chat.vod.tick-interval:200ms}")
+    public void tick() {
+        long nowNanos = System.nanoTime();
+        long aheadMillis = prefetchAhead.toMillis();
+        for (Map.Entry<String, ReplaySession> entry : sessions.entrySet()) {
+            ReplaySession session = entry.getValue();
+            List<Comment> due = List.of();
+            FetchPlan plan = null;
+            long position;
+            synchronized (session) {
+                position = session.positionAt(nowNanos);
+                if (!session.paused) {
+                    due = session.drainUntil(position, Math.max(1, maxPerFrame));
+                }
+                if (!session.fetching && !session.exhausted
+                        && session.buffer.size() < batchSize
+                        && session.bufferedUntilMillis - position < aheadMillis) {
+                    session.fetching = true;
+                    plan = new FetchPlan(session.generation, session.cursorCreatedAt, session.cursorId);
+                }
+            }
+            if (!due.isEmpty()) {
+                sendComments(entry.getKey(), session.roomId, position, due);
+            }
+            if (plan != null) {
+                submitFetch(session, plan);
+            }
+        }
+    }
+
+    public VodReplayStats stats() {
+        long fetchCount = fetches.sum();
+        return new VodReplayStats(
+                sessions.size(),
+                framesSent.sum(),
+                commentsSent.sum(),
+                fetchCount,
+                fetchedComments.sum(),
+                fetchCount == 0 ? 0L : fetchNanos.sum() / fetchCount / 1_000L,
+                seeks.sum(),
+                rejectedSessions.sum()
+        );
+    }
+
+    private void start(String sessionId, VodReplayRequest request) {
+        if (request.getRoomId() == null || request.getRoomId().isBlank()) {
+            throw new IllegalArgumentException("roomId is required");
+        }
+        long position = requirePosition(request);
+        if (!sessions.containsKey(sessionId) && sessions.size() >= maxSessions) {
+            rejectedSessions.increment();
+            throw new IllegalStateException("too many vod replay sessions");
+        }
+        ReplaySession session = new ReplaySession(request.getRoomId().trim(), normalizeRate(request.getPlaybackRate()));
+        session.reset(position, System.nanoTime());
+        sessions.put(sessionId, session);
+    }
+
+    private void sync(String sessionId, VodReplayRequest request) {
+        ReplaySession session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        long position = requirePosition(request);
+        long nowNanos = System.nanoTime();
+        boolean seeked = false;
+        synchronized (session) {
+            if (request.getPlaybackRate() != null) {
+                session.reanchor(session.positionAt(nowNanos), nowNanos);
+                session.rate = normalizeRate(request.getPlaybackRate());
+            }
+            if (Math.abs(position - session.positionAt(nowNanos)) > resyncThreshold.toMillis()) {
+                session.reset(position, nowNanos);
+                seeked = true;
+            } else {
+                // 작은 오차는 시계만 맞춘다. 이미 보낸 댓글은 다시 보내지 않는다.
+                session.reanchor(position, nowNanos);
+            }
+        }
+        if (seeked) {
+            seeks.increment();
+        }
+    }
+
+    private void submitFetch(ReplaySession session, FetchPlan plan) {
+        try {
+            fetchExecutor.execute(() -> fetch(session, plan));
+        } catch (RejectedExecutionException exception) {
+            synchronized (session) {
+                if (session.generation == plan.generation()) {
+                    session.fetching = false;
+                }
+            }
+        }
+    }
+
+    private void fetch(ReplaySession session, FetchPlan plan) {
+        List<Comment> batch = null;
+        long startedAt = System.nanoTime();
+        try {
+            batch = mongoTemplate.find(nextBatchQuery(session.roomId, plan), Comment.class);
+            fetches.increment();
+            fetchedComments.add(batch.size());
+            fetchNanos.add(System.nanoTime() - startedAt);
+        } catch (RuntimeException exception) {
+            log.warn("Failed to prefetch vod comments. roomId={}", session.roomId, exception);
+        }
+        synchronized (session) {
+            // 조회 중 SEEK가 들어왔으면 이전 위치의 결과이므로 버린다.
+            if (session.generation != plan.generation()) {
+                return;
+            }
+            session.fetching = false;
+            // 조회 실패는 커서를 그대로 두고 다음 tick에 다시 읽는다.
+            if (batch != null) {
+                session.append(batch, batch.size() < batchSize);
+            }
+        }
+    }
+
+    private Query nextBatchQuery(String roomId, FetchPlan plan) {
+        Criteria criteria;
+        if (plan.afterId() == null) {
+            criteria = Criteria.where("room_id").is(roomId).and("createdAt").gte(plan.after());
+        } else {
+            criteria = new Criteria().andOperator(
+                    Criteria.where("room_id").is(roomId),
+                    new Criteria().orOperator(
+                            Criteria.where("createdAt").gt(plan.after()),
+                            new Criteria().andOperator(
+                                    Criteria.where("createdAt").is(plan.after()),
+                                    Criteria.where("_id").gt(plan.afterId()))));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt").and(Sort.by(Sort.Direction.ASC, "_id")))
+                .limit(Math.max(1, batchSize));
+        FIELDS.forEach(field -> query.fields().include(field));
+        return query;
+    }
+
+    private void sendComments(String sessionId, String roomId, long position, List<Comment> comments) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "VOD_COMMENTS");
+        payload.put("roomId", roomId);
+        payload.put("positionMillis", position);
+        payload.put("count", comments.size());
+        payload.put("comments", comments);
+        controlService.sendToSession(sessionId, REPLAY_DESTINATION, payload);
+        framesSent.increment();
+        commentsSent.add(comments.size());
+    }
+
+    private static long requirePosition(VodReplayRequest request) {
+        if (request.getPositionMillis() == null) {
+            throw new IllegalArgumentException("positionMillis is required for " + request.getAction());
+        }
+        return request.getPositionMillis();
+    }
+
+    private static double normalizeRate(Double rate) {
+        if (rate == null || rate.isNaN() || rate <= 0.0) {
+            return 1.0;
+        }
+        return Math.min(rate, 16.0);
+    }
+
+    /**
+     * 세션별 재생 상태. 모든 필드는 인스턴스 락 안에서만 읽고 쓴다.
+     */
+    private static final class ReplaySession {
+        private final String roomId;
+        private final ArrayDeque<Comment> buffer = new ArrayDeque<>();
+        private double rate;
+        private boolean paused;
+        private long anchorPositionMillis;
+        private long anchorNanos;
+        private int generation;
+        private boolean fetching;
+        private boolean exhausted;
+        // 다음 조회의 시작점. cursorId가 null이면 cursorCreatedAt 이상(포함)부터 읽는다.
+        private Date cursorCreatedAt;
+        private Object cursorId;
+        // 버퍼에 읽어 둔 마지막 댓글 시각(끝까지 읽었으면 Long.MAX_VALUE)
+        private long bufferedUntilMillis;
+
+        private ReplaySession(String roomId, double rate) {
+            this.roomId = roomId;
+            this.rate = rate;
+        }
+
+        private long positionAt(long nowNanos) {
+            if (paused) {
+                return anchorPositionMillis;
+            }
+            return anchorPositionMillis + (long) ((nowNanos - anchorNanos) / 1_000_000.0 * rate);
+        }
+
+        private void reset(long positionMillis, long nowNanos) {
+            generation++;
+            buffer.clear();
+            fetching = false;
+            exhausted = false;
+            cursorCreatedAt = new Date(positionMillis);
+            cursorId = null;
+            bufferedUntilMillis = positionMillis;
+            reanchor(positionMillis, nowNanos);
+        }
+
+        private void reanchor(long positionMillis, long nowNanos) {
+            anchorPositionMillis = positionMillis;
+            anchorNanos = nowNanos;
+        }
+
+        private void pause(long nowNanos) {
+            if (!paused) {
+                reanchor(positionAt(nowNanos), nowNanos);
+                paused = true;
+            }
+        }
+
+        private void resume(long nowNanos) {
+            if (paused) {
+                paused = false;
+                reanchor(anchorPositionMillis, nowNanos);
+            }
+        }
+
+        private List<Comment> drainUntil(long positionMillis, int limit) {
+            List<Comment> due = null;
+            while (!buffer.isEmpty() && (due == null || due.size() < limit)) {
+                Date createdAt = buffer.peekFirst().getCreatedAt();
+                if (createdAt != null && createdAt.getTime() > positionMillis) {
+                    break;
+                }
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(buffer.pollFirst());
+            }
+            return due == null ? List.of() : due;
+        }
+
+        private void append(List<Comment> batch, boolean reachedEnd) {
+            buffer.addAll(batch);
+            if (!batch.isEmpty()) {
+                Comment last = batch.get(batch.size() - 1);
+                if (last.getCreatedAt() != null) {
+                    cursorCreatedAt = last.getCreatedAt();
+                    bufferedUntilMillis = last.getCreatedAt().getTime();
+                }
+                String id = last.getId();
+                // _id는 보통 ObjectId로 저장되므로 같은 타입으로 비교해야 정렬 순서와 맞는다.
+                cursorId = id != null && ObjectId.isValid(id) ? new ObjectId(id) : id;
+            }
+            exhausted = reachedEnd;
+            if (reachedEnd) {
+                bufferedUntilMillis = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private record FetchPlan(int generation, Date after, Object afterId) {
+    }
+
+    public record VodReplayStats(
+            int activeSessions,
+            long framesSent,
+            long commentsSent,
+            long fetches,
+            long fetchedComments,
+            long fetchMicrosAvg,
+            long seeks,
+            long rejectedSessions
+    ) {
+    }
+}
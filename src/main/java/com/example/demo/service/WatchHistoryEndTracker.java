@@ -0,0 +1,308 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 시청 종료 시각 추적.
+ * - 영상 ID를 실은 ENTER로 세션의 시청을 시작하고, QUIT 또는 WebSocket 종료 시 시청 종료로 본다.
+ * - 종료를 반영할 행은 (사용자, 영상, started_at)으로 정확히 찾는다. started_at은 시청 기록 INSERT 접수 응답으로
+ *   클라이언트에 내려가 ENTER의 watchStartedAt으로 돌아오며, 없으면 이 노드가 접수한 같은 (사용자, 영상)의 최근 INSERT 값을 쓴다.
+ * - 종료 시각은 바로 UPDATE하지 않고 행 단위로 모아(같은 행은 가장 늦은 종료 시각 하나로 병합)
+ *   주기적으로 MyBatis BATCH 실행기로 한 번에 UPDATE 한다. 배포/장애로 세션이 한꺼번에 끊겨도 UPDATE 폭주가 없다.
+ * - 시청 기록 INSERT는 write-behind(큐가 밀리면 spill 파일 재적재)로 늦게 들어갈 수 있으므로, 대상 행이 아직 없어 0건이면
+ *   retry-window 동안 다음 주기마다 다시 시도한다. 그래도 못 찾으면 종료를 dead-letter 파일에 남긴다.
+ * - 종료 시 대기 중인 종료를 마지막으로 반영한다.
+ */
+@Slf4j
+@Service
+public class WatchHistoryEndTracker {
+
+    private static final String UPDATE_STATEMENT = "com.example.mapper.WatchHistoryMapper.updateWatchHistoryEnded";
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final RecentWatchHistoryCache recentCache;
+    // WebSocket sessionId -> 시청 중인 행
+    private final ConcurrentHashMap<String, ViewKey> viewings = new ConcurrentHashMap<>();
+    // 이 노드가 접수한 (사용자, 영상)별 최근 시청 기록 INSERT의 started_at(ENTER에 watchStartedAt이 없을 때 사용)
+    private final ConcurrentHashMap<StartKey, LocalDateTime> recentStarts = new ConcurrentHashMap<>();
+    // 아직 반영하지 않은 행별 종료
+    private final ConcurrentHashMap<ViewKey, PendingEnd> pendingEnds = new ConcurrentHashMap<>();
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder unknownStarts = new LongAdder();
+    private final LongAdder ended = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder updatedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+
+    // recentStarts 보관 기간. 이보다 오래전에 접수한 INSERT로는 ENTER를 잇지 않는다.
+    @Value("${chat.watch-history.end.start-retention:6h}")
+    private Duration startRetention;
+    // 0건 UPDATE 재시도 기간. spill 재적재 주기(spill-replay-interval)와 큐 적체로 미뤄지는 시간보다 길어야 한다.
+    @Value("${chat.watch-history.end.retry-window:10m}")
+    private Duration retryWindow;
+    @Value("${chat.watch-history.end.dead-letter-file:./data/watch-history-end-dead.tsv}")
+    private String deadLetterFile;
+
+    public WatchHistoryEndTracker(SqlSessionFactory sqlSessionFactory, RecentWatchHistoryCache recentCache) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.recentCache = recentCache;
+    }
+
+    /**
+     * 시청 기록 INSERT 접수 경로. ENTER가 started_at을 싣지 않았을 때 이 값으로 행을 찾는다.
+     */
+    public void recordStart(String userId, Long videoId, LocalDateTime startedAt) {
+        if (userId == null || videoId == null || startedAt == null) {
+            return;
+        }
+        recentStarts.merge(new StartKey(userId, videoId), startedAt,
+                (current, candidate) -> candidate.isAfter(current) ? candidate : current);
+    }
+
+    /**
+     * 세션이 영상 시청을 시작했다(ENTER). 같은 세션이 다른 행으로 옮기면 이전 시청을 끝낸다.
+     * watchStartedAt은 시청 기록 INSERT 접수 응답의 startedAt(ISO-8601)이며, 없거나 잘못되면 이 노드의 최근 INSERT 값을 쓴다.
+     * 대상 행의 started_at을 알 수 없으면 종료를 반영하지 않는다.
+     */
+    public void viewingStarted(String sessionId, String userId, Long videoId, String watchStartedAt) {
+        if (sessionId == null || userId == null || videoId == null) {
+            return;
+        }
+        LocalDateTime startedAt = parseStartedAt(watchStartedAt);
+        if (startedAt == null) {
+            startedAt = recentStarts.get(new StartKey(userId, videoId));
+        }
+        if (startedAt == null) {
+            unknownStarts.increment();
+            log.debug("Unknown watch history start. sessionId={}, userId={}, videoId={}", sessionId, userId, videoId);
+            return;
+        }
+        ViewKey viewing = new ViewKey(userId, videoId, startedAt);
+        ViewKey previous = viewings.put(sessionId, viewing);
+        started.increment();
+        if (previous != null && !previous.equals(viewing)) {
+            recordEnd(previous, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * QUIT 또는 WebSocket 종료. 시청 중이 아니던 세션이면 아무것도 하지 않는다.
+     */
+    public void viewingEnded(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        ViewKey viewing = viewings.remove(sessionId);
+        if (viewing != null) {
+            recordEnd(viewing, LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.watch-history.end.flush-interval:5s}")
+    public void flush() {
+        LocalDateTime retainFrom = LocalDateTime.now().minus(startRetention);
+        recentStarts.values().removeIf(startedAt -> startedAt.isBefore(retainFrom));
+        if (pendingEnds.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<ViewKey, PendingEnd>> drained = new ArrayList<>();
+        for (ViewKey key : pendingEnds.keySet()) {
+            PendingEnd end = pendingEnds.remove(key);
+            if (end != null) {
+                drained.add(Map.entry(key, end));
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<BatchResult> results;
+        try (SqlSession batch = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            for (Map.Entry<ViewKey, PendingEnd> entry : drained) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("userId", entry.getKey().userId());
+                params.put("videoId", entry.getKey().videoId());
+                params.put("startedAt", entry.getKey().startedAt());
+                params.put("endedAt", entry.getValue().endedAt());
+                batch.update(UPDATE_STATEMENT, params);
+            }
+            results = batch.flushStatements();
+            batch.commit();
+            flushes.increment();
+        } catch (RuntimeException exception) {
+            flushFailures.increment();
+            drained.forEach(entry -> pendingEnds.merge(entry.getKey(), entry.getValue(), PendingEnd::merge));
+            log.warn("Failed to flush watch history end updates. rows={}", drained.size(), exception);
+            return;
+        }
+        retryUnmatched(drained, results);
+    }
+
+    /**
+     * 마지막 주기 뒤에 모인 종료 시각이 남지 않도록 종료 시 한 번 더 반영한다.
+     * 그래도 남은 종료(대상 행이 아직 없거나 UPDATE 실패)는 버리지 않고 dead-letter 파일에 남긴다.
+     */
+    @PreDestroy
+    public void stop() {
+        flush();
+        List<Map.Entry<ViewKey, PendingEnd>> remaining = new ArrayList<>();
+        for (ViewKey key : pendingEnds.keySet()) {
+            PendingEnd end = pendingEnds.remove(key);
+            if (end != null) {
+                remaining.add(Map.entry(key, end));
+            }
+        }
+        if (!remaining.isEmpty()) {
+            deadLetter(remaining);
+        }
+    }
+
+    public EndTrackerStats stats() {
+        return new EndTrackerStats(
+                viewings.size(),
+                pendingEnds.size(),
+                started.sum(),
+                unknownStarts.sum(),
+                ended.sum(),
+                coalesced.sum(),
+                flushes.sum(),
+                updatedRows.sum(),
+                flushFailures.sum(),
+                unmatched.sum()
+        );
+    }
+
+    private void recordEnd(ViewKey viewing, LocalDateTime endedAt) {
+        ended.increment();
+        // DB 반영은 다음 flush지만 최근 기록 캐시에는 바로 보이게 한다.
+        recentCache.recordEnd(viewing.userId(), viewing.videoId(), viewing.startedAt(), endedAt);
+        PendingEnd end = new PendingEnd(endedAt, 0L);
+        PendingEnd merged = pendingEnds.merge(viewing, end, PendingEnd::merge);
+        if (merged != end) {
+            coalesced.increment();
+        }
+    }
+
+    private static LocalDateTime parseStartedAt(String watchStartedAt) {
+        if (watchStartedAt == null || watchStartedAt.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(watchStartedAt.trim());
+        } catch (DateTimeParseException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * 0건 UPDATE는 대상 INSERT가 아직 반영되지 않은 경우이므로 처음 0건이 난 뒤 retry-window 동안 다음 주기에 다시 넣는다.
+     * 기간이 지나면 dead-letter 파일(user_id, video_id, started_at, ended_at 탭 구분)에 남긴다.
+     * 드라이버가 건별 결과를 주지 않으면(SUCCESS_NO_INFO) 반영된 것으로 본다.
+     */
+    private void retryUnmatched(List<Map.Entry<ViewKey, PendingEnd>> drained, List<BatchResult> results) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<ViewKey, PendingEnd>> expired = new ArrayList<>();
+        int index = 0;
+        outer:
+        for (BatchResult result : results) {
+            for (int count : result.getUpdateCounts()) {
+                if (index >= drained.size()) {
+                    break outer;
+                }
+                Map.Entry<ViewKey, PendingEnd> entry = drained.get(index++);
+                PendingEnd end = entry.getValue();
+                if (count != 0) {
+                    updatedRows.add(Math.max(count, 1));
+                } else if (end.firstUnmatchedAtMillis() == 0L
+                        || now - end.firstUnmatchedAtMillis() < retryWindow.toMillis()) {
+                    pendingEnds.merge(entry.getKey(), end.unmatchedAt(now), PendingEnd::merge);
+                } else {
+                    expired.add(entry);
+                }
+            }
+        }
+        if (!expired.isEmpty()) {
+            deadLetter(expired);
+        }
+    }
+
+    private void deadLetter(List<Map.Entry<ViewKey, PendingEnd>> expired) {
+        unmatched.add(expired.size());
+        List<String> lines = new ArrayList<>(expired.size());
+        for (Map.Entry<ViewKey, PendingEnd> entry : expired) {
+            ViewKey key = entry.getKey();
+            lines.add(key.userId() + "\t" + key.videoId() + "\t" + key.startedAt() + "\t" + entry.getValue().endedAt());
+        }
+        Path file = Path.of(deadLetterFile);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.warn("Dead-lettered unmatched watch history ends. rows={}, path={}", lines.size(), file);
+        } catch (IOException exception) {
+            log.error("Failed to dead-letter watch history ends. rows={}, path={}", lines.size(), file, exception);
+        }
+    }
+
+    private record StartKey(String userId, Long videoId) {
+    }
+
+    // 종료를 반영할 watch_history 행
+    private record ViewKey(String userId, Long videoId, LocalDateTime startedAt) {
+    }
+
+    // firstUnmatchedAtMillis: 처음 0건 UPDATE가 난 시각(0이면 아직 없음)
+    private record PendingEnd(LocalDateTime endedAt, long firstUnmatchedAtMillis) {
+        private PendingEnd merge(PendingEnd other) {
+            long firstUnmatched = firstUnmatchedAtMillis == 0L ? other.firstUnmatchedAtMillis
+                    : other.firstUnmatchedAtMillis == 0L ? firstUnmatchedAtMillis
+                    : Math.min(firstUnmatchedAtMillis, other.firstUnmatchedAtMillis);
+            return new PendingEnd(endedAt.isAfter(other.endedAt) ? endedAt : other.endedAt, firstUnmatched);
+        }
+
+        private PendingEnd unmatchedAt(long now) {
+            return firstUnmatchedAtMillis == 0L ? new PendingEnd(endedAt, now) : this;
+        }
+    }
+
+    public record EndTrackerStats(
+            int activeViewings,
+            int pendingEnds,
+            long viewingsStarted,
+            long unknownStarts,
+            long viewingsEnded,
+            long coalescedEnds,
+            long flushes,
+            long updatedRows,
+            long flushFailures,
+            long unmatchedEnds
+    ) {
+    }
+}
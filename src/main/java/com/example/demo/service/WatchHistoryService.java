@@ -2,38 +2,130 @@ package com.example.demo.service;
 
 import com.example.demo.entity.WatchHistory;
 import com.example.demo.model.DTO.WatchHistoryDTO;
+import com.example.demo.model.DTO.WatchHistoryPageDTO;
 import org.apache.ibatis.session.SqlSession;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Service
 public class WatchHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+    // Oracle 확장 ROWID 문자열(18자 base64). 그 밖의 값은 CHARTOROWID에서 오류가 나므로 cursor 단계에서 거절한다.
+    private static final Pattern ROW_ID_PATTERN = Pattern.compile("[A-Za-z0-9+/]{18}");
+
     private final SqlSession sqlSession;
+    private final WatchHistoryWriteBehind writeBehind;
+    private final RecentWatchHistoryCache recentCache;
+    private final WatchHistoryEndTracker endTracker;
 
-    public WatchHistoryService(SqlSession sqlSession) {
+    public WatchHistoryService(SqlSession sqlSession, WatchHistoryWriteBehind writeBehind,
+                               RecentWatchHistoryCache recentCache, WatchHistoryEndTracker endTracker) {
         this.sqlSession = sqlSession;
+        this.writeBehind = writeBehind;
+        this.recentCache = recentCache;
+        this.endTracker = endTracker;
     }
 
+    /**
+     * 최근 시청 기록 offset/limit 조회(기존 API).
+     * offset + limit이 캐시 크기 안이면 캐시에서, 아니면 keyset 쿼리로 offset + limit건을 읽어 앞부분을 건너뛴다.
+     */
     public List<WatchHistoryDTO> getRecentWatchHistoriesByUserId(String userId, int offset, int limit) {
+        int from = Math.max(offset, 0);
+        int to = from + Math.min(Math.max(limit, 0), MAX_PAGE_SIZE);
+        RecentWatchHistoryCache.Slice cached = recentCache.latest(userId, to);
+        List<WatchHistoryDTO> rows = cached != null ? cached.rows() : selectPage(userId, null, to);
+        return from >= rows.size() ? List.of() : rows.subList(from, Math.min(to, rows.size()));
+    }
+
+    /**
+     * 최근 시청 기록 keyset 페이지(started_at, video_id, ROWID 내림차순).
+     * 첫 페이지는 사용자별 최근 기록 캐시에서 응답하고, 다음 페이지는 직전 마지막 값 다음부터 DB에서 읽는다.
+     */
+    public WatchHistoryPageDTO getWatchHistoryPage(String userId, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Cursor before = decodeCursor(cursor);
+        List<WatchHistoryDTO> rows;
+        boolean hasMore;
+        RecentWatchHistoryCache.Slice cached = before == null ? recentCache.latest(userId, pageSize) : null;
+        if (cached != null) {
+            rows = cached.rows();
+            hasMore = !cached.complete();
+        } else {
+            // 한 건 더 읽어 다음 페이지 유무를 판단한다.
+            rows = selectPage(userId, before, pageSize + 1);
+            hasMore = rows.size() > pageSize;
+            if (hasMore) {
+                rows = rows.subList(0, pageSize);
+            }
+        }
+        return WatchHistoryPageDTO.builder()
+                .histories(rows)
+                .nextCursor(hasMore && !rows.isEmpty() ? encodeCursor(rows.get(rows.size() - 1)) : null)
+                .size(rows.size())
+                .build();
+    }
+
+    /**
+     * 시청 기록 저장 요청. INSERT는 write-behind가 batch로 처리하므로 DB 반영 전에 반환한다.
+     * 캐시에 올라 있는 사용자의 최근 기록에는 바로 반영하고, 시청 종료 추적이 이 행을 찾을 수 있게 started_at을 남긴다.
+     */
+    public boolean insertWatchHistory(WatchHistory watchHistory) {
+        boolean accepted = writeBehind.enqueue(watchHistory);
+        if (accepted) {
+            recentCache.recordStart(watchHistory);
+            endTracker.recordStart(watchHistory.getUserId(), watchHistory.getVideoId(), watchHistory.getStartedAt());
+        }
+        return accepted;
+    }
+
+    private List<WatchHistoryDTO> selectPage(String userId, Cursor before, int limit) {
         Map<String, Object> params = new HashMap<>();
         params.put("userId", userId);
+        params.put("beforeStartedAt", before == null ? null : before.startedAt());
+        params.put("beforeVideoId", before == null ? null : before.videoId());
+        params.put("beforeRowId", before == null ? null : before.rowId());
         params.put("limit", limit);
-        params.put("offset", offset);
+        return sqlSession.selectList(RecentWatchHistoryCache.SELECT_STATEMENT, params);
+    }
 
-        return sqlSession.selectList("com.example.mapper.WatchHistoryMapper.selectRecentWatchHistoriesByUserId", params);
+    /**
+     * cursor 원문은 "started_at|video_id|rowId". DB에 아직 없는 행(캐시의 write-behind 대기 행)은 rowId가 비어 있다.
+     */
+    private static String encodeCursor(WatchHistoryDTO last) {
+        String raw = last.getStartedAt() + "|" + last.getVideoId() + "|" + (last.getRowId() == null ? "" : last.getRowId());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
-    @Transactional
-    public boolean insertWatchHistory(WatchHistory watchHistory) {
-        int result = sqlSession.insert("com.example.mapper.WatchHistoryMapper.insertWatchHistory", watchHistory);
-        System.out.println("Inserted WatchHistory: " + watchHistory + ", Result: " + result);
-        if(result > 0) {
-            return true;
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("malformed cursor");
+            }
+            String rowId = parts.length == 3 && !parts[2].isEmpty() ? parts[2] : null;
+            if (rowId != null && !ROW_ID_PATTERN.matcher(rowId).matches()) {
+                throw new IllegalArgumentException("malformed rowId");
+            }
+            return new Cursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]), rowId);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
         }
-        return false;
+    }
+
+    // rowId가 null이면 (started_at, video_id)까지만 비교한다.
+    private record Cursor(LocalDateTime startedAt, Long videoId, String rowId) {
     }
 }
@@ -0,0 +1,493 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.WatchHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLDataException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 시청 기록 write-behind.
+ * - 요청 스레드는 bounded 큐에 넣고 바로 응답한다. 전용 flusher 스레드가 batch-size개가 모이거나
+ *   flush-interval이 지나면 MyBatis BATCH 실행기로 한 번에 INSERT/commit 한다.
+ * - 행은 큐에 넣기 전에 검증한다. 잘못된 행 하나가 batch 전체를 실패시키지 않게 하기 위해서다.
+ * - batch INSERT가 실패하면 행 단위로 다시 넣는다. 제약 위반/데이터 오류로 실패한 행은 dead-letter 파일로,
+ *   연결 끊김 등으로 넣지 못한 나머지 행은 로컬 spill 파일로 옮긴다.
+ * - spill 파일은 주기적으로 줄 단위로 읽어 batch로 다시 넣고, commit한 줄 위치(offset)를 옆 파일에 기록한다.
+ *   중간에 실패/재시작해도 commit한 줄은 다시 넣지 않으며, 중복은 offset 기록 직전 중단된 batch 하나로 한정된다.
+ * - 종료 시 큐에 남은 행을 마지막으로 flush하고, 실패하면 spill 파일로 남긴다.
+ */
+@Slf4j
+@Service
+public class WatchHistoryWriteBehind {
+
+    private static final String INSERT_STATEMENT = "com.example.mapper.WatchHistoryMapper.insertWatchHistory";
+    private static final String FIELD_SEPARATOR = "\t";
+    // watch_history.user_id 컬럼 길이
+    private static final int MAX_USER_ID_LENGTH = 50;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final BlockingQueue<WatchHistory> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Path replayOffsetFile;
+    private final Path deadLetterFile;
+    private final Object spillLock = new Object();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder spillFailures = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rowFallbacks = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private volatile long flushMaxNanos;
+    private long flushedAtLastRoll;
+    private volatile long rowsPerSecond;
+
+    public WatchHistoryWriteBehind(
+            SqlSessionFactory sqlSessionFactory,
+            @Value("${chat.watch-history.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.watch-history.write-behind.batch-size:500}") int batchSize,
+            @Value("${chat.watch-history.write-behind.flush-interval:200ms}") Duration flushInterval,
+            @Value("${chat.watch-history.write-behind.spill-file:./data/watch-history-spill.tsv}") String spillFile
+    ) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = Math.max(1L, flushInterval.toNanos());
+        this.spillFile = Path.of(spillFile);
+        this.replayFile = Path.of(spillFile + ".replaying");
+        this.replayOffsetFile = Path.of(spillFile + ".replaying.offset");
+        this.deadLetterFile = Path.of(spillFile + ".dead");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "watch-history-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        List<WatchHistory> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flushOrSpill(remaining);
+        }
+    }
+
+    /**
+     * 시청 기록을 비동기 저장 대상으로 받는다.
+     * 잘못된 행은 IllegalArgumentException으로 바로 거절한다.
+     * 큐가 가득 차면 spill 파일에 남기며, spill까지 실패한 경우에만 false를 반환한다.
+     */
+    public boolean enqueue(WatchHistory watchHistory) {
+        validate(watchHistory);
+        if (queue.offer(watchHistory)) {
+            enqueued.increment();
+            return true;
+        }
+        return spill(List.of(watchHistory));
+    }
+
+    /**
+     * spill 파일에 쌓인 행을 batch로 다시 넣는다. 큐가 밀려 있으면 다음 주기로 미룬다.
+     * 직전 재적재가 남긴 파일을 먼저 이어서 끝내고, 끝났으면 그 사이 쌓인 spill 파일도 같은 주기에 처리한다.
+     */
+    @Scheduled(fixedDelayString = "${chat.watch-history.write-behind.spill-replay-interval:30s}")
+    public void replaySpill() {
+        if (queue.remainingCapacity() < batchSize) {
+            return;
+        }
+        if (Files.exists(replayFile) && !replay()) {
+            return;
+        }
+        if (rotateSpill()) {
+            replay();
+        }
+    }
+
+    @Scheduled(fixedRate = 1_000L)
+    public synchronized void rollRates() {
+        long flushed = flushedRows.sum();
+        rowsPerSecond = flushed - flushedAtLastRoll;
+        flushedAtLastRoll = flushed;
+    }
+
+    public WriteBehindStats stats() {
+        long flushCount = flushes.sum();
+        return new WriteBehindStats(
+                queue.size(),
+                enqueued.sum(),
+                flushedRows.sum(),
+                rowsPerSecond,
+                flushCount,
+                flushFailures.sum(),
+                flushCount == 0 ? 0L : flushNanos.sum() / flushCount / 1_000L,
+                flushMaxNanos / 1_000L,
+                spilled.sum(),
+                spillFailures.sum(),
+                replayed.sum(),
+                rowFallbacks.sum(),
+                deadLettered.sum()
+        );
+    }
+
+    private void runFlusher() {
+        List<WatchHistory> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (running) {
+            try {
+                long waitNanos = deadline - System.nanoTime();
+                WatchHistory next = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (next != null) {
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (batch.size() >= batchSize || System.nanoTime() - deadline >= 0) {
+                if (!batch.isEmpty()) {
+                    flushOrSpill(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                deadline = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+        // 종료 중 꺼낸 행은 stop()이 큐 잔여분과 함께 처리하지 않으므로 여기서 마무리한다.
+        if (!batch.isEmpty()) {
+            flushOrSpill(batch);
+        }
+    }
+
+    private void flushOrSpill(List<WatchHistory> batch) {
+        long startedAt = System.nanoTime();
+        try {
+            insertBatch(batch);
+            long elapsed = System.nanoTime() - startedAt;
+            flushes.increment();
+            flushedRows.add(batch.size());
+            flushNanos.add(elapsed);
+            if (elapsed > flushMaxNanos) {
+                flushMaxNanos = elapsed;
+            }
+        } catch (RuntimeException exception) {
+            flushFailures.increment();
+            log.warn("Failed to flush watch history batch, retrying row by row. rows={}", batch.size(), exception);
+            RowByRowResult result = insertRowByRow(batch);
+            flushedRows.add(result.inserted());
+            if (!result.remaining().isEmpty()) {
+                spill(result.remaining());
+            }
+        }
+    }
+
+    private void insertBatch(List<WatchHistory> rows) {
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            for (WatchHistory row : rows) {
+                session.insert(INSERT_STATEMENT, row);
+            }
+            session.flushStatements();
+            session.commit();
+        }
+    }
+
+    /**
+     * batch가 실패했을 때 행마다 따로 넣어 문제 행만 골라낸다.
+     * - 제약 위반/데이터 오류처럼 다시 넣어도 실패할 행은 dead-letter 파일로 옮긴다.
+     * - 그 밖의 오류(연결 끊김 등)는 DB 쪽 문제로 보고 멈춘다.
+     * 반환값의 remaining은 아직 넣지 못해 다시 시도해야 하는 행
+     */
+    private RowByRowResult insertRowByRow(List<WatchHistory> rows) {
+        rowFallbacks.increment();
+        List<String> dead = new ArrayList<>();
+        int inserted = 0;
+        int index = 0;
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.SIMPLE, true)) {
+            for (; index < rows.size(); index++) {
+                WatchHistory row = rows.get(index);
+                try {
+                    session.insert(INSERT_STATEMENT, row);
+                    inserted++;
+                } catch (RuntimeException exception) {
+                    if (!isRowError(exception)) {
+                        throw exception;
+                    }
+                    log.warn("Dead-lettered watch history row. row={}", toLine(row), exception);
+                    dead.add(toLine(row));
+                }
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Stopped row-by-row watch history insert. remaining={}", rows.size() - index, exception);
+        }
+        deadLetter(dead);
+        return new RowByRowResult(inserted,
+                index >= rows.size() ? List.of() : new ArrayList<>(rows.subList(index, rows.size())));
+    }
+
+    private static boolean isRowError(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException || cause instanceof SQLDataException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean rotateSpill() {
+        synchronized (spillLock) {
+            if (!Files.exists(spillFile)) {
+                return false;
+            }
+            try {
+                // 새 replay 파일에 이전 파일의 offset이 적용되지 않게 먼저 지운다.
+                Files.deleteIfExists(replayOffsetFile);
+                Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException exception) {
+                log.warn("Failed to rotate watch history spill file. path={}", spillFile, exception);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * replayFile을 줄 단위로 읽어 batch로 넣는다. offset 파일에 기록된 줄까지는 이미 commit된 것으로 보고 건너뛴다.
+     * 끝까지 넣었으면 파일을 지우고 true, 중간에 멈췄으면 다음 주기에 이어 가도록 남기고 false
+     */
+    private boolean replay() {
+        long committedLines = readReplayOffset();
+        long lineNumber = 0L;
+        long rowsReplayed = 0L;
+        List<WatchHistory> rows = new ArrayList<>(batchSize);
+        List<String> malformed = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (++lineNumber <= committedLines) {
+                    continue;
+                }
+                WatchHistory row = fromLine(line);
+                if (row != null) {
+                    rows.add(row);
+                } else {
+                    malformed.add(line);
+                }
+                if (rows.size() >= batchSize) {
+                    if (!replayBatch(rows, malformed, lineNumber)) {
+                        return false;
+                    }
+                    rowsReplayed += rows.size();
+                    rows.clear();
+                }
+            }
+            if (!replayBatch(rows, malformed, lineNumber)) {
+                return false;
+            }
+            rowsReplayed += rows.size();
+            Files.delete(replayFile);
+            Files.deleteIfExists(replayOffsetFile);
+        } catch (IOException exception) {
+            log.warn("Failed to replay watch history spill. path={}, line={}", replayFile, lineNumber, exception);
+            return false;
+        }
+        log.info("Replayed watch history spill. rows={}", rowsReplayed);
+        return true;
+    }
+
+    /**
+     * lastLine까지의 행을 넣고 offset을 lastLine으로 옮긴다.
+     * 행 단위 재시도에서도 넣지 못한 행은 spill 파일 끝에 다시 붙여 두고(offset은 진행) 이번 주기를 멈춘다.
+     */
+    private boolean replayBatch(List<WatchHistory> rows, List<String> malformed, long lastLine) {
+        deadLetter(malformed);
+        malformed.clear();
+        if (rows.isEmpty()) {
+            return true;
+        }
+        RowByRowResult result;
+        try {
+            insertBatch(rows);
+            result = new RowByRowResult(rows.size(), List.of());
+        } catch (RuntimeException exception) {
+            log.warn("Failed to replay watch history batch, retrying row by row. rows={}", rows.size(), exception);
+            result = insertRowByRow(rows);
+        }
+        List<WatchHistory> remaining = result.remaining();
+        if (!remaining.isEmpty() && !spill(remaining)) {
+            // 다시 남겨 두지도 못했으면 offset을 옮기지 않는다(다음 주기에 이 batch부터 다시).
+            return false;
+        }
+        replayed.add(result.inserted());
+        writeReplayOffset(lastLine);
+        return remaining.isEmpty();
+    }
+
+    private long readReplayOffset() {
+        try {
+            return Files.exists(replayOffsetFile) ? Long.parseLong(Files.readString(replayOffsetFile).trim()) : 0L;
+        } catch (IOException | NumberFormatException exception) {
+            log.warn("Ignored unreadable watch history replay offset. path={}", replayOffsetFile, exception);
+            return 0L;
+        }
+    }
+
+    private void writeReplayOffset(long lines) {
+        Path temp = Path.of(replayOffsetFile + ".tmp");
+        try {
+            Files.writeString(temp, Long.toString(lines), StandardCharsets.UTF_8);
+            Files.move(temp, replayOffsetFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            log.warn("Failed to record watch history replay offset. path={}, lines={}", replayOffsetFile, lines, exception);
+        }
+    }
+
+    private boolean spill(List<WatchHistory> rows) {
+        List<String> lines = new ArrayList<>(rows.size());
+        rows.forEach(row -> lines.add(toLine(row)));
+        if (append(spillFile, lines)) {
+            spilled.add(rows.size());
+            return true;
+        }
+        spillFailures.add(rows.size());
+        return false;
+    }
+
+    private void deadLetter(List<String> lines) {
+        if (!lines.isEmpty() && append(deadLetterFile, lines)) {
+            deadLettered.add(lines.size());
+        }
+    }
+
+    private boolean append(Path file, List<String> lines) {
+        synchronized (spillLock) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                return true;
+            } catch (IOException exception) {
+                log.error("Failed to append watch history rows. rows={}, path={}", lines.size(), file, exception);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * INSERT에서 실패할 값과 spill 파일 한 줄을 깨뜨리는 값(탭/줄바꿈)을 큐에 넣기 전에 거른다.
+     */
+    static void validate(WatchHistory row) {
+        if (row == null) {
+            throw new IllegalArgumentException("watch history is required");
+        }
+        String userId = row.getUserId();
+        if (userId == null || userId.isBlank() || userId.length() > MAX_USER_ID_LENGTH
+                || userId.chars().anyMatch(Character::isISOControl)) {
+            throw new IllegalArgumentException("invalid userId: " + userId);
+        }
+        if (row.getVideoId() == null || row.getVideoId() <= 0) {
+            throw new IllegalArgumentException("invalid videoId: " + row.getVideoId());
+        }
+        if (row.getStartedAt() == null) {
+            throw new IllegalArgumentException("startedAt is required");
+        }
+        if (row.getEndedAt() != null && row.getEndedAt().isBefore(row.getStartedAt())) {
+            throw new IllegalArgumentException("endedAt is before startedAt");
+        }
+    }
+
+    private static String toLine(WatchHistory row) {
+        return row.getUserId() + FIELD_SEPARATOR + row.getVideoId()
+                + FIELD_SEPARATOR + (row.getStartedAt() == null ? "" : row.getStartedAt())
+                + FIELD_SEPARATOR + (row.getEndedAt() == null ? "" : row.getEndedAt());
+    }
+
+    /**
+     * spill 파일 한 줄을 행으로 되돌린다. 형식이 깨졌거나 검증에 걸리면 null(호출자가 dead-letter로 옮긴다).
+     */
+    private static WatchHistory fromLine(String line) {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            WatchHistory row = WatchHistory.builder()
+                    .userId(fields[0])
+                    .videoId(Long.valueOf(fields[1]))
+                    .startedAt(fields[2].isEmpty() ? null : LocalDateTime.parse(fields[2]))
+                    .endedAt(fields[3].isEmpty() ? null : LocalDateTime.parse(fields[3]))
+                    .build();
+            validate(row);
+            return row;
+        } catch (RuntimeException exception) {
+            return null;
+        }
+    }
+
+    private record RowByRowResult(int inserted, List<WatchHistory> remaining) {
+    }
+
+    public record WriteBehindStats(
+            int queued,
+            long enqueued,
+            long flushedRows,
+            long flushedRowsPerSecond,
+            long flushes,
+            long flushFailures,
+            long flushMicrosAvg,
+            long flushMicrosMax,
+            long spilledRows,
+            long spillFailedRows,
+            long replayedRows,
+            long rowByRowFallbacks,
+            long deadLetteredRows
+    ) {
+    }
+}
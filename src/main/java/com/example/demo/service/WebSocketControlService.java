@@ -3,12 +3,16 @@ package com.example.demo.service;
 import com.example.demo.config.WebSocketLifecycleProperties;
 import com.example.demo.model.WsControlMessage;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
 public class WebSocketControlService {
 
+    private static final String CONTROL_DESTINATION = "/sub/system/control";
+
     private final SimpMessagingTemplate messagingTemplate;
     private final WebSocketLifecycleProperties lifecycleProperties;
     private final String serverId;
@@ -24,13 +28,67 @@ public class WebSocketControlService {
     }
 
     public void broadcastReconnectSignal(String reason) {
+        messagingTemplate.convertAndSend(CONTROL_DESTINATION, reconnectMessage(reason));
+    }
+
+    /**
+     * 특정 websocket 세션 하나에만 RECONNECT를 보낸다.
+     * 클라이언트는 /user/sub/system/control을 구독해야 수신한다(principal 없이 sessionId로 라우팅).
+     */
+    public void sendReconnectSignal(String sessionId, String reason) {
+        sendToSession(sessionId, CONTROL_DESTINATION, reconnectMessage(reason));
+    }
+
+    /**
+     * room의 선호 노드로 옮기라는 힌트를 해당 세션에만 보낸다.
+     * 강제가 아니라 힌트이므로 세션은 현재 노드에서 계속 정상 동작한다.
+     */
+    public void sendRedirectSignal(String sessionId, String roomId, String targetNodeId, String targetUrl) {
+        WsControlMessage controlMessage = WsControlMessage.builder()
+                .type("REDIRECT")
+                .reason("Room affinity")
+                .retryAfterMs(0)
+                .reconnectJitterMaxMs(lifecycleProperties.getReconnectJitterMaxMs())
+                .serverId(serverId)
+                .roomId(roomId)
+                .targetNodeId(targetNodeId)
+                .targetUrl(targetUrl)
+                .build();
+        sendToSession(sessionId, CONTROL_DESTINATION, controlMessage);
+    }
+
+    /**
+     * slow mode로 TALK이 거절됐음을 보낸 세션에만 알린다. retryAfterMs 뒤에 다시 보낼 수 있다.
+     */
+    public void sendSlowModeNotice(String sessionId, String roomId, String reason, long retryAfterMs) {
         WsControlMessage controlMessage = WsControlMessage.builder()
+                .type("SLOW_MODE")
+                .reason(reason)
+                .retryAfterMs((int) Math.min(Integer.MAX_VALUE, retryAfterMs))
+                .serverId(serverId)
+                .roomId(roomId)
+                .build();
+        sendToSession(sessionId, CONTROL_DESTINATION, controlMessage);
+    }
+
+    /**
+     * sessionId 기반 user destination 전송.
+     * destination이 /sub/x면 해당 세션의 /user/sub/x 구독으로만 전달된다.
+     */
+    public void sendToSession(String sessionId, String destination, Object payload) {
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.setSessionId(sessionId);
+        headerAccessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, destination, payload, headerAccessor.getMessageHeaders());
+    }
+
+    private WsControlMessage reconnectMessage(String reason) {
+        return WsControlMessage.builder()
                 .type("RECONNECT")
                 .reason(reason)
                 .retryAfterMs(lifecycleProperties.getReconnectRetryAfterMs())
                 .reconnectJitterMaxMs(lifecycleProperties.getReconnectJitterMaxMs())
                 .serverId(serverId)
                 .build();
-        messagingTemplate.convertAndSend("/sub/system/control", controlMessage);
     }
 }
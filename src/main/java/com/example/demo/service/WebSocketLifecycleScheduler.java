@@ -1,51 +1,86 @@
 package com.example.demo.service;
 
 import com.example.demo.config.WebSocketLifecycleProperties;
-import com.example.demo.service.WebSocketSessionRegistry.SessionSnapshot;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
+import java.util.List;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class WebSocketLifecycleScheduler {
 
     private final WebSocketLifecycleProperties lifecycleProperties;
     private final WebSocketDrainService drainService;
     private final WebSocketSessionRegistry sessionRegistry;
     private final WebSocketControlService controlService;
+    // TTL 예고와 만료 close가 함께 쓰는 초당 처리량 버킷. 둘 다 클라이언트 재연결을 일으키므로 한 예산을 나눠 쓴다.
+    private final TokenBucket rotationBucket;
+    // rotation tick 1회에 꺼낼 수 있는 최대 토큰 수(= 버킷 burst). tick 간격만큼의 몫만 모아 두므로 처리가 tick마다 고르게 퍼진다.
+    private final int rotationPermitsPerTick;
+    // 직전 tick의 TTL 처리 비용(운영 조회용)
+    private volatile TickStats lastTickStats = new TickStats(null, 0L, 0, 0);
 
-    @Scheduled(fixedDelayString = "${chat.ws.lifecycle.scheduler-interval:5s}")
-    public void manageConnections() {
-        Instant now = Instant.now();
-        int ttlNoticeMarkedCount = 0;
+    public WebSocketLifecycleScheduler(
+            WebSocketLifecycleProperties lifecycleProperties,
+            WebSocketDrainService drainService,
+            WebSocketSessionRegistry sessionRegistry,
+            WebSocketControlService controlService
+    ) {
+        this.lifecycleProperties = lifecycleProperties;
+        this.drainService = drainService;
+        this.sessionRegistry = sessionRegistry;
+        this.controlService = controlService;
+        int ratePerSecond = Math.max(1, lifecycleProperties.getRotationMaxPerSecond());
+        long intervalMs = Math.max(1L, lifecycleProperties.getRotationInterval().toMillis());
+        this.rotationPermitsPerTick = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, (long) ratePerSecond * intervalMs / 1_000L));
+        this.rotationBucket = new TokenBucket(ratePerSecond, rotationPermitsPerTick);
+    }
 
-        for (SessionSnapshot session : sessionRegistry.snapshots()) {
-            Instant noticeAt = session.expiresAt().minus(lifecycleProperties.getTtlNoticeBefore());
-            if (!session.ttlNoticeSent() && !noticeAt.isAfter(now)) {
-                if (sessionRegistry.markTtlNoticeSent(session.sessionId())) {
-                    ttlNoticeMarkedCount++;
-                }
-            }
+    /**
+     * TTL 예고/만료 close를 짧은 간격으로 조금씩 처리한다.
+     * 5초 tick에 초당 상한 x 5개를 한꺼번에 보내면 그 순간 재연결이 몰리므로, 토큰 버킷으로 초당 상한을 지키면서 고르게 흘려보낸다.
+     */
+    @Scheduled(fixedDelayString = "${chat.ws.lifecycle.rotation-interval:100ms}")
+    public void rotateSessions() {
+        Instant now = Instant.now();
+        long tickStartedAt = System.nanoTime();
+        int permits = acquireRotationPermits(tickStartedAt);
+        if (permits == 0) {
+            return;
         }
-        // 변경: TTL 임박 세션이 여러 개여도 주기마다 제어 메시지는 1회만 전송
-        // 이유: 세션 수 증가 시 동일 RECONNECT 브로드캐스트가 과도하게 반복되는 문제를 줄이기 위해
-        if (ttlNoticeMarkedCount > 0) {
-            controlService.broadcastReconnectSignal("TTL rotation");
+        // 변경: 세션 전체 스냅샷 순회 대신 마감 인덱스에서 TTL 예고 시각에 도달한 세션만 꺼낸다.
+        // 예고를 먼저 보내고 남은 토큰으로 만료 close를 처리한다(예고 없이 끊기는 세션을 줄인다).
+        List<String> ttlNoticeSessionIds = sessionRegistry.pollDueTtlNotices(now, permits);
+        int ttlNoticeMarkedCount = ttlNoticeSessionIds.size();
+        // 변경: TTL RECONNECT 예고는 만료가 임박한 세션에게만 개별 전송한다.
+        // 이유: /sub/system/control 브로드캐스트는 만료와 무관한 모든 세션까지 재연결시켜 폭주를 만든다.
+        for (String sessionId : ttlNoticeSessionIds) {
+            controlService.sendReconnectSignal(sessionId, "TTL rotation");
         }
 
-        int ttlClosed = sessionRegistry.closeExpired(now);
-        if (ttlClosed > 0) {
-            log.info("Closed {} expired websocket sessions by TTL", ttlClosed);
+        int ttlClosed = 0;
+        int closePermits = permits - ttlNoticeMarkedCount;
+        if (closePermits > 0) {
+            ttlClosed = sessionRegistry.closeExpired(now, closePermits);
+            if (ttlClosed > 0) {
+                log.debug("Closed {} expired websocket sessions by TTL", ttlClosed);
+            }
         }
+        if (ttlNoticeMarkedCount > 0 || ttlClosed > 0) {
+            long tickMicros = (System.nanoTime() - tickStartedAt) / 1_000L;
+            lastTickStats = new TickStats(now, tickMicros, ttlNoticeMarkedCount, ttlClosed);
+        }
+    }
 
+    @Scheduled(fixedDelayString = "${chat.ws.lifecycle.scheduler-interval:5s}")
+    public void manageConnections() {
         if (!drainService.isDraining()) {
             return;
         }
+        Instant now = Instant.now();
 
         controlService.broadcastReconnectSignal("Server draining");
 
@@ -59,4 +94,27 @@ public class WebSocketLifecycleScheduler {
             }
         });
     }
+
+    /**
+     * 이번 tick에 쓸 토큰을 최대 rotationPermitsPerTick개까지 꺼낸다.
+     * 처리할 세션이 없어 남은 토큰은 버려지지만, 버킷 burst가 한 tick 몫이라 다음 tick에 몰아 쓰이지 않는다.
+     */
+    private int acquireRotationPermits(long nowNanos) {
+        int permits = 0;
+        while (permits < rotationPermitsPerTick && rotationBucket.tryAcquire(nowNanos) == 0L) {
+            permits++;
+        }
+        return permits;
+    }
+
+    public TickStats lastTickStats() {
+        return lastTickStats;
+    }
+
+    /**
+     * 세션을 처리한 마지막 rotation tick의 처리 시간과 실제로 처리된 세션 수.
+     * 마감 인덱스 도입 후에는 세션 총량이 아니라 due 세션 수에 비례해야 한다.
+     */
+    public record TickStats(Instant tickedAt, long durationMicros, int ttlNoticesMarked, int ttlClosed) {
+    }
 }
@@ -1,40 +1,48 @@
 package com.example.demo.service;
 
+import com.example.demo.config.WebSocketLifecycleProperties;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class WebSocketSessionRegistry {
 
     private static final CloseStatus RECONNECT_CLOSE_STATUS = new CloseStatus(4001, "Reconnect required");
     private static final int INVALID_PAYLOAD_CLOSE_CODE = 4002;
+    private static final long DEADLINE_GRANULARITY_MS = 1_000L;
 
     private final ChatRoomSessionTracker chatRoomSessionTracker;
-    private final ObjectProvider<ChatRoomService> chatRoomServiceProvider;
-    private final Map<String, SessionMeta> sessions = new ConcurrentHashMap<>();
+    private final SessionHandleTable sessionHandleTable;
+    // sessionId별 map 대신 SessionHandleTable의 handle을 인덱스로 쓰는 배열에 세션 메타를 둔다.
+    // 쓰기는 this 락 안에서만 하고, 단건 조회(metaOf)와 세션 수 조회는 락 없이 읽는다.
+    // SessionMeta의 세션/만료시각은 final 필드라 락 없이 읽어도 생성이 끝난 값만 보인다.
+    private volatile SessionMeta[] sessionsByHandle = new SessionMeta[1024];
+    private volatile int registeredCount;
+    // SockJS endpoint(/ws/chat)로 붙은 세션 수. 나머지는 native endpoint 세션
+    private volatile int sockJsCount;
+    // TTL 예고/만료 마감시각 인덱스: 스케줄러 tick마다 전체 세션을 훑지 않고 마감된 버킷만 꺼낸다.
+    private final WebSocketLifecycleProperties lifecycleProperties;
+    private final SessionDeadlineIndex ttlNoticeDeadlines = new SessionDeadlineIndex(DEADLINE_GRANULARITY_MS);
+    private final SessionDeadlineIndex expiryDeadlines = new SessionDeadlineIndex(DEADLINE_GRANULARITY_MS);
 
-    /**
-     * 생성자에서 ChatRoomService를 ObjectProvider로 받는 이유:
-     * - WebSocketSessionRegistry -> ChatRoomService 직접 주입 시 순환 의존이 생길 수 있어
-     *   실제 사용 시점(unregister)까지 조회를 지연한다.
-     */
     public WebSocketSessionRegistry(
             ChatRoomSessionTracker chatRoomSessionTracker,
-            ObjectProvider<ChatRoomService> chatRoomServiceProvider
+            SessionHandleTable sessionHandleTable,
+            WebSocketLifecycleProperties lifecycleProperties
     ) {
         this.chatRoomSessionTracker = chatRoomSessionTracker;
-        this.chatRoomServiceProvider = chatRoomServiceProvider;
+        this.sessionHandleTable = sessionHandleTable;
+        this.lifecycleProperties = lifecycleProperties;
     }
 
     /**
@@ -42,52 +50,119 @@ public class WebSocketSessionRegistry {
      * expiresAt은 TTL 스케줄러가 만료 세션을 닫을 때 기준으로 사용된다.
      */
     public void register(WebSocketSession session, Instant expiresAt) {
-        sessions.put(session.getId(), new SessionMeta(session, expiresAt));
+        int handle = sessionHandleTable.acquire(session.getId());
+        synchronized (this) {
+            if (handle >= sessionsByHandle.length) {
+                int capacity = sessionsByHandle.length;
+                while (capacity <= handle) {
+                    capacity <<= 1;
+                }
+                sessionsByHandle = Arrays.copyOf(sessionsByHandle, capacity);
+            }
+            SessionMeta previous = sessionsByHandle[handle];
+            if (previous == null) {
+                registeredCount++;
+            } else if (previous.sockJs) {
+                sockJsCount--;
+            }
+            SessionMeta meta = new SessionMeta(session, expiresAt, session instanceof SockJsSession);
+            if (meta.sockJs) {
+                sockJsCount++;
+            }
+            sessionsByHandle[handle] = meta;
+            long expiresAtMillis = expiresAt.toEpochMilli();
+            ttlNoticeDeadlines.schedule(handle, expiresAtMillis - lifecycleProperties.getTtlNoticeBefore().toMillis());
+            expiryDeadlines.schedule(handle, expiresAtMillis);
+        }
     }
 
     /**
      * websocket 연결 종료 시 호출된다.
      * - registry에서 세션 제거
-     * - session이 참여하던 room 목록을 tracker에서 회수
-     * - 각 room에 대해 leaveChatRoom을 호출해 refcount 누수를 방지
+     * - session이 참여하던 room을 tracker에서 해제
      *
      * 핵심 목적:
      * - QUIT 메시지 없이 종료되는 비정상 케이스(브라우저 새로고침/강제 종료)에서도
-     *   room별 refcount가 감소되도록 보장한다.
+     *   tracker의 room 멤버에서 빠지도록 보장한다. room이 비면 tracker가 점유 해제 이벤트를 보내
+     *   ChatRoomService가 topic 구독 해지를 예약한다.
      */
     public void unregister(String sessionId) {
         if (sessionId == null || sessionId.isBlank()){
             return;
         }
-        sessions.remove(sessionId);
-        ChatRoomService chatRoomService = chatRoomServiceProvider.getIfAvailable();
-        // 변경: 비정상 종료(새로고침/브라우저 종료)에서도 room별 leave를 보장해 refcount 누수를 방지한다.
-        String roomId = chatRoomSessionTracker.unregisterSession(sessionId);
-        if (chatRoomService != null && roomId != null) {
-            chatRoomService.leaveChatRoom(roomId);
+        int handle = sessionHandleTable.handleOf(sessionId);
+        if (handle == SessionHandleTable.NO_HANDLE) {
+            return;
+        }
+        synchronized (this) {
+            SessionMeta meta = handle < sessionsByHandle.length ? sessionsByHandle[handle] : null;
+            if (meta != null) {
+                sessionsByHandle[handle] = null;
+                registeredCount--;
+                if (meta.sockJs) {
+                    sockJsCount--;
+                }
+            }
+            ttlNoticeDeadlines.cancel(handle);
+            expiryDeadlines.cancel(handle);
         }
+        // room 해제와 handle 반납은 tracker가 한 락 안에서 처리한다.
+        // 그래야 재사용된 handle에 이전 room이 남거나, 사이에 든 ENTER가 room을 다시 기록하지 못한다.
+        chatRoomSessionTracker.unregisterSession(sessionId);
     }
 
     public int size() {
-        return sessions.size();
+        return registeredCount;
     }
 
-    public List<SessionSnapshot> snapshots() {
-        List<SessionSnapshot> snapshots = new ArrayList<>();
-        for (Map.Entry<String, SessionMeta> entry : sessions.entrySet()) {
-            SessionMeta meta = entry.getValue();
-            snapshots.add(new SessionSnapshot(entry.getKey(), meta.expiresAt, meta.ttlNoticeSent));
-        }
-        return snapshots;
+    /**
+     * endpoint(전송 방식)별 세션 수. SockJS와 native endpoint 비교용.
+     */
+    public TransportCounts transportCounts() {
+        int sockJs = sockJsCount;
+        return new TransportCounts(sockJs, Math.max(0, registeredCount - sockJs));
     }
 
-    public int closeExpired(Instant now) {
-        int closed = 0;
-        for (SessionMeta meta : sessions.values()) {
-            if (!meta.expiresAt.isAfter(now)) {
-                if (close(meta.session, RECONNECT_CLOSE_STATUS)) {
-                    closed++;
+    /**
+     * TTL 예고 시각에 도달한 세션을 최대 limit개까지 꺼내 예고 전송 상태로 표시한다.
+     * 마감 인덱스에서 도달한 버킷만 꺼내므로 비용은 전체 세션 수가 아니라 도달한 세션 수에 비례한다.
+     * 반환값은 이번에 새로 표시된 sessionId 목록(개별 RECONNECT 예고 대상)
+     */
+    public synchronized List<String> pollDueTtlNotices(Instant now, int limit) {
+        List<String> due = new ArrayList<>();
+        ttlNoticeDeadlines.pollDue(now.toEpochMilli(), limit, handle -> {
+            SessionMeta meta = sessionsByHandle[handle];
+            if (meta != null && !meta.ttlNoticeSent) {
+                meta.ttlNoticeSent = true;
+                due.add(meta.session.getId());
+            }
+        });
+        return due;
+    }
+
+    /**
+     * TTL 만료 세션을 최대 limit개까지 닫는다.
+     * limit을 넘는 만료 세션은 인덱스에 남아 다음 tick에 닫힌다(재연결 폭주 완화용 close rate 제한).
+     * close가 실패했는데 세션이 아직 등록되어 있으면 close-retry-backoff 뒤로 다시 예약한다.
+     * 인덱스에서 이미 꺼냈으므로 다시 넣지 않으면 그 세션은 TTL로 다시는 닫히지 않는다.
+     */
+    public int closeExpired(Instant now, int limit) {
+        List<SessionMeta> expired = new ArrayList<>();
+        synchronized (this) {
+            expiryDeadlines.pollDue(now.toEpochMilli(), limit, handle -> {
+                SessionMeta meta = sessionsByHandle[handle];
+                if (meta != null) {
+                    expired.add(meta);
                 }
+            });
+        }
+        // close()는 afterConnectionClosed -> unregister로 이어지므로 락 밖에서 호출한다.
+        int closed = 0;
+        for (SessionMeta meta : expired) {
+            if (close(meta.session, RECONNECT_CLOSE_STATUS)) {
+                closed++;
+            } else {
+                rescheduleExpiry(meta, now.plus(lifecycleProperties.getCloseRetryBackoff()));
             }
         }
         return closed;
@@ -95,17 +170,61 @@ public class WebSocketSessionRegistry {
 
     public int closeAll(String reason) {
         CloseStatus status = new CloseStatus(4001, reason);
+        List<WebSocketSession> targets = new ArrayList<>();
+        synchronized (this) {
+            for (SessionMeta meta : sessionsByHandle) {
+                if (meta != null) {
+                    targets.add(meta.session);
+                }
+            }
+        }
+        int closed = 0;
+        for (WebSocketSession session : targets) {
+            if (close(session, status)) {
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * 열려 있는 세션을 최대 maxCount개까지 닫는다(fan-out backpressure 정책용).
+     * 전체 스냅샷을 만들지 않고 필요한 개수만 모으면 순회를 멈춘다.
+     */
+    public int closeSessions(int maxCount, String reason) {
+        String closeReason = (reason == null || reason.isBlank()) ? "Invalid payload" : reason;
+        CloseStatus status = new CloseStatus(INVALID_PAYLOAD_CLOSE_CODE, closeReason);
+        List<WebSocketSession> targets = new ArrayList<>(Math.max(0, maxCount));
+        synchronized (this) {
+            for (int handle = 0; handle < sessionsByHandle.length && targets.size() < maxCount; handle++) {
+                SessionMeta meta = sessionsByHandle[handle];
+                if (meta != null && meta.session.isOpen()) {
+                    targets.add(meta.session);
+                }
+            }
+        }
         int closed = 0;
-        for (SessionMeta meta : sessions.values()) {
-            if (close(meta.session, status)) {
+        for (WebSocketSession session : targets) {
+            if (close(session, status)) {
                 closed++;
             }
         }
         return closed;
     }
 
+    /**
+     * 마감 인덱스 규모(예약된 세션 수/버킷 수). 운영 조회용.
+     */
+    public synchronized DeadlineIndexStats deadlineIndexStats() {
+        return new DeadlineIndexStats(
+                ttlNoticeDeadlines.scheduledCount(),
+                expiryDeadlines.scheduledCount(),
+                expiryDeadlines.bucketCount()
+        );
+    }
+
     public boolean closeSession(String sessionId, String reason) {
-        SessionMeta meta = sessions.get(sessionId);
+        SessionMeta meta = metaOf(sessionId);
         if (meta == null) {
             return false;
         }
@@ -114,13 +233,28 @@ public class WebSocketSessionRegistry {
         return close(meta.session, new CloseStatus(INVALID_PAYLOAD_CLOSE_CODE, closeReason));
     }
 
-    public boolean markTtlNoticeSent(String sessionId) {
-        SessionMeta meta = sessions.get(sessionId);
-        if (meta == null || meta.ttlNoticeSent) {
-            return false;
+    private SessionMeta metaOf(String sessionId) {
+        int handle = sessionHandleTable.handleOf(sessionId);
+        if (handle == SessionHandleTable.NO_HANDLE) {
+            return null;
         }
-        meta.ttlNoticeSent = true;
-        return true;
+        SessionMeta[] metas = sessionsByHandle;
+        SessionMeta meta = handle < metas.length ? metas[handle] : null;
+        // 락 없이 읽으므로 조회 사이에 세션이 해제되고 handle이 다른 세션에 재사용되었을 수 있다.
+        // 다른 클라이언트를 닫지 않도록 sessionId가 같은 경우에만 돌려준다.
+        return meta != null && meta.session.getId().equals(sessionId) ? meta : null;
+    }
+
+    /**
+     * 만료 close 재시도 예약. 그 사이 unregister되었거나 handle이 다른 세션에 재사용되었으면 예약하지 않는다.
+     */
+    private synchronized void rescheduleExpiry(SessionMeta meta, Instant retryAt) {
+        int handle = sessionHandleTable.handleOf(meta.session.getId());
+        if (handle == SessionHandleTable.NO_HANDLE || handle >= sessionsByHandle.length
+                || sessionsByHandle[handle] != meta) {
+            return;
+        }
+        expiryDeadlines.schedule(handle, retryAt.toEpochMilli());
     }
 
     private boolean close(WebSocketSession session, CloseStatus status) {
@@ -130,7 +264,7 @@ public class WebSocketSessionRegistry {
         try {
             session.close(status);
             return true;
-        } catch (IOException ignored) {
+        } catch (IOException | RuntimeException ignored) {
             return false;
         }
     }
@@ -140,9 +274,13 @@ public class WebSocketSessionRegistry {
     private static class SessionMeta {
         private final WebSocketSession session;
         private final Instant expiresAt;
+        private final boolean sockJs;
         private volatile boolean ttlNoticeSent;
     }
 
-    public record SessionSnapshot(String sessionId, Instant expiresAt, boolean ttlNoticeSent) {
+    public record TransportCounts(int sockJs, int nativeWebSocket) {
+    }
+
+    public record DeadlineIndexStats(int scheduledTtlNotices, int scheduledExpiries, int expiryBuckets) {
     }
 }
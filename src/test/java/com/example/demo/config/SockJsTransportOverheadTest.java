@@ -0,0 +1,248 @@
+package com.example.demo.config;
+
+import com.example.demo.support.HeapMeter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.sockjs.transport.handler.DefaultSockJsService;
+import org.springframework.web.socket.sockjs.transport.session.WebSocketServerSockJsSession;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /ws/chat(SockJS) vs /ws/chat-native(raw WebSocket STOMP) 전송 계층 비용 비교.
+ * - 두 endpoint는 STOMP 파이프라인(인코딩까지)을 공유하고, 그 뒤 SockJS 세션 계층만 다르다.
+ * - SockJS 쪽은 Spring의 WebSocketServerSockJsSession을 DefaultSockJsService 설정(기본 codec, 25초 heartbeat)으로 만들어
+ *   같은 소켓 stub 위에 얹는다. 소켓 stub은 보낸 바이트만 세므로 차이는 SockJS 계층 비용이다.
+ * - 연결당 메모리: SockJS 세션 객체 + 세션마다 스케줄러에 걸린 heartbeat 작업
+ * - 메시지당 CPU: 문자열 변환 + JSON 배열 프레이밍(a["..."]) + heartbeat 취소/재예약, 할당 바이트와 전송 바이트도 함께 본다.
+ * 실제 소켓/브라우저를 포함한 비교는 같은 부하에서 GET /ops/ws/status의 sessionsByTransport와 JVM 힙/CPU를 본다(test.md).
+ * ./gradlew perfTest --tests '*SockJsTransportOverheadTest'
+ */
+@Tag("perf")
+class SockJsTransportOverheadTest {
+
+	private static final int SESSIONS = 20_000;
+	private static final int MESSAGES = 200_000;
+	private static final WebSocketHandler NO_OP_HANDLER = new AbstractWebSocketHandler() {
+	};
+
+	private ThreadPoolTaskScheduler scheduler;
+	private DefaultSockJsService sockJsService;
+
+	@BeforeEach
+	void setUp() {
+		scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(1);
+		scheduler.initialize();
+		sockJsService = new DefaultSockJsService(scheduler);
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void sockJsAddsPerConnectionStateAndAHeartbeatTask() {
+		HeapMeter.Measured<SocketStub[]> nativeSessions = HeapMeter.retained(() -> {
+			SocketStub[] sessions = new SocketStub[SESSIONS];
+			for (int i = 0; i < SESSIONS; i++) {
+				sessions[i] = new SocketStub("native-" + i);
+			}
+			return sessions;
+		});
+		HeapMeter.Measured<WebSocketServerSockJsSession[]> sockJsSessions = HeapMeter.retained(() -> {
+			WebSocketServerSockJsSession[] sessions = new WebSocketServerSockJsSession[SESSIONS];
+			for (int i = 0; i < SESSIONS; i++) {
+				sessions[i] = new WebSocketServerSockJsSession("sockjs-" + i, sockJsService, NO_OP_HANDLER, null);
+				sessions[i].initializeDelegateSession(new SocketStub("sockjs-" + i));
+			}
+			return sessions;
+		});
+
+		long nativePerSession = nativeSessions.bytes() / SESSIONS;
+		long sockJsPerSession = sockJsSessions.bytes() / SESSIONS;
+		int heartbeatTasks = scheduler.getScheduledThreadPoolExecutor().getQueue().size();
+		System.out.printf("sessions=%d native=%d B/connection sockjs=%d B/connection (+%d B) heartbeat tasks=%d%n",
+				SESSIONS, nativePerSession, sockJsPerSession, sockJsPerSession - nativePerSession, heartbeatTasks);
+		assertEquals(SESSIONS, heartbeatTasks);
+		assertTrue(sockJsPerSession > nativePerSession,
+				"sockjs=" + sockJsPerSession + " native=" + nativePerSession);
+	}
+
+	@Test
+	void sockJsFramingCostsMoreCpuAllocationAndBytesPerMessage() throws IOException {
+		byte[] stompFrame = stompMessageFrame();
+		SocketStub nativeSession = new SocketStub("native");
+		SocketStub sockJsSocket = new SocketStub("sockjs");
+		WebSocketServerSockJsSession sockJsSession = new WebSocketServerSockJsSession("sockjs", sockJsService, NO_OP_HANDLER, null);
+		sockJsSession.initializeDelegateSession(sockJsSocket);
+
+		// JIT 워밍업 뒤 두 번째 실행만 측정한다.
+		send(nativeSession, stompFrame);
+		send(sockJsSession, stompFrame);
+		nativeSession.sentBytes = 0L;
+		sockJsSocket.sentBytes = 0L;
+		Cost nativeCost = send(nativeSession, stompFrame);
+		Cost sockJsCost = send(sockJsSession, stompFrame);
+
+		long nativeWire = nativeSession.sentBytes / MESSAGES;
+		long sockJsWire = sockJsSocket.sentBytes / MESSAGES;
+		System.out.printf("messages=%d native: %dns/msg %d B alloc/msg %d B wire/msg | sockjs: %dns/msg %d B alloc/msg %d B wire/msg%n",
+				MESSAGES, nativeCost.nanosPerMessage(), nativeCost.allocatedPerMessage(), nativeWire,
+				sockJsCost.nanosPerMessage(), sockJsCost.allocatedPerMessage(), sockJsWire);
+		// a["..."] 배열 감싸기와 STOMP 개행/NULL/따옴표 escape만큼 프레임이 커진다.
+		assertTrue(sockJsWire > nativeWire, "sockjs=" + sockJsWire + " native=" + nativeWire);
+		assertTrue(sockJsCost.allocatedPerMessage() > nativeCost.allocatedPerMessage());
+		assertTrue(sockJsCost.nanosPerMessage() > nativeCost.nanosPerMessage());
+	}
+
+	/**
+	 * StompSubProtocolHandler처럼 인코딩된 STOMP 프레임을 TextMessage로 세션에 보낸다.
+	 */
+	private static Cost send(WebSocketSession session, byte[] stompFrame) throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < MESSAGES; i++) {
+			session.sendMessage(new TextMessage(stompFrame));
+		}
+		long elapsed = System.nanoTime() - startedAt;
+		long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		return new Cost(elapsed / MESSAGES, allocated / MESSAGES);
+	}
+
+	private static byte[] stompMessageFrame() {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		accessor.setDestination("/sub/chat/room/room-1");
+		accessor.setSubscriptionId("sub-0");
+		accessor.setMessageId("message-1");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		byte[] payload = ("{\"type\":\"TALK\",\"roomId\":\"room-1\",\"sender\":\"viewer-42\","
+				+ "\"msgId\":\"0b6f5f3e-2c1a-4d7e-9a55-7c3f1e2d4b6a\",\"message\":\"안녕하세요 \\\"hi\\\"\"}")
+				.getBytes(StandardCharsets.UTF_8);
+		return new StompEncoder().encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+	}
+
+	private record Cost(long nanosPerMessage, long allocatedPerMessage) {
+	}
+
+	/**
+	 * 실제 소켓 대신 보낸 바이트 수만 세는 WebSocket 세션.
+	 */
+	private static final class SocketStub implements WebSocketSession {
+		private final String id;
+		private long sentBytes;
+
+		private SocketStub(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public String getId() {
+			return id;
+		}
+
+		@Override
+		public URI getUri() {
+			return null;
+		}
+
+		@Override
+		public HttpHeaders getHandshakeHeaders() {
+			return new HttpHeaders();
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return Map.of();
+		}
+
+		@Override
+		public Principal getPrincipal() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public String getAcceptedProtocol() {
+			return "v12.stomp";
+		}
+
+		@Override
+		public void setTextMessageSizeLimit(int messageSizeLimit) {
+		}
+
+		@Override
+		public int getTextMessageSizeLimit() {
+			return 65_536;
+		}
+
+		@Override
+		public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+		}
+
+		@Override
+		public int getBinaryMessageSizeLimit() {
+			return 65_536;
+		}
+
+		@Override
+		public List<WebSocketExtension> getExtensions() {
+			return List.of();
+		}
+
+		@Override
+		public void sendMessage(WebSocketMessage<?> message) {
+			sentBytes += message.getPayloadLength();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void close(CloseStatus status) {
+		}
+	}
+}
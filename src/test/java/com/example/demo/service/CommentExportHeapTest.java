@@ -0,0 +1,112 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Comment;
+import com.example.demo.support.HeapMeter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 댓글 100만 건 NDJSON export 중 힙 사용량이 평평한지 확인한다.
+ * - Mongo 대신 mongoTemplate.stream이 댓글을 하나씩 만들어 내는 lazy Stream을 돌려준다(cursor stand-in).
+ * - 응답 스트림은 바이트 수만 세고 버린다. 10만 건마다(flush 100번마다) GC 후 힙 사용량을 기록한다.
+ * ./gradlew perfTest --tests '*CommentExportHeapTest'
+ */
+@Tag("perf")
+class CommentExportHeapTest {
+
+	private static final long COMMENTS = 1_000_000L;
+	private static final int FLUSH_EVERY = 1_000;
+	private static final int SAMPLE_EVERY_FLUSHES = 100;
+	// 직렬화 버퍼/GC 오차 허용치. 100만 건을 모으면 수백 MB가 필요하다.
+	private static final long MAX_HEAP_GROWTH_BYTES = 16L * 1024 * 1024;
+
+	private CommentService commentService;
+
+	@BeforeEach
+	void setUp() {
+		commentService = new CommentService();
+		commentService.jsonMapper = JsonMapper.builder().build();
+		commentService.mongoTemplate = mock(MongoTemplate.class);
+		ReflectionTestUtils.setField(commentService, "exportFlushEvery", FLUSH_EVERY);
+		ReflectionTestUtils.setField(commentService, "exportBatchSize", 500);
+		when(commentService.mongoTemplate.stream(any(Query.class), eq(Comment.class)))
+				.thenAnswer(invocation -> LongStream.range(0, COMMENTS).mapToObj(CommentExportHeapTest::comment));
+	}
+
+	@Test
+	void exportingAMillionCommentsKeepsHeapFlat() throws IOException {
+		HeapSamplingOutputStream out = new HeapSamplingOutputStream();
+		long baseline = HeapMeter.usedAfterGc();
+
+		long written = commentService.exportRoomComments("room-1", null, null, out);
+
+		List<Long> samples = out.samples;
+		long peak = samples.stream().mapToLong(Long::longValue).max().orElse(baseline);
+		System.out.printf("comments=%d bytes=%d baseline=%dKB samples(KB)=%s peak growth=%dKB%n",
+				written, out.bytes, baseline / 1024,
+				samples.stream().map(sample -> sample / 1024).toList(), (peak - baseline) / 1024);
+		assertEquals(COMMENTS, written);
+		assertEquals(COMMENTS / (FLUSH_EVERY * SAMPLE_EVERY_FLUSHES), samples.size());
+		// 쓴 바이트는 계속 늘지만 힙은 처음과 같은 수준을 유지한다.
+		assertTrue(peak - baseline < MAX_HEAP_GROWTH_BYTES,
+				"baseline=" + baseline + " peak=" + peak + " samples=" + samples);
+		assertTrue(out.bytes > MAX_HEAP_GROWTH_BYTES * 4, "bytes=" + out.bytes);
+	}
+
+	private static Comment comment(long seq) {
+		return new Comment(
+				String.format("%024x", seq),
+				"user" + (seq % 10_000),
+				"댓글 본문 " + seq + " - 방송 재밌네요",
+				"room-1",
+				Date.from(Instant.ofEpochSecond(1_700_000_000L + seq))
+		);
+	}
+
+	/**
+	 * 바이트 수만 세고 버리는 응답 스트림. flush SAMPLE_EVERY_FLUSHES번마다 힙 사용량을 기록한다.
+	 */
+	private static final class HeapSamplingOutputStream extends OutputStream {
+		private final List<Long> samples = new ArrayList<>();
+		private long bytes;
+		private long flushes;
+
+		@Override
+		public void write(int b) {
+			bytes++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			bytes += length;
+		}
+
+		@Override
+		public void flush() {
+			// 마지막 flush(전체 완료 후)는 배치 경계와 겹치므로 세지 않는다.
+			if (++flushes % SAMPLE_EVERY_FLUSHES == 0 && flushes <= COMMENTS / FLUSH_EVERY) {
+				samples.add(HeapMeter.usedAfterGc());
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Comment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommentServiceExportTest {
+
+	private CommentService commentService;
+
+	@BeforeEach
+	void setUp() {
+		commentService = new CommentService();
+		commentService.jsonMapper = JsonMapper.builder().build();
+		ReflectionTestUtils.setField(commentService, "exportFlushEvery", 2);
+	}
+
+	@Test
+	void writesOneJsonLinePerComment() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		long written = commentService.writeNdjson(comments(3).iterator(), out);
+
+		assertEquals(3, written);
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(3, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			assertTrue(lines[i].startsWith("{") && lines[i].endsWith("}"), lines[i]);
+			assertTrue(lines[i].contains("\"id\":\"c" + i + "\""), lines[i]);
+		}
+	}
+
+	@Test
+	void flushesEveryConfiguredCountAndAtEnd() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+
+		commentService.writeNdjson(comments(5).iterator(), out);
+
+		// 2건, 4건째에 한 번씩, 마지막에 한 번
+		assertEquals(3, out.flushes);
+	}
+
+	@Test
+	void propagatesWriteFailure() {
+		OutputStream closed = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("client gone");
+			}
+		};
+
+		IOException exception = assertThrows(IOException.class,
+				() -> commentService.writeNdjson(comments(2).iterator(), closed));
+		assertEquals("client gone", exception.getMessage());
+	}
+
+	private static List<Comment> comments(int count) {
+		List<Comment> comments = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			comments.add(new Comment("c" + i, "user" + i, "hello " + i, "room1", new Date(1_000L * i)));
+		}
+		return comments;
+	}
+
+	private static class CountingOutputStream extends ByteArrayOutputStream {
+		private int flushes;
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+	}
+}
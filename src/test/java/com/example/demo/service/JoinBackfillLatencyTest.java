@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * join-to-first-message 지연: 입장 backfill(RecentMessageBuffer) vs backfill 없이 다음 live 메시지를 기다리는 경우.
+ * - backfill: ChatResumeService.backfill을 입장 처리 시작부터 세션 전송 호출까지 실제로 잰다(stream 조회 없음).
+ * - 대기: room 메시지가 초당 rate건 포아송 도착이라고 보고, 입장 시점부터 다음 메시지까지의 시간을 고정 seed로 뽑는다.
+ * ./gradlew perfTest --tests '*JoinBackfillLatencyTest'
+ */
+@Tag("perf")
+class JoinBackfillLatencyTest {
+
+	private static final int ROOMS = 1_000;
+	private static final int MESSAGES_PER_ROOM = 300;
+	private static final int BACKFILL_SIZE = 50;
+	private static final int JOINS = 200_000;
+	private static final double[] ROOM_RATES_PER_SECOND = {0.1, 1.0, 10.0};
+
+	private StringRedisTemplate streamTemplate;
+	private ChatResumeService resumeService;
+	private final long[] sentAt = new long[1];
+	private final int[] sentCount = new int[1];
+
+	@BeforeEach
+	void setUp() {
+		RecentMessageBuffer buffer = new RecentMessageBuffer(200, 5_000);
+		for (int room = 0; room < ROOMS; room++) {
+			for (int seq = 0; seq < MESSAGES_PER_ROOM; seq++) {
+				buffer.append(ChatMessage.builder()
+						.type(ChatMessage.MessageType.TALK)
+						.roomId(roomId(room))
+						.sender("user-" + seq)
+						.msgId(room + "-" + seq)
+						.message("message " + seq)
+						.build());
+			}
+		}
+		streamTemplate = mock(StringRedisTemplate.class);
+		// 입장 20만 건의 호출 기록이 측정 중 heap에 쌓이지 않도록 stub 전용 mock을 쓴다.
+		WebSocketControlService controlService = mock(WebSocketControlService.class, withSettings().stubOnly());
+		doAnswer(invocation -> {
+			sentAt[0] = System.nanoTime();
+			sentCount[0] = ((Map<?, ?>) invocation.getArgument(2)).get("count") instanceof Integer count ? count : -1;
+			return null;
+		}).when(controlService).sendToSession(anyString(), eq("/sub/chat/replay"), any());
+		resumeService = new ChatResumeService(buffer, streamTemplate, controlService);
+		ReflectionTestUtils.setField(resumeService, "backfillSize", BACKFILL_SIZE);
+	}
+
+	@Test
+	void backfillDeliversTheFirstFrameBeforeTheNextLiveMessage() {
+		// JIT 워밍업 뒤 두 번째 실행만 측정한다.
+		measureBackfill();
+		long[] backfillNanos = measureBackfill();
+		Arrays.sort(backfillNanos);
+		double p50 = backfillNanos[JOINS / 2] / 1_000.0;
+		double p99 = backfillNanos[JOINS * 99 / 100] / 1_000.0;
+		System.out.printf("backfill(buffer, %d msgs): p50=%.1fus p99=%.1fus max=%.1fus%n",
+				BACKFILL_SIZE, p50, p99, backfillNanos[JOINS - 1] / 1_000.0);
+
+		double fastestRoomMedianWaitMicros = Double.MAX_VALUE;
+		for (double rate : ROOM_RATES_PER_SECOND) {
+			double[] waitMicros = nextMessageWaits(rate, new SplittableRandom(5));
+			Arrays.sort(waitMicros);
+			double median = waitMicros[JOINS / 2];
+			System.out.printf("no backfill, room %.1f msg/s: first message p50=%.0fms p99=%.0fms%n",
+					rate, median / 1_000.0, waitMicros[JOINS * 99 / 100] / 1_000.0);
+			fastestRoomMedianWaitMicros = Math.min(fastestRoomMedianWaitMicros, median);
+		}
+
+		assertEquals(BACKFILL_SIZE, sentCount[0]);
+		// 버퍼가 모든 입장을 처리했으므로 Redis stream은 한 번도 읽지 않는다.
+		verifyNoInteractions(streamTemplate);
+		// 가장 활발한 room(초당 10건)의 다음 메시지 대기 중앙값보다 backfill p99가 훨씬 짧다.
+		assertTrue(p99 * 100 < fastestRoomMedianWaitMicros,
+				"backfill p99=" + p99 + "us next message p50=" + fastestRoomMedianWaitMicros + "us");
+	}
+
+	private long[] measureBackfill() {
+		long[] latencies = new long[JOINS];
+		for (int join = 0; join < JOINS; join++) {
+			long enterStartedAt = System.nanoTime();
+			resumeService.backfill("session-" + join, roomId(join % ROOMS), enterStartedAt);
+			latencies[join] = sentAt[0] - enterStartedAt;
+		}
+		return latencies;
+	}
+
+	/**
+	 * 지수 분포 도착 간격: 입장 시점부터 다음 메시지까지의 대기도 같은 분포를 따른다(무기억성).
+	 */
+	private static double[] nextMessageWaits(double ratePerSecond, SplittableRandom random) {
+		double[] waits = new double[JOINS];
+		for (int join = 0; join < JOINS; join++) {
+			waits[join] = -Math.log(1.0 - random.nextDouble()) / ratePerSecond * 1_000_000.0;
+		}
+		return waits;
+	}
+
+	private static String roomId(int room) {
+		return "room-" + room;
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecentMessageBufferTest {
+
+	@Test
+	void keepsOnlyTheNewestMessagesPerRoom() {
+		RecentMessageBuffer buffer = new RecentMessageBuffer(3, 10);
+		for (int i = 1; i <= 5; i++) {
+			buffer.append(message("room-1", i));
+		}
+
+		assertEquals(List.of("m3", "m4", "m5"), msgIds(buffer.latest("room-1", 3)));
+		assertEquals(List.of("m4", "m5"), msgIds(buffer.latest("room-1", 2)));
+		assertEquals(List.of("m5"), msgIds(buffer.messagesAfter("room-1", "m4")));
+		// 이미 밀려난 msgId는 버퍼로 이어 붙일 수 없다.
+		assertNull(buffer.messagesAfter("room-1", "m1"));
+	}
+
+	@Test
+	void unseededRingShorterThanTheLimitFallsBackToTheStream() {
+		RecentMessageBuffer buffer = new RecentMessageBuffer(10, 10);
+		buffer.append(message("room-1", 3));
+		buffer.append(message("room-1", 4));
+
+		assertNull(buffer.latest("room-1", 4));
+
+		// stream 최신 구간(m1~m3)에서 ring의 가장 오래된 m3보다 앞선 메시지만 앞에 붙인다.
+		buffer.seed("room-1", List.of(message("room-1", 1), message("room-1", 2), message("room-1", 3)));
+
+		assertEquals(List.of("m1", "m2", "m3", "m4"), msgIds(buffer.latest("room-1", 4)));
+		assertEquals(1, buffer.stats().seededRooms());
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedRoomAndReusesItsRing() {
+		RecentMessageBuffer buffer = new RecentMessageBuffer(4, 2);
+		buffer.append(message("room-1", 1));
+		buffer.append(message("room-2", 1));
+		// room-1을 조회해 room-2가 가장 오래 쓰이지 않은 room이 된다.
+		buffer.messagesAfter("room-1", "m1");
+		buffer.append(message("room-3", 1));
+
+		RecentMessageBuffer.BufferStats stats = buffer.stats();
+		assertEquals(2, stats.rooms());
+		assertEquals(1, stats.evictedRooms());
+		assertEquals(0, stats.pooledRings());
+		assertNull(buffer.messagesAfter("room-2", "m1"));
+		assertEquals(List.of(), msgIds(buffer.messagesAfter("room-1", "m1")));
+	}
+
+	private static ChatMessage message(String roomId, int seq) {
+		return ChatMessage.builder()
+				.type(ChatMessage.MessageType.TALK)
+				.roomId(roomId)
+				.sender("user-" + seq)
+				.msgId("m" + seq)
+				.message("hello " + seq)
+				.build();
+	}
+
+	private static List<String> msgIds(List<ChatMessage> messages) {
+		List<String> ids = new ArrayList<>();
+		for (ChatMessage message : messages) {
+			ids.add(message.getMsgId());
+		}
+		return ids;
+	}
+}
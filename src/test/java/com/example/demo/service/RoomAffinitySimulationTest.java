@@ -0,0 +1,176 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * room affinity의 중복 Pub/Sub 전달/노드 CPU 감소 시뮬레이션(고정 seed).
+ * - 노드 8개, room 2,000개(Zipf 인기도), 시청자 100,000명이 nginx least_conn으로 노드에 배정된다.
+ * - affinity: 배정된 노드의 RoomAffinityService가 REDIRECT 힌트를 주면 시청자 90%가 선호 노드로 옮겨 붙는다.
+ * - room 메시지 1건은 그 room 시청자가 있는 노드마다 Redis에서 한 번씩 전달된다(= 노드별 중복 구독/역직렬화).
+ * - 노드 CPU는 (전달 수 x 역직렬화 비용 + 로컬 시청자 전송 수 x 전송 비용)으로 근사한다.
+ */
+class RoomAffinitySimulationTest {
+
+	private static final int NODES = 8;
+	private static final int ROOMS = 2_000;
+	private static final int VIEWERS = 100_000;
+	private static final double REDIRECT_COMPLIANCE = 0.9;
+	// 역직렬화+broker 진입 1건 대비 세션 1개 전송 비용(상대값)
+	private static final double DELIVERY_COST = 20.0;
+	private static final double SEND_COST = 1.0;
+
+	@Test
+	void affinityCutsDuplicatePubSubDeliveryAndNodeCpu() {
+		List<String> nodes = new ArrayList<>();
+		for (int i = 1; i <= NODES; i++) {
+			nodes.add("node-" + i);
+		}
+		List<RoomAffinityService> affinity = new ArrayList<>();
+		for (String node : nodes) {
+			affinity.add(newAffinity(node, nodes));
+		}
+		int[] roomOfViewer = zipfViewers(new SplittableRandom(11));
+
+		Placement leastConn = place(roomOfViewer, null, nodes);
+		Placement withAffinity = place(roomOfViewer, affinity, nodes);
+
+		Load before = leastConn.load();
+		Load after = withAffinity.load();
+		System.out.printf("least_conn: deliveries/s=%d node cpu avg=%.0f max=%.0f viewers/node max=%d%n",
+				before.deliveriesPerSecond(), before.avgCpu(), before.maxCpu(), before.maxViewers());
+		System.out.printf("affinity:   deliveries/s=%d node cpu avg=%.0f max=%.0f viewers/node max=%d redirects=%d%n",
+				after.deliveriesPerSecond(), after.avgCpu(), after.maxCpu(), after.maxViewers(), withAffinity.redirects);
+
+		assertEquals(VIEWERS, withAffinity.totalViewers());
+		// 시청자 대부분이 room의 선호 노드에 모이므로 room당 구독 노드 수가 크게 준다.
+		assertTrue(after.deliveriesPerSecond() * 2 < before.deliveriesPerSecond(),
+				"before=" + before.deliveriesPerSecond() + " after=" + after.deliveriesPerSecond());
+		assertTrue(after.avgCpu() < before.avgCpu());
+	}
+
+	private static RoomAffinityService newAffinity(String nodeId, List<String> nodes) {
+		ClusterNodeRegistry registry = mock(ClusterNodeRegistry.class);
+		when(registry.nodeId()).thenReturn(nodeId);
+		when(registry.liveNodeIds()).thenReturn(List.copyOf(nodes));
+		when(registry.publicUrlOf(anyString())).thenAnswer(invocation -> "wss://" + invocation.getArgument(0) + "/ws/chat-native");
+		return new RoomAffinityService(registry, true, 1, 128);
+	}
+
+	/**
+	 * 시청자별 room 번호. room k의 인기도는 1/(k+1).
+	 */
+	private static int[] zipfViewers(SplittableRandom random) {
+		double[] cumulative = new double[ROOMS];
+		double total = 0.0;
+		for (int room = 0; room < ROOMS; room++) {
+			total += 1.0 / (room + 1);
+			cumulative[room] = total;
+		}
+		int[] roomOfViewer = new int[VIEWERS];
+		for (int viewer = 0; viewer < VIEWERS; viewer++) {
+			double point = random.nextDouble() * total;
+			int low = 0;
+			int high = ROOMS - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (cumulative[middle] < point) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			roomOfViewer[viewer] = low;
+		}
+		return roomOfViewer;
+	}
+
+	private static Placement place(int[] roomOfViewer, List<RoomAffinityService> affinity, List<String> nodes) {
+		SplittableRandom random = new SplittableRandom(13);
+		Placement placement = new Placement();
+		for (int room : roomOfViewer) {
+			int node = placement.leastConnected();
+			if (affinity != null) {
+				var redirect = affinity.get(node).redirectFor(roomId(room));
+				if (redirect.isPresent() && random.nextDouble() < REDIRECT_COMPLIANCE) {
+					node = nodes.indexOf(redirect.get().nodeId());
+					placement.redirects++;
+				}
+			}
+			placement.viewers[node][room]++;
+			placement.connections[node]++;
+		}
+		return placement;
+	}
+
+	private static String roomId(int room) {
+		return "room-" + room;
+	}
+
+	private static final class Placement {
+		private final int[][] viewers = new int[NODES][ROOMS];
+		private final int[] connections = new int[NODES];
+		private int redirects;
+
+		private int leastConnected() {
+			int best = 0;
+			for (int node = 1; node < NODES; node++) {
+				if (connections[node] < connections[best]) {
+					best = node;
+				}
+			}
+			return best;
+		}
+
+		private int totalViewers() {
+			int total = 0;
+			for (int count : connections) {
+				total += count;
+			}
+			return total;
+		}
+
+		/**
+		 * room 메시지 rate = max(1, 전체 시청자/100)건/s.
+		 */
+		private Load load() {
+			int[] roomViewers = new int[ROOMS];
+			for (int node = 0; node < NODES; node++) {
+				for (int room = 0; room < ROOMS; room++) {
+					roomViewers[room] += viewers[node][room];
+				}
+			}
+			long deliveries = 0L;
+			double totalCpu = 0.0;
+			double maxCpu = 0.0;
+			int maxViewers = 0;
+			for (int node = 0; node < NODES; node++) {
+				double cpu = 0.0;
+				for (int room = 0; room < ROOMS; room++) {
+					if (viewers[node][room] == 0) {
+						continue;
+					}
+					int messagesPerSecond = Math.max(1, roomViewers[room] / 100);
+					deliveries += messagesPerSecond;
+					cpu += messagesPerSecond * (DELIVERY_COST + viewers[node][room] * SEND_COST);
+				}
+				totalCpu += cpu;
+				maxCpu = Math.max(maxCpu, cpu);
+				maxViewers = Math.max(maxViewers, connections[node]);
+			}
+			return new Load(deliveries, totalCpu / NODES, maxCpu, maxViewers);
+		}
+	}
+
+	private record Load(long deliveriesPerSecond, double avgCpu, double maxCpu, int maxViewers) {
+	}
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionDeadlineIndexTest {
+
+	private static final long GRANULARITY_MS = 1_000L;
+
+	@Test
+	void neverPollsBeforeTheDeadline() {
+		SessionDeadlineIndex index = new SessionDeadlineIndex(GRANULARITY_MS);
+		index.schedule(1, 10_001L);
+
+		// 10_001ms는 버킷 11(11_000ms)로 올림되므로 10_999ms까지는 나오지 않는다.
+		assertEquals(0, index.pollDue(10_999L, 10, handle -> {
+		}));
+		List<Integer> polled = new ArrayList<>();
+		assertEquals(1, index.pollDue(11_000L, 10, polled::add));
+		assertEquals(List.of(1), polled);
+		assertEquals(0, index.scheduledCount());
+		assertEquals(0, index.bucketCount());
+	}
+
+	@Test
+	void leavesHandlesOverTheLimitForTheNextPoll() {
+		SessionDeadlineIndex index = new SessionDeadlineIndex(GRANULARITY_MS);
+		for (int handle = 0; handle < 10; handle++) {
+			index.schedule(handle, 5_000L);
+		}
+
+		assertEquals(4, index.pollDue(5_000L, 4, handle -> {
+		}));
+		assertEquals(6, index.scheduledCount());
+		assertEquals(6, index.pollDue(5_000L, 100, handle -> {
+		}));
+		assertEquals(0, index.scheduledCount());
+	}
+
+	@Test
+	void cancelAndRescheduleMoveTheHandle() {
+		SessionDeadlineIndex index = new SessionDeadlineIndex(GRANULARITY_MS);
+		index.schedule(7, 1_000L);
+		index.schedule(8, 1_000L);
+		index.cancel(8);
+		// 다시 예약하면 이전 버킷에서 빠진다.
+		index.schedule(7, 60_000L);
+
+		assertEquals(0, index.pollDue(59_000L, 10, handle -> {
+		}));
+		List<Integer> polled = new ArrayList<>();
+		index.pollDue(60_000L, 10, polled::add);
+		assertEquals(List.of(7), polled);
+	}
+
+	@Test
+	void tickTouchesOnlyDueHandles() {
+		SessionDeadlineIndex index = new SessionDeadlineIndex(GRANULARITY_MS);
+		int sessions = 100_000;
+		long ttlWindowMs = 15 * 60_000L;
+		for (int handle = 0; handle < sessions; handle++) {
+			index.schedule(handle, (long) handle * ttlWindowMs / sessions);
+		}
+
+		int[] visited = new int[1];
+		int polled = index.pollDue(5_000L, Integer.MAX_VALUE, handle -> {
+			assertTrue((long) handle * ttlWindowMs / sessions <= 5_000L);
+			visited[0]++;
+		});
+
+		// 0~5초 구간에 마감되는 세션만 꺼낸다(전체 100k의 약 0.56%).
+		assertEquals(visited[0], polled);
+		assertTrue(polled <= 600, "polled=" + polled);
+		assertEquals(sessions - polled, index.scheduledCount());
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.support.HeapMeter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 세션/room 추적 구조의 힙 footprint 비교(10k / 100k / 500k 세션).
+ * - 이전 구조: session -> room Map, room -> newKeySet(sessionId), registry의 sessionId -> meta Map
+ * - 현재 구조: SessionHandleTable + ChatRoomSessionTracker(int handle/room slot) + handle 인덱스 meta 배열
+ * sessionId/roomId 문자열과 meta 객체는 양쪽이 똑같이 들고 있으므로 측정 전에 만들어 두고 구조 비용만 잰다.
+ * ./gradlew perfTest --tests '*SessionFootprintTest'
+ */
+@Tag("perf")
+class SessionFootprintTest {
+
+	private static final int SESSIONS_PER_ROOM = 50;
+	private static final Object META = new Object();
+
+	@ParameterizedTest
+	@ValueSource(ints = {10_000, 100_000, 500_000})
+	void compactTrackingUsesLessHeapThanStringMaps(int sessions) {
+		String[] sessionIds = new String[sessions];
+		String[] roomIds = new String[sessions / SESSIONS_PER_ROOM];
+		for (int i = 0; i < sessions; i++) {
+			sessionIds[i] = UUID.randomUUID().toString();
+		}
+		for (int i = 0; i < roomIds.length; i++) {
+			roomIds[i] = "room-" + i;
+		}
+
+		HeapMeter.Measured<Object> legacy = HeapMeter.retained(() -> legacyTracking(sessionIds, roomIds));
+		HeapMeter.Measured<Object> compact = HeapMeter.retained(() -> compactTracking(sessionIds, roomIds));
+
+		System.out.printf("sessions=%d rooms=%d legacy=%d bytes (%.1f B/session) compact=%d bytes (%.1f B/session)%n",
+				sessions, roomIds.length,
+				legacy.bytes(), (double) legacy.bytes() / sessions,
+				compact.bytes(), (double) compact.bytes() / sessions);
+		assertTrue(compact.bytes() < legacy.bytes(),
+				"compact=" + compact.bytes() + " legacy=" + legacy.bytes());
+	}
+
+	private static Object legacyTracking(String[] sessionIds, String[] roomIds) {
+		ConcurrentHashMap<String, String> roomBySession = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String, Set<String>> sessionsByRoom = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String, Object> metaBySession = new ConcurrentHashMap<>();
+		for (int i = 0; i < sessionIds.length; i++) {
+			String roomId = roomIds[i % roomIds.length];
+			metaBySession.put(sessionIds[i], META);
+			roomBySession.put(sessionIds[i], roomId);
+			sessionsByRoom.computeIfAbsent(roomId, ignored -> ConcurrentHashMap.newKeySet()).add(sessionIds[i]);
+		}
+		return new Object[]{roomBySession, sessionsByRoom, metaBySession};
+	}
+
+	private static Object compactTracking(String[] sessionIds, String[] roomIds) {
+		SessionHandleTable handles = new SessionHandleTable();
+		ChatRoomSessionTracker tracker = new ChatRoomSessionTracker(handles);
+		// WebSocketSessionRegistry.sessionsByHandle과 같은 handle 인덱스 배열
+		Object[] metaByHandle = new Object[1024];
+		for (int i = 0; i < sessionIds.length; i++) {
+			int handle = handles.acquire(sessionIds[i]);
+			if (handle >= metaByHandle.length) {
+				metaByHandle = Arrays.copyOf(metaByHandle, metaByHandle.length << 1);
+			}
+			metaByHandle[handle] = META;
+			tracker.bindSessionToRoom(sessionIds[i], roomIds[i % roomIds.length]);
+		}
+		assertEquals(sessionIds.length, handles.size());
+		assertEquals(roomIds.length, tracker.activeRoomCount());
+		return new Object[]{handles, tracker, metaByHandle};
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionHandleTableTest {
+
+	@Test
+	void assignsDenseHandlesAndReusesReleasedOnes() {
+		SessionHandleTable table = new SessionHandleTable();
+
+		int first = table.acquire("s1");
+		int second = table.acquire("s2");
+
+		assertEquals(0, first);
+		assertEquals(1, second);
+		assertEquals(first, table.acquire("s1"));
+		assertEquals(first, table.release("s1"));
+		assertEquals(SessionHandleTable.NO_HANDLE, table.handleOf("s1"));
+		assertNull(table.sessionIdOf(first));
+		// 반납된 handle을 먼저 재사용하므로 배열 상한이 늘지 않는다.
+		assertEquals(first, table.acquire("s3"));
+		assertEquals(2, table.highWaterMark());
+	}
+
+	@Test
+	void keepsLookupsConsistentThroughGrowthAndChurn() {
+		SessionHandleTable table = new SessionHandleTable();
+		int sessions = 50_000;
+		for (int i = 0; i < sessions; i++) {
+			table.acquire("session-" + i);
+		}
+		for (int i = 0; i < sessions; i += 2) {
+			table.release("session-" + i);
+		}
+
+		Set<Integer> live = new HashSet<>();
+		for (int i = 0; i < sessions; i++) {
+			int handle = table.handleOf("session-" + i);
+			if (i % 2 == 0) {
+				assertEquals(SessionHandleTable.NO_HANDLE, handle);
+			} else {
+				assertEquals("session-" + i, table.sessionIdOf(handle));
+				assertTrue(live.add(handle));
+			}
+		}
+		assertEquals(sessions / 2, table.size());
+	}
+
+	@Test
+	void footprintStaysWithinFixedBytesPerSession() {
+		SessionHandleTable table = new SessionHandleTable();
+		int sessions = 100_000;
+		for (int i = 0; i < sessions; i++) {
+			table.acquire("session-" + i);
+		}
+
+		// key/value 표(load factor 1/2 이하, 2의 거듭제곱) + handle -> sessionId 배열 = 세션당 최대 약 32B.
+		// HashMap<String, Integer>는 Node + Integer만으로 세션당 48B를 넘는다.
+		long perSession = table.footprintBytes() / sessions;
+		assertTrue(perSession <= 32, "bytes/session=" + perSession);
+	}
+
+	@Test
+	void intHashSetSurvivesBackwardShiftRemovals() {
+		IntHashSet set = new IntHashSet();
+		for (int value = 0; value < 10_000; value++) {
+			assertTrue(set.add(value));
+		}
+		for (int value = 0; value < 10_000; value += 3) {
+			assertTrue(set.remove(value));
+		}
+
+		for (int value = 0; value < 10_000; value++) {
+			assertEquals(value % 3 != 0, set.contains(value), "value=" + value);
+		}
+		assertFalse(set.add(1));
+		assertEquals(10_000 - 3_334, set.size());
+	}
+}
@@ -0,0 +1,128 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TTL tick 1회 비용(100k 세션): 마감 인덱스 poll vs 이전 방식(전체 스냅샷 + 전수 비교).
+ * - 세션 100k개를 [12분, 15분] TTL로 흩어 놓고 5초 tick을 15분 동안 돌린다.
+ * - 만료된 세션은 같은 자리(handle)에 새 TTL로 다시 등록해 세션 수를 일정하게 유지한다(재연결).
+ * ./gradlew perfTest --tests '*SessionTickCostTest'
+ */
+@Tag("perf")
+class SessionTickCostTest {
+
+	private static final int SESSIONS = 100_000;
+	private static final long TICK_MS = 5_000L;
+	private static final long TTL_MS = 15 * 60_000L;
+	private static final long TTL_JITTER_MS = 3 * 60_000L;
+	private static final long NOTICE_BEFORE_MS = 30_000L;
+
+	@Test
+	void indexedTickCostFollowsDueSessionsNotTotalSessions() {
+		// JIT 워밍업 뒤 두 번째 실행만 측정한다.
+		simulate(false);
+		simulate(true);
+		TickCost indexed = simulate(false);
+		TickCost scanned = simulate(true);
+
+		System.out.printf("sessions=%d ticks=%d indexed avg=%dus max=%dus | full scan avg=%dus max=%dus | due/tick avg=%d%n",
+				SESSIONS, indexed.ticks(), indexed.avgMicros(), indexed.maxMicros(),
+				scanned.avgMicros(), scanned.maxMicros(), indexed.dueTotal() / indexed.ticks());
+		assertEquals(scanned.dueTotal(), indexed.dueTotal());
+		assertTrue(indexed.avgMicros() < scanned.avgMicros(),
+				"indexed=" + indexed.avgMicros() + "us scanned=" + scanned.avgMicros() + "us");
+	}
+
+	private static TickCost simulate(boolean fullScan) {
+		SplittableRandom random = new SplittableRandom(42);
+		long[] expiresAt = new long[SESSIONS];
+		boolean[] noticed = new boolean[SESSIONS];
+		SessionDeadlineIndex notices = new SessionDeadlineIndex(1_000L);
+		SessionDeadlineIndex expiries = new SessionDeadlineIndex(1_000L);
+		for (int handle = 0; handle < SESSIONS; handle++) {
+			expiresAt[handle] = TTL_MS - random.nextLong(TTL_JITTER_MS + 1);
+			notices.schedule(handle, expiresAt[handle] - NOTICE_BEFORE_MS);
+			expiries.schedule(handle, expiresAt[handle]);
+		}
+
+		long totalNanos = 0L;
+		long maxNanos = 0L;
+		long dueTotal = 0L;
+		int ticks = 0;
+		for (long now = TICK_MS; now <= TTL_MS; now += TICK_MS) {
+			long startedAt = System.nanoTime();
+			int due = fullScan
+					? scanTick(now, expiresAt, noticed)
+					: indexedTick(now, notices, expiries, noticed);
+			long elapsed = System.nanoTime() - startedAt;
+			totalNanos += elapsed;
+			maxNanos = Math.max(maxNanos, elapsed);
+			dueTotal += due;
+			ticks++;
+			renewExpired(now, random, expiresAt, noticed, notices, expiries);
+		}
+		return new TickCost(ticks, totalNanos / ticks / 1_000L, maxNanos / 1_000L, dueTotal);
+	}
+
+	private static int indexedTick(long now, SessionDeadlineIndex notices, SessionDeadlineIndex expiries, boolean[] noticed) {
+		int[] due = new int[1];
+		notices.pollDue(now, Integer.MAX_VALUE, handle -> {
+			noticed[handle] = true;
+			due[0]++;
+		});
+		expiries.pollDue(now, Integer.MAX_VALUE, handle -> due[0]++);
+		return due[0];
+	}
+
+	/**
+	 * 이전 방식: 매 tick 전체 세션 스냅샷을 만들고 모든 세션의 예고/만료 시각을 비교한다.
+	 * 인덱스 쪽과 같은 버킷 올림 규칙을 써서 꺼내는 세션 수를 맞춘다.
+	 */
+	private static int scanTick(long now, long[] expiresAt, boolean[] noticed) {
+		List<long[]> snapshot = new ArrayList<>(expiresAt.length);
+		for (int handle = 0; handle < expiresAt.length; handle++) {
+			snapshot.add(new long[]{handle, expiresAt[handle]});
+		}
+		int due = 0;
+		long dueBucket = Math.floorDiv(now, 1_000L);
+		for (long[] session : snapshot) {
+			int handle = (int) session[0];
+			if (!noticed[handle] && bucketOf(session[1] - NOTICE_BEFORE_MS) <= dueBucket) {
+				noticed[handle] = true;
+				due++;
+			}
+			if (session[1] != Long.MAX_VALUE && bucketOf(session[1]) <= dueBucket) {
+				expiresAt[handle] = Long.MAX_VALUE;
+				due++;
+			}
+		}
+		return due;
+	}
+
+	private static void renewExpired(long now, SplittableRandom random, long[] expiresAt, boolean[] noticed,
+									 SessionDeadlineIndex notices, SessionDeadlineIndex expiries) {
+		for (int handle = 0; handle < expiresAt.length; handle++) {
+			if (expiresAt[handle] == Long.MAX_VALUE || bucketOf(expiresAt[handle]) <= Math.floorDiv(now, 1_000L)) {
+				expiresAt[handle] = now + TTL_MS - random.nextLong(TTL_JITTER_MS + 1);
+				noticed[handle] = false;
+				notices.schedule(handle, expiresAt[handle] - NOTICE_BEFORE_MS);
+				expiries.schedule(handle, expiresAt[handle]);
+			}
+		}
+	}
+
+	private static long bucketOf(long deadline) {
+		return Math.floorDiv(deadline + 999L, 1_000L);
+	}
+
+	private record TickCost(int ticks, long avgMicros, long maxMicros, long dueTotal) {
+	}
+}
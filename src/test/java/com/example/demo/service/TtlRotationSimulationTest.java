@@ -0,0 +1,148 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 배포 직후 한꺼번에 붙은 세션들의 TTL 재연결 곡선 시뮬레이션(가상 시계, 고정 seed).
+ * - 이전 방식: 고정 TTL, 5초 tick마다 만료 세션 전부 close -> 매 TTL 주기마다 전원이 같은 초에 재연결
+ * - 현재 방식: [ttl - jitter, ttl] TTL + 100ms rotation tick이 토큰 버킷 하나로 예고/close를 초당 상한 안에서 처리
+ * close된 세션은 바로 재연결해 새 TTL을 받는다. 세션마다 몇 번째 재연결인지(주기)를 따로 세어 주기별 곡선을 본다.
+ */
+class TtlRotationSimulationTest {
+
+	private static final int SESSIONS = 20_000;
+	private static final long TTL_MS = 15 * 60_000L;
+	private static final long JITTER_MS = 3 * 60_000L;
+	private static final long NOTICE_BEFORE_MS = 30_000L;
+	private static final int ROTATION_MAX_PER_SECOND = 100;
+	private static final long ROTATION_INTERVAL_MS = 100L;
+	private static final long LEGACY_TICK_MS = 5_000L;
+	private static final int CYCLES = 4;
+	// 마지막 주기가 rate 제한으로 밀려도 끝날 수 있게 한 주기 더 돌린다.
+	private static final int SECONDS = (int) ((CYCLES + 1) * TTL_MS / 1_000L);
+
+	@Test
+	void legacyRotationReconnectsEveryoneInTheSameSecondEachCycle() {
+		Curve legacy = simulate(false);
+
+		for (int cycle = 1; cycle <= CYCLES; cycle++) {
+			assertEquals(SESSIONS, legacy.peak(cycle), "cycle=" + cycle);
+			assertEquals(1, legacy.busySeconds(cycle), "cycle=" + cycle);
+		}
+	}
+
+	@Test
+	void jitteredRateLimitedRotationFlattensTheReconnectCurve() {
+		Curve legacy = simulate(false);
+		Curve current = simulate(true);
+
+		for (int cycle = 1; cycle <= CYCLES; cycle++) {
+			System.out.printf("cycle=%d legacy peak=%d/s | current peak=%d/s over %d seconds%n",
+					cycle, legacy.peak(cycle), current.peak(cycle), current.busySeconds(cycle));
+			assertEquals(SESSIONS, current.reconnects(cycle), "cycle=" + cycle);
+		}
+
+		// 예고와 close가 같은 버킷을 쓰므로 어느 초도 재연결(close)이 초당 상한을 넘지 않는다.
+		for (int second = 0; second < SECONDS; second++) {
+			assertTrue(current.total[second] <= ROTATION_MAX_PER_SECOND,
+					"second=" + second + " reconnects=" + current.total[second]);
+		}
+		// jitter가 주기마다 누적되어 분포가 넓어지므로 뒤 주기일수록 최고점이 낮고 더 오래 퍼진다.
+		assertTrue(current.peak(CYCLES) < current.peak(1),
+				"first=" + current.peak(1) + " last=" + current.peak(CYCLES));
+		assertTrue(current.busySeconds(CYCLES) > current.busySeconds(1));
+	}
+
+	private static Curve simulate(boolean jitteredAndLimited) {
+		SplittableRandom random = new SplittableRandom(7);
+		SessionDeadlineIndex notices = new SessionDeadlineIndex(1_000L);
+		SessionDeadlineIndex expiries = new SessionDeadlineIndex(1_000L);
+		for (int handle = 0; handle < SESSIONS; handle++) {
+			schedule(handle, 0L, jitteredAndLimited, random, notices, expiries);
+		}
+		Curve curve = new Curve();
+		int[] generation = new int[SESSIONS];
+		int[] closed = new int[SESSIONS];
+
+		long tickMs = jitteredAndLimited ? ROTATION_INTERVAL_MS : LEGACY_TICK_MS;
+		// WebSocketLifecycleScheduler와 같은 버킷 구성: 초당 상한, burst = tick 1회 몫
+		int permitsPerTick = (int) (ROTATION_MAX_PER_SECOND * ROTATION_INTERVAL_MS / 1_000L);
+		long clockBase = System.nanoTime();
+		TokenBucket bucket = new TokenBucket(ROTATION_MAX_PER_SECOND, permitsPerTick);
+		for (long now = tickMs; now < SECONDS * 1_000L; now += tickMs) {
+			int permits = Integer.MAX_VALUE;
+			if (jitteredAndLimited) {
+				permits = 0;
+				while (permits < permitsPerTick && bucket.tryAcquire(clockBase + now * 1_000_000L) == 0L) {
+					permits++;
+				}
+			}
+			int noticed = notices.pollDue(now, permits, handle -> {
+			});
+			int closePermits = jitteredAndLimited ? permits - noticed : Integer.MAX_VALUE;
+			int[] position = new int[1];
+			int closedCount = expiries.pollDue(now, closePermits, handle -> closed[position[0]++] = handle);
+			int second = (int) (now / 1_000L);
+			for (int i = 0; i < closedCount; i++) {
+				int handle = closed[i];
+				generation[handle]++;
+				curve.record(generation[handle], second);
+				schedule(handle, now, jitteredAndLimited, random, notices, expiries);
+			}
+		}
+		return curve;
+	}
+
+	private static void schedule(int handle, long now, boolean jittered, SplittableRandom random,
+								 SessionDeadlineIndex notices, SessionDeadlineIndex expiries) {
+		long ttl = jittered ? TTL_MS - random.nextLong(JITTER_MS + 1) : TTL_MS;
+		notices.schedule(handle, now + ttl - NOTICE_BEFORE_MS);
+		expiries.schedule(handle, now + ttl);
+	}
+
+	/**
+	 * 초별 재연결 수(전체, 주기별).
+	 */
+	private static final class Curve {
+		private final int[] total = new int[SECONDS];
+		private final int[][] byCycle = new int[CYCLES + 1][SECONDS];
+
+		private void record(int cycle, int second) {
+			total[second]++;
+			if (cycle <= CYCLES) {
+				byCycle[cycle][second]++;
+			}
+		}
+
+		private int peak(int cycle) {
+			int peak = 0;
+			for (int count : byCycle[cycle]) {
+				peak = Math.max(peak, count);
+			}
+			return peak;
+		}
+
+		private int busySeconds(int cycle) {
+			int busy = 0;
+			for (int count : byCycle[cycle]) {
+				if (count > 0) {
+					busy++;
+				}
+			}
+			return busy;
+		}
+
+		private int reconnects(int cycle) {
+			int sum = 0;
+			for (int count : byCycle[cycle]) {
+				sum += count;
+			}
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WebSocketLifecycleProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketLifecycleSchedulerTest {
+
+	private WebSocketSessionRegistry sessionRegistry;
+	private WebSocketControlService controlService;
+	private WebSocketLifecycleScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		WebSocketLifecycleProperties properties = new WebSocketLifecycleProperties();
+		properties.setRotationMaxPerSecond(100);
+		properties.setRotationInterval(Duration.ofMillis(100));
+		sessionRegistry = mock(WebSocketSessionRegistry.class);
+		controlService = mock(WebSocketControlService.class);
+		scheduler = new WebSocketLifecycleScheduler(properties, mock(WebSocketDrainService.class), sessionRegistry, controlService);
+	}
+
+	@Test
+	void noticesAndClosesShareOneTickBudget() {
+		when(sessionRegistry.pollDueTtlNotices(any(Instant.class), anyInt())).thenReturn(List.of("s1", "s2", "s3", "s4"));
+
+		scheduler.rotateSessions();
+
+		// 초당 100 x 100ms = tick당 10개. 예고 4개를 보냈으니 close는 6개까지만.
+		verify(sessionRegistry).pollDueTtlNotices(any(Instant.class), eq(10));
+		verify(controlService, times(4)).sendReconnectSignal(anyString(), eq("TTL rotation"));
+		verify(sessionRegistry).closeExpired(any(Instant.class), eq(6));
+	}
+
+	@Test
+	void skipsClosesWhenNoticesUseTheWholeBudget() {
+		when(sessionRegistry.pollDueTtlNotices(any(Instant.class), anyInt()))
+				.thenReturn(List.of("s1", "s2", "s3", "s4", "s5", "s6", "s7", "s8", "s9", "s10"));
+
+		scheduler.rotateSessions();
+
+		verify(sessionRegistry, never()).closeExpired(any(Instant.class), anyInt());
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.demo.support;
+
+import java.lang.ref.Reference;
+import java.util.function.Supplier;
+
+/**
+ * 측정용 테스트에서 자료구조 하나가 붙잡고 있는 힙 크기를 잰다.
+ * - 만들기 전/후에 GC를 여러 번 돌려 살아 있는 객체만 남긴 사용량 차이를 본다.
+ * - JVM 옵션/GC에 따라 수 KB 단위 오차가 있으므로 세션 수만큼 키운 구조끼리 비교하는 데만 쓴다.
+ */
+public final class HeapMeter {
+
+	private HeapMeter() {
+	}
+
+	public static <T> Measured<T> retained(Supplier<T> builder) {
+		long before = usedAfterGc();
+		T built = builder.get();
+		long after = usedAfterGc();
+		Reference.reachabilityFence(built);
+		return new Measured<>(built, Math.max(0L, after - before));
+	}
+
+	public static long usedAfterGc() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// 한 번의 System.gc()로는 finalizer/참조 처리 뒤 남는 객체가 정리되지 않을 수 있어 값이 안정될 때까지 반복한다.
+		for (int i = 0; i < 8; i++) {
+			System.gc();
+			try {
+				Thread.sleep(20L);
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			long current = runtime.totalMemory() - runtime.freeMemory();
+			if (current >= used) {
+				return current;
+			}
+			used = current;
+		}
+		return used;
+	}
+
+	public record Measured<T>(T value, long bytes) {
+	}
+}